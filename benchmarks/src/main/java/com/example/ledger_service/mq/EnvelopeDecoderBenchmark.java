@@ -0,0 +1,75 @@
+package com.example.ledger_service.mq;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// The consumers' old path (readTree the envelope, readTree the payload string, pull fields
+// out of the tree) against EnvelopeDecoder. Run main() from the IDE, or
+// mvn -f benchmarks/pom.xml package exec:exec -Djmh.args="EnvelopeDecoderBenchmark -prof gc"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnvelopeDecoderBenchmark {
+    private static final ObjectMapper M = new ObjectMapper();
+
+    String envelope;
+
+    @Setup
+    public void setUp() throws Exception {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("messageId", UUID.randomUUID().toString());
+        payload.put("sagaId", UUID.randomUUID().toString());
+        payload.put("participationId", 123456L);
+        payload.put("investorId", 42L);
+        payload.put("userId", 1001L);
+        payload.put("loanId", 77L);
+        payload.put("amount", "250.00");
+        payload.put("idempotencyKey", "77:42");
+
+        Map<String, Object> env = new LinkedHashMap<>();
+        env.put("schema", Map.of("type", "string", "optional", false));
+        env.put("payload", M.writeValueAsString(payload));
+        envelope = M.writeValueAsString(env);
+    }
+
+    @Benchmark
+    public ParticipationCreated treeDecode() throws Exception {
+        JsonNode outerNode = M.readTree(envelope);
+        String payloadString = outerNode.get("payload").asText();
+        JsonNode n = M.readTree(payloadString);
+        return new ParticipationCreated(
+                UUID.fromString(n.get("messageId").asText()),
+                UUID.fromString(n.get("sagaId").asText()),
+                n.get("participationId").asLong(),
+                n.get("investorId").asLong(),
+                n.get("userId").asLong(),
+                n.get("loanId").asLong(),
+                new BigDecimal(n.get("amount").asText()),
+                n.get("idempotencyKey").asText(),
+                payloadString);
+    }
+
+    @Benchmark
+    public ParticipationCreated streamingDecode() throws Exception {
+        return EnvelopeDecoder.participationCreated(envelope);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(EnvelopeDecoderBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.ledger_service.mq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Encode and decode cost of a ParticipationCreated as a JSON envelope (what the connector and
+// the relay send by default) against the binary v1 record. Record sizes are printed at setup.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SagaEventCodecBenchmark {
+    private static final ObjectMapper M = new ObjectMapper();
+
+    ParticipationCreated event;
+    byte[] jsonValue;
+    byte[] binaryValue;
+    RecordHeaders jsonHeaders;
+    RecordHeaders binaryHeaders;
+
+    @Setup
+    public void setUp() throws Exception {
+        String payload = M.writeValueAsString(payloadMap(UUID.randomUUID(), UUID.randomUUID()));
+        event = EnvelopeDecoder.participationCreatedPayload(payload);
+        jsonValue = jsonEnvelope(payload);
+        binaryValue = SagaEventCodec.encode(event);
+
+        jsonHeaders = new RecordHeaders();
+        jsonHeaders.add(SagaEventCodec.HEADER, SagaEventCodec.JSON.getBytes(StandardCharsets.UTF_8));
+        binaryHeaders = new RecordHeaders();
+        binaryHeaders.add(SagaEventCodec.HEADER, SagaEventCodec.BINARY.getBytes(StandardCharsets.UTF_8));
+        System.out.printf("ParticipationCreated record value: json %d bytes, binary %d bytes%n",
+                jsonValue.length, binaryValue.length);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws Exception {
+        return jsonEnvelope(M.writeValueAsString(payloadMap(event.messageId(), event.sagaId())));
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return SagaEventCodec.encode(event);
+    }
+
+    @Benchmark
+    public ParticipationCreated decodeJson() throws Exception {
+        return SagaEventCodec.readParticipationCreated(jsonValue, jsonHeaders);
+    }
+
+    @Benchmark
+    public ParticipationCreated decodeBinary() throws Exception {
+        return SagaEventCodec.readParticipationCreated(binaryValue, binaryHeaders);
+    }
+
+    private static Map<String, Object> payloadMap(UUID messageId, UUID sagaId) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("messageId", messageId.toString());
+        payload.put("sagaId", sagaId.toString());
+        payload.put("participationId", 123456L);
+        payload.put("investorId", 42L);
+        payload.put("userId", 1001L);
+        payload.put("loanId", 77L);
+        payload.put("amount", "250.00");
+        payload.put("idempotencyKey", "77:42");
+        return payload;
+    }
+
+    private static byte[] jsonEnvelope(String payload) throws Exception {
+        Map<String, Object> env = new LinkedHashMap<>();
+        env.put("schema", Map.of("type", "string", "optional", false));
+        env.put("payload", payload);
+        return M.writeValueAsBytes(env);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SagaEventCodecBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.LedgerServiceApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// LedgerService.processDebit end to end (idempotency probe, conditional UPDATE, txn row and
+// outbox event, commit) on an embedded Postgres built from db/ledger-init/01_ddl.sql, with
+// the real ledger context minus web server and Kafka listeners. users=1 puts every debit on
+// one wallet row (lock queueing), users=1000 spreads them. Logging is at WARN so the per-debit
+// info lines do not dominate; the ledger's default is INFO.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class ProcessDebitBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Param({"1", "1000"})
+    int users;
+
+    EmbeddedPostgres postgres;
+    ConfigurableApplicationContext context;
+    LedgerService ledger;
+    String duplicateKey;
+    final String run = UUID.randomUUID().toString();
+    final AtomicLong next = new AtomicLong();
+
+    @Setup
+    public void setUp() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        try (Connection c = postgres.getPostgresDatabase().getConnection(); Statement s = c.createStatement()) {
+            // pgjdbc sends a parameterless script as one simple query, dollar-quoted blocks included
+            s.execute(Files.readString(Path.of(System.getProperty("ledger.ddl", "../db/ledger-init/01_ddl.sql"))));
+            s.execute("INSERT INTO wallet (user_id, balance) SELECT g, 1000000000 FROM generate_series(1, " + users + ") g"
+                    + " ON CONFLICT (user_id) DO UPDATE SET balance = EXCLUDED.balance");
+        }
+
+        // Command-line arguments, since application.yaml's ${SPRING_DATASOURCE_URL:...} defaults
+        // would win over default properties. DeterministicChaosController needs the chaos-monkey
+        // profile; the assaults stay off.
+        context = new SpringApplicationBuilder(LedgerServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                        "--spring.datasource.username=postgres",
+                        "--spring.datasource.password=",
+                        "--spring.profiles.active=chaos-monkey",
+                        "--chaos.monkey.enabled=false",
+                        "--spring.kafka.listener.auto-startup=false",
+                        "--app.stats.reconcileMs=3600000",
+                        "--logging.level.com.example=WARN");
+        ledger = context.getBean(LedgerService.class);
+
+        duplicateKey = run + ":dup";
+        ledger.processDebit(UUID.randomUUID(), 1L, 0L, AMOUNT, duplicateKey);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        context.close();
+        postgres.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> debit() {
+        long n = next.incrementAndGet();
+        return ledger.processDebit(UUID.randomUUID(), 1 + n % users, n, AMOUNT, run + ":" + n);
+    }
+
+    // A redelivered debit: answered by the idempotency probe, nothing written
+    @Benchmark
+    public Map<String, Object> duplicate() {
+        return ledger.processDebit(UUID.randomUUID(), 1L, 0L, AMOUNT, duplicateKey);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ProcessDebitBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.los_service.api.controller;
+
+import com.example.los_service.LosServiceApplication;
+import com.example.los_service.api.record.InvestorReq;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A 1,000-investor /saga/auto-invest (SagaController.autoInvest: 1,000 participation rows plus
+// 1,000 outbox rows in one transaction) on an embedded Postgres built from
+// db/los-init/01_ddl.sql, with the real los context minus web server and Kafka listeners.
+// batchSize=1 sends every insert as its own round trip; batchSize=50 adds reWriteBatchedInserts,
+// as configured in application.yaml. The classpath holds the ledger's application.yaml first,
+// so the los one is named explicitly.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AutoInvestBatchingBenchmark {
+    private static final int INVESTORS = 1_000;
+    private static final BigDecimal AMOUNT = new BigDecimal("10.00");
+
+    @Param({"1", "50"})
+    int batchSize;
+
+    EmbeddedPostgres postgres;
+    ConfigurableApplicationContext context;
+    SagaController saga;
+    final AtomicLong loans = new AtomicLong();
+
+    @Setup
+    public void setUp() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        try (Connection c = postgres.getPostgresDatabase().getConnection(); Statement s = c.createStatement()) {
+            s.execute(Files.readString(Path.of(System.getProperty("los.ddl", "../db/los-init/01_ddl.sql"))));
+        }
+
+        // Command-line arguments, since application.yaml's ${SPRING_DATASOURCE_URL:...} defaults
+        // would win over default properties
+        context = new SpringApplicationBuilder(LosServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.config.location=file:"
+                                + System.getProperty("los.config", "../los-service/src/main/resources/application.yaml"),
+                        "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                        "--spring.datasource.username=postgres",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+                        "--spring.datasource.hikari.data-source-properties.reWriteBatchedInserts=" + (batchSize > 1),
+                        "--app.outbox.mode=table",
+                        "--spring.kafka.listener.auto-startup=false",
+                        "--app.reconciliation.enabled=false",
+                        "--app.stats.reconcileMs=3600000",
+                        "--chaos.monkey.enabled=false",
+                        "--logging.level.com.example=WARN");
+        saga = context.getBean(SagaController.class);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        context.close();
+        postgres.close();
+    }
+
+    // Every batch goes to a new loan, so no participation's idempotency key repeats
+    @Benchmark
+    public ResponseEntity<?> autoInvest() {
+        long loanId = loans.incrementAndGet();
+        List<InvestorReq> reqs = new ArrayList<>(INVESTORS);
+        for (int i = 0; i < INVESTORS; i++) {
+            reqs.add(new InvestorReq((long) i, (long) i, loanId, AMOUNT));
+        }
+        return saga.autoInvest(reqs);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(AutoInvestBatchingBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.los_service.api.controller;
+
+import com.example.los_service.api.record.InvestorReq;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// SyncController.dedupe over a /sync request body in which about one investor in ten
+// appears twice
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SyncDedupeBenchmark {
+    @Param({"10", "1000", "10000"})
+    int size;
+
+    List<InvestorReq> requests;
+
+    @Setup
+    public void setUp() {
+        requests = new ArrayList<>(size);
+        var rnd = ThreadLocalRandom.current();
+        for (int i = 0; i < size; i++) {
+            long investor = rnd.nextInt(10) == 0 && i > 0 ? requests.get(rnd.nextInt(i)).investorId() : 1_000_000L + i;
+            requests.add(new InvestorReq(investor, 1000L + i, 77L, new BigDecimal("250.00")));
+        }
+    }
+
+    @Benchmark
+    public List<InvestorReq> dedupe() {
+        return SyncController.dedupe(requests);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SyncDedupeBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.los_service.mq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// What the LOS consumers do with every TransactionCompleted before touching the database:
+// decode the JSON envelope (connector / default relay format) or the binary v1 record
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionEventDecodeBenchmark {
+    private static final ObjectMapper M = new ObjectMapper();
+
+    byte[] jsonValue;
+    byte[] binaryValue;
+    RecordHeaders jsonHeaders;
+    RecordHeaders binaryHeaders;
+
+    @Setup
+    public void setUp() throws Exception {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("messageId", UUID.randomUUID().toString());
+        payload.put("sagaId", UUID.randomUUID().toString());
+        payload.put("participationId", 123456L);
+        payload.put("transactionId", 987654L);
+        payload.put("idempotencyKey", "77:42");
+        payload.put("status", "SUCCESS");
+        payload.put("reason", null);
+        String json = M.writeValueAsString(payload);
+
+        Map<String, Object> env = new LinkedHashMap<>();
+        env.put("schema", Map.of("type", "string", "optional", false));
+        env.put("payload", json);
+        jsonValue = M.writeValueAsBytes(env);
+        binaryValue = SagaEventCodec.encodePayload("TransactionCompleted", json);
+
+        jsonHeaders = new RecordHeaders();
+        jsonHeaders.add(SagaEventCodec.HEADER, SagaEventCodec.JSON.getBytes(StandardCharsets.UTF_8));
+        binaryHeaders = new RecordHeaders();
+        binaryHeaders.add(SagaEventCodec.HEADER, SagaEventCodec.BINARY.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public TransactionEvent decodeJson() throws Exception {
+        return SagaEventCodec.readTransactionEvent(jsonValue, jsonHeaders);
+    }
+
+    @Benchmark
+    public TransactionEvent decodeBinary() throws Exception {
+        return SagaEventCodec.readTransactionEvent(binaryValue, binaryHeaders);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(TransactionEventDecodeBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -1,9 +1,24 @@
 CREATE TABLE IF NOT EXISTS wallet (
   user_id BIGINT PRIMARY KEY,
   balance NUMERIC(12,2) NOT NULL,
-  version BIGINT NOT NULL DEFAULT 0
+  version BIGINT NOT NULL DEFAULT 0,
+  stripes INT NOT NULL DEFAULT 0
 );
 
+-- hot wallets: balance split across N sub-balance rows (wallet.stripes > 0)
+CREATE TABLE IF NOT EXISTS wallet_stripe (
+  user_id BIGINT NOT NULL REFERENCES wallet(user_id),
+  stripe INT NOT NULL,
+  balance NUMERIC(12,2) NOT NULL,
+  PRIMARY KEY (user_id, stripe)
+);
+
+CREATE OR REPLACE VIEW wallet_balance AS
+SELECT w.user_id,
+       w.balance + COALESCE((SELECT SUM(s.balance) FROM wallet_stripe s WHERE s.user_id = w.user_id), 0) AS balance,
+       w.stripes
+  FROM wallet w;
+
 CREATE TABLE IF NOT EXISTS txn (
   id BIGSERIAL PRIMARY KEY,
   user_id BIGINT NOT NULL,
@@ -14,27 +29,85 @@ CREATE TABLE IF NOT EXISTS txn (
   created_at TIMESTAMPTZ DEFAULT now()
 );
 
+-- Matches allocationSize = 50 on the Txn/OutboxEvent entities (Hibernate pooled optimizer).
+-- Rows inserted by SQL take a single nextval each, which never falls inside a block
+-- Hibernate has reserved, so both paths can share the sequence.
+ALTER SEQUENCE txn_id_seq INCREMENT BY 50;
+
+-- Keyset pages of ledger outcomes per participation for the LOS reconciliation, answered
+-- from the index alone
+CREATE INDEX IF NOT EXISTS ix_ledger_txn_participation ON txn (participation_id) INCLUDE (status)
+  WHERE participation_id IS NOT NULL;
+
+-- outbox and inbox are range-partitioned by day; PartitionMaintenance in the service
+-- pre-creates upcoming days and drops days that are no longer needed. The DEFAULT
+-- partitions only catch rows if maintenance has fallen behind; its next run moves them
+-- into their day's partition.
 CREATE TABLE IF NOT EXISTS outbox (
-  id BIGSERIAL PRIMARY KEY,
+  id BIGSERIAL,
   event_type TEXT NOT NULL,
   aggregate_type TEXT NOT NULL,
   aggregate_id BIGINT,
   payload TEXT NOT NULL,
   status TEXT NOT NULL DEFAULT 'NEW',
   attempt_count INT NOT NULL DEFAULT 0,
-  created_at TIMESTAMPTZ DEFAULT now(),
-  last_attempt_at TIMESTAMPTZ
-);
+  created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  last_attempt_at TIMESTAMPTZ,
+  -- W3C trace context of the writer, published as the Kafka header "traceparent"
+  traceparent TEXT,
+  PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE IF NOT EXISTS outbox_default PARTITION OF outbox DEFAULT;
+
+ALTER SEQUENCE outbox_id_seq INCREMENT BY 50;
 
 CREATE INDEX IF NOT EXISTS ix_ledger_outbox_status ON outbox(status);
 
+-- received_at is the Kafka record timestamp, which is identical on every redelivery,
+-- so (message_id, received_at) still deduplicates
 CREATE TABLE IF NOT EXISTS inbox (
-  message_id UUID PRIMARY KEY,
+  message_id UUID NOT NULL,
   payload TEXT NOT NULL,
   handler TEXT NOT NULL,
-  received_at TIMESTAMPTZ DEFAULT now()
+  received_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  PRIMARY KEY (message_id, received_at)
+) PARTITION BY RANGE (received_at);
+
+CREATE TABLE IF NOT EXISTS inbox_default PARTITION OF inbox DEFAULT;
+
+-- Today and the next 3 days (app.partitions.precreateDays) exist from the start, so the
+-- services' writes land in daily partitions before the first maintenance run
+DO $$
+DECLARE
+  t TEXT;
+  d DATE;
+BEGIN
+  FOREACH t IN ARRAY ARRAY['outbox', 'inbox'] LOOP
+    FOR i IN 0..3 LOOP
+      d := (now() AT TIME ZONE 'UTC')::date + i;
+      EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                     t || '_p' || to_char(d, 'YYYYMMDD'), t, d || ' 00:00:00+00', (d + 1) || ' 00:00:00+00');
+    END LOOP;
+  END LOOP;
+END $$;
+
+-- WAL position at which an outbox partition stopped receiving rows; the partition may be
+-- dropped once the Debezium slot has confirmed past it
+CREATE TABLE IF NOT EXISTS partition_seal (
+  partition_name TEXT PRIMARY KEY,
+  sealed_lsn PG_LSN NOT NULL,
+  sealed_at TIMESTAMPTZ NOT NULL DEFAULT now()
 );
 
+-- Debezium must see partition rows as public.outbox
+DO $$
+BEGIN
+  IF NOT EXISTS (SELECT 1 FROM pg_publication WHERE pubname = 'outbox_publication') THEN
+    CREATE PUBLICATION outbox_publication FOR TABLE outbox WITH (publish_via_partition_root = true);
+  END IF;
+END $$;
+
 -- demo seed
 INSERT INTO wallet (user_id, balance) VALUES (101, 10000.00)
   ON CONFLICT (user_id) DO NOTHING;
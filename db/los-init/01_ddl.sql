@@ -10,23 +10,114 @@ CREATE TABLE IF NOT EXISTS participation (
   updated_at TIMESTAMPTZ DEFAULT now()
 );
 
+-- The entities draw ids with Hibernate's pooled optimizer: one nextval reserves 50 ids, so
+-- inserts no longer have to run one by one to read back a generated key and can be
+-- JDBC-batched. INCREMENT must equal allocationSize on the entity (checked at startup).
+ALTER SEQUENCE participation_id_seq INCREMENT BY 50;
+
+-- Loan cancellation pages through a loan's participations in id order
+CREATE INDEX IF NOT EXISTS ix_los_participation_loan ON participation (loan_id, id);
+
+-- One row per auto-invest batch (sagaId = batchId), counted up when participations are
+-- created and moved from pending to confirmed/failed as ledger outcomes arrive. open =
+-- a streamed upload may still add participations.
+CREATE TABLE IF NOT EXISTS saga (
+  saga_id UUID PRIMARY KEY,
+  total INT NOT NULL,
+  pending INT NOT NULL,
+  confirmed INT NOT NULL DEFAULT 0,
+  failed INT NOT NULL DEFAULT 0,
+  open BOOLEAN NOT NULL DEFAULT false,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  completed_at TIMESTAMPTZ
+);
+
+-- Cross-service reconciliation (/stats/orphans): participations up to watermark have been
+-- compared with the ledger and are not scanned again; what a run flagged stays in
+-- reconciliation_finding until a later run finds it consistent.
+CREATE TABLE IF NOT EXISTS reconciliation (
+  name TEXT PRIMARY KEY,
+  watermark BIGINT NOT NULL DEFAULT 0,
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+INSERT INTO reconciliation (name) VALUES ('orphans') ON CONFLICT DO NOTHING;
+
+CREATE TABLE IF NOT EXISTS reconciliation_finding (
+  participation_id BIGINT PRIMARY KEY,
+  kind TEXT NOT NULL,
+  los_status TEXT,
+  ledger_status TEXT,
+  first_seen TIMESTAMPTZ NOT NULL,
+  last_seen TIMESTAMPTZ NOT NULL
+);
+
+-- outbox and inbox are range-partitioned by day; PartitionMaintenance in the service
+-- pre-creates upcoming days and drops days that are no longer needed. The DEFAULT
+-- partitions only catch rows if maintenance has fallen behind; its next run moves them
+-- into their day's partition.
 CREATE TABLE IF NOT EXISTS outbox (
-  id BIGSERIAL PRIMARY KEY,
+  id BIGSERIAL,
   event_type TEXT NOT NULL,
   aggregate_type TEXT NOT NULL,
   aggregate_id BIGINT NOT NULL,
   payload TEXT NOT NULL,
   status TEXT NOT NULL DEFAULT 'NEW',
   attempt_count INT NOT NULL DEFAULT 0,
-  created_at TIMESTAMPTZ DEFAULT now(),
-  last_attempt_at TIMESTAMPTZ
-);
+  created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  last_attempt_at TIMESTAMPTZ,
+  -- W3C trace context of the writer, published as the Kafka header "traceparent"
+  traceparent TEXT,
+  PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE IF NOT EXISTS outbox_default PARTITION OF outbox DEFAULT;
+
+ALTER SEQUENCE outbox_id_seq INCREMENT BY 50;
 
 CREATE INDEX IF NOT EXISTS ix_los_outbox_status ON outbox(status);
 
+-- received_at is the Kafka record timestamp, which is identical on every redelivery,
+-- so (message_id, received_at) still deduplicates
 CREATE TABLE IF NOT EXISTS inbox (
-  message_id UUID PRIMARY KEY,
+  message_id UUID NOT NULL,
   payload TEXT NOT NULL,
   handler TEXT NOT NULL,
-  received_at TIMESTAMPTZ DEFAULT now()
+  received_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  PRIMARY KEY (message_id, received_at)
+) PARTITION BY RANGE (received_at);
+
+CREATE TABLE IF NOT EXISTS inbox_default PARTITION OF inbox DEFAULT;
+
+-- Today and the next 3 days (app.partitions.precreateDays) exist from the start, so the
+-- services' writes land in daily partitions before the first maintenance run
+DO $$
+DECLARE
+  t TEXT;
+  d DATE;
+BEGIN
+  FOREACH t IN ARRAY ARRAY['outbox', 'inbox'] LOOP
+    FOR i IN 0..3 LOOP
+      d := (now() AT TIME ZONE 'UTC')::date + i;
+      EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                     t || '_p' || to_char(d, 'YYYYMMDD'), t, d || ' 00:00:00+00', (d + 1) || ' 00:00:00+00');
+    END LOOP;
+  END LOOP;
+END $$;
+
+-- WAL position at which an outbox partition stopped receiving rows; the partition may be
+-- dropped once the Debezium slot has confirmed past it
+CREATE TABLE IF NOT EXISTS partition_seal (
+  partition_name TEXT PRIMARY KEY,
+  sealed_lsn PG_LSN NOT NULL,
+  sealed_at TIMESTAMPTZ NOT NULL DEFAULT now()
 );
+
+-- Debezium must see partition rows as public.outbox
+DO $$
+BEGIN
+  IF NOT EXISTS (SELECT 1 FROM pg_publication WHERE pubname = 'outbox_publication') THEN
+    CREATE PUBLICATION outbox_publication FOR TABLE outbox WITH (publish_via_partition_root = true);
+  END IF;
+END $$;
@@ -7,6 +7,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @RestController
 @RequestMapping("/chaos")
@@ -14,12 +15,12 @@ import java.util.Map;
 public class DeterministicChaosController {
     @Autowired
     private AssaultProperties assaultProperties;
-    private boolean chaosEnabled = false;
-    private boolean forceLatency = false;
-    private boolean forceException = false;
-    private int latencyMs = 3000;
-    private int failureCount = 0;
-    private int maxFailures = 2; // Fail exactly 2 requests then succeed
+    private volatile boolean chaosEnabled = false;
+    private volatile boolean forceLatency = false;
+    private volatile boolean forceException = false;
+    private volatile int latencyMs = 3000;
+    private final AtomicInteger failureCount = new AtomicInteger();
+    private volatile int maxFailures = 2; // Fail exactly 2 requests then succeed
 
     // Control endpoints
     @PostMapping("/enable-latency/{delayMs}")
@@ -37,7 +38,7 @@ public class DeterministicChaosController {
         this.forceLatency = false;
         this.forceException = true;
         this.maxFailures = maxFailures;
-        this.failureCount = 0;
+        this.failureCount.set(0);
         return ResponseEntity.ok("Exception chaos enabled: fail " + maxFailures + " requests");
     }
 
@@ -46,7 +47,7 @@ public class DeterministicChaosController {
         this.chaosEnabled = false;
         this.forceLatency = false;
         this.forceException = false;
-        this.failureCount = 0;
+        this.failureCount.set(0);
         return ResponseEntity.ok("All chaos disabled");
     }
         @PostMapping("/configure")
@@ -67,7 +68,7 @@ public class DeterministicChaosController {
                 "forceLatency", forceLatency,
                 "forceException", forceException,
                 "latencyMs", latencyMs,
-                "failureCount", failureCount,
+                "failureCount", failureCount.get(),
                 "maxFailures", maxFailures
         ));
     }
@@ -76,18 +77,21 @@ public class DeterministicChaosController {
     public void injectChaos() throws Exception {
         if (!chaosEnabled) return;
 
+        // Plain sleep: on a virtual thread it parks without holding a carrier or a connection
         if (forceLatency) {
             Thread.sleep(latencyMs);
         }
 
-        if (forceException && failureCount < maxFailures) {
-            failureCount++;
-            throw new RuntimeException("Deterministic chaos: simulated failure #" + failureCount);
+        if (forceException) {
+            int before = failureCount.getAndUpdate(n -> n < maxFailures ? n + 1 : n);
+            if (before < maxFailures) {
+                throw new RuntimeException("Deterministic chaos: simulated failure #" + (before + 1));
+            }
         }
     }
 
     public void reset() {
-        this.failureCount = 0;
+        this.failureCount.set(0);
     }
     public static class ChaosConfig {
         public int level;
@@ -0,0 +1,30 @@
+package com.example.ledger_service.controller;
+
+import com.example.ledger_service.service.IdempotencyFilter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/idempotency-filter")
+@RequiredArgsConstructor
+public class IdempotencyFilterController {
+    private final IdempotencyFilter filter;
+
+    @GetMapping
+    public Map<String, Object> stats() {
+        return filter.stats();
+    }
+
+    // Rebuilds from the txn table in the background; the current filter keeps serving meanwhile
+    @PostMapping("/rebuild")
+    public ResponseEntity<String> rebuild() {
+        Thread.ofVirtual().name("idempotency-filter-rebuild").start(filter::rebuild);
+        return ResponseEntity.accepted().body("Idempotency filter rebuild started");
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.ledger_service.controller;
+
+import com.example.ledger_service.service.ReconciliationFeed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+// Read by the LOS reconciler: ledger outcome per participation, in participation id order
+@RestController
+@RequestMapping("/reconciliation")
+@RequiredArgsConstructor
+public class ReconciliationController {
+    private static final int MAX_PAGE = 50_000;
+
+    private final ReconciliationFeed feed;
+
+    // Participations in (after, upTo]; fewer than limit rows = end of the range
+    @GetMapping("/txns")
+    public ReconciliationFeed.Page txns(@RequestParam long after,
+                                        @RequestParam(defaultValue = "9223372036854775807") long upTo,
+                                        @RequestParam(defaultValue = "10000") int limit) {
+        return feed.page(after, upTo, Math.max(1, Math.min(limit, MAX_PAGE)));
+    }
+
+    @PostMapping("/txns/lookup")
+    public ResponseEntity<?> lookup(@RequestBody long[] participationIds) {
+        if (participationIds.length > MAX_PAGE) {
+            return ResponseEntity.badRequest().body(Map.of("error", "At most " + MAX_PAGE + " participation ids per lookup"));
+        }
+        return ResponseEntity.ok(feed.lookup(participationIds));
+    }
+}
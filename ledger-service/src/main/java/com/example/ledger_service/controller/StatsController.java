@@ -1,9 +1,15 @@
 package com.example.ledger_service.controller;
 
-import com.example.ledger_service.repo.InboxRepo;
-import com.example.ledger_service.repo.OutboxRepo;
-import com.example.ledger_service.repo.TxnRepo;
+import com.example.ledger_service.mq.OutboxRelay;
+import com.example.ledger_service.mq.ParallelLedgerConsumer;
+import com.example.ledger_service.service.DebitGroupCommitter;
+import com.example.ledger_service.service.HotWalletTracker;
+import com.example.ledger_service.service.InboxService;
+import com.example.ledger_service.service.PartitionMaintenance;
+import com.example.ledger_service.service.PinningMonitor;
+import com.example.ledger_service.service.StatusCounters;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -15,18 +21,24 @@ import java.util.Map;
 @RequestMapping("/stats")
 @RequiredArgsConstructor
 public class StatsController {
-    private final TxnRepo transactionRepo;
-    private final OutboxRepo outboxRepo;
-    private final InboxRepo inboxRepo;
+    private final StatusCounters counters;
+    private final InboxService inboxService;
+    private final PartitionMaintenance partitions;
+    private final ObjectProvider<OutboxRelay> outboxRelay;
+    private final ObjectProvider<ParallelLedgerConsumer> parallelConsumer;
+    private final ObjectProvider<PinningMonitor> pinningMonitor;
+    private final ObjectProvider<DebitGroupCommitter> groupCommitter;
+    private final HotWalletTracker hotWallets;
 
+    // Served from StatusCounters; /stats/counters shows when they were last reconciled
     @GetMapping("/ledger")
     public Map<String, Object> getLedgerStats() {
-        long successCount = transactionRepo.countByStatus("SUCCESS");
-        long failedCount = transactionRepo.countByStatus("FAILED");
-        long pendingCount = transactionRepo.countByStatus("PENDING");
-        long total = transactionRepo.count();
+        long successCount = counters.count(StatusCounters.TXN, "SUCCESS");
+        long failedCount = counters.count(StatusCounters.TXN, "FAILED");
+        long pendingCount = counters.count(StatusCounters.TXN, "PENDING");
+        long total = counters.counts(StatusCounters.TXN).get("total");
 
-        long outboxNew = outboxRepo.countByStatus("NEW");
+        long outboxNew = counters.count(StatusCounters.OUTBOX, "NEW");
 
         return Map.of(
                 "success", successCount,
@@ -40,11 +52,51 @@ public class StatsController {
 
     @GetMapping("/inbox")
     public Map<String, Object> getInboxStats() {
-        long processedMessages = inboxRepo.count();
+        long processedMessages = counters.count(StatusCounters.INBOX, StatusCounters.ROWS);
 
         return Map.of(
                 "processed", processedMessages,
+                "dedupCache", inboxService.cacheStats(),
                 "timestamp", Instant.now()
         );
     }
+
+    @GetMapping("/counters")
+    public Map<String, Object> getCounterStats() {
+        return counters.stats();
+    }
+
+    @GetMapping("/partitions")
+    public Map<String, Object> getPartitionStats() {
+        return partitions.stats();
+    }
+
+    @GetMapping("/relay")
+    public Map<String, Object> getRelayStats() {
+        OutboxRelay relay = outboxRelay.getIfAvailable();
+        return relay == null ? Map.of("enabled", false) : relay.stats();
+    }
+
+    @GetMapping("/consumer")
+    public Map<String, Object> getParallelConsumerStats() {
+        ParallelLedgerConsumer consumer = parallelConsumer.getIfAvailable();
+        return consumer == null ? Map.of("enabled", false) : consumer.stats();
+    }
+
+    @GetMapping("/pinning")
+    public Map<String, Object> getPinningStats() {
+        PinningMonitor monitor = pinningMonitor.getIfAvailable();
+        return monitor == null ? Map.of("enabled", false) : monitor.stats();
+    }
+
+    @GetMapping("/group-commit")
+    public Map<String, Object> getGroupCommitStats() {
+        DebitGroupCommitter committer = groupCommitter.getIfAvailable();
+        return committer == null ? Map.of("enabled", false) : committer.stats();
+    }
+
+    @GetMapping("/wallets")
+    public Map<String, Object> getWalletContentionStats() {
+        return hotWallets.snapshot();
+    }
 }
@@ -4,7 +4,6 @@ import com.example.ledger_service.model.SyncLedgerService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -20,8 +19,8 @@ public class SyncWalletController {
     private final SyncLedgerService syncLedgerService;
     private final com.example.ledger_service.api.controller.DeterministicChaosController chaosController;
 
+    // No transaction here: the service opens its own, so injected latency does not hold a pooled connection
     @PostMapping("/debit")
-    @Transactional
     public ResponseEntity<?> debitSync(@RequestBody Map<String, Object> body) throws Exception {
 
         chaosController.injectChaos();
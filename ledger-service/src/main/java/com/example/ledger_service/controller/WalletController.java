@@ -1,16 +1,27 @@
 package com.example.ledger_service.controller;
 
 
+import com.example.ledger_service.repo.WalletRepo;
+import com.example.ledger_service.service.LedgerBatchService;
+import com.example.ledger_service.service.LedgerBatchService.Debit;
+import com.example.ledger_service.service.LedgerBatchService.Outcome;
 import com.example.ledger_service.service.LedgerService;
+import com.example.ledger_service.service.Tracing;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -19,11 +30,17 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class WalletController {
     private final LedgerService service;
+    private final LedgerBatchService batchService;
+    private final WalletRepo wallets;
+    private final Tracing tracing;
+
+    @Value("${app.wallet.batch.maxItems:5000}")
+    int maxBatchItems;
 
     private final com.example.ledger_service.api.controller.DeterministicChaosController chaosController;
 
+    // No transaction here: the service opens its own, so injected latency does not hold a pooled connection
     @PostMapping("/debit")
-    @Transactional
     public ResponseEntity<?> debit(@RequestBody Map<String, Object> body) throws Exception {
 
         chaosController.injectChaos();
@@ -35,5 +52,67 @@ public class WalletController {
         var res = service.processDebit(UUID.randomUUID(), userId, pid, amount, idem);
         return ResponseEntity.ok(res);
     }
-}
 
+    public record DebitItem(Long userId, Long participationId, BigDecimal amount, String idempotencyKey) {
+        String problem() {
+            if (userId == null) return "userId is required";
+            if (participationId == null) return "participationId is required";
+            if (amount == null || amount.signum() <= 0) return "amount must be positive";
+            if (idempotencyKey == null || idempotencyKey.isBlank()) return "idempotencyKey is required";
+            return null;
+        }
+    }
+
+    // Many debits in one transaction with JDBC batching; results[i] answers items[i] with the same
+    // status/transactionId/reason as /wallet/debit. events=false skips the outbox like /wallet/sync/debit.
+    @PostMapping("/debit/batch")
+    public ResponseEntity<?> debitBatch(@RequestBody List<DebitItem> items,
+                                        @RequestParam(defaultValue = "true") boolean events) throws Exception {
+        if (items.size() > maxBatchItems) {
+            return ResponseEntity.badRequest().body(Map.of("error", "At most " + maxBatchItems + " debits per batch"));
+        }
+
+        chaosController.injectChaos();
+
+        UUID sagaId = UUID.randomUUID();
+        List<Debit> valid = new ArrayList<>(items.size());
+        String[] problems = new String[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            DebitItem item = items.get(i);
+            problems[i] = item == null ? "item is null" : item.problem();
+            if (problems[i] == null) {
+                valid.add(new Debit(UUID.randomUUID(), sagaId, item.userId(), item.participationId(), item.amount(),
+                        item.idempotencyKey(), null, null, tracing.currentHeader()));
+            }
+        }
+
+        List<Outcome> outcomes = valid.isEmpty() ? List.of() : batchService.applyRequests(valid, events);
+
+        List<Map<String, Object>> results = new ArrayList<>(items.size());
+        int next = 0;
+        for (String problem : problems) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            if (problem != null) {
+                result.put("status", "FAILED");
+                result.put("reason", "INVALID: " + problem);
+            } else {
+                Outcome o = outcomes.get(next++);
+                result.put("status", o.status());
+                if (o.transactionId() != null && o.status().equals("SUCCESS")) result.put("transactionId", o.transactionId());
+                if (o.reason() != null) result.put("reason", o.reason());
+            }
+            results.add(result);
+        }
+        return ResponseEntity.ok(Map.of("results", results));
+    }
+
+    @GetMapping("/{userId}")
+    public ResponseEntity<?> balance(@PathVariable Long userId) {
+        return wallets.findById(userId)
+                .<ResponseEntity<?>>map(w -> ResponseEntity.ok(Map.of(
+                        "userId", w.getUserId(),
+                        "balance", w.getTotalBalance(),
+                        "stripes", w.getStripes())))
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -2,6 +2,8 @@ package com.example.ledger_service.handler;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.Consumer;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.kafka.listener.ConsumerAwareListenerErrorHandler;
 import org.springframework.kafka.listener.ListenerExecutionFailedException;
 import org.springframework.messaging.Message;
@@ -21,6 +23,12 @@ public class KafkaErrorHandler implements ConsumerAwareListenerErrorHandler {
             log.error("Root cause: {}", cause.getMessage(), cause);
         }
 
+        // Lock conflicts that outlived DebitEngine's retries are not data errors:
+        // rethrow so the container redelivers the record instead of dropping it
+        if (cause instanceof ConcurrencyFailureException || cause instanceof TransientDataAccessException) {
+            throw exception;
+        }
+
         // You can implement Dead Letter Queue logic here
         // For now, we'll just log and continue
 
@@ -10,6 +10,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.Instant;
 import java.util.UUID;
 
 @Entity
@@ -23,4 +24,5 @@ public class InboxMessage {
     UUID messageId;
     String payload;
     String handler;
+    Instant receivedAt;
 }
@@ -10,6 +10,8 @@ import lombok.Setter;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
+import java.time.Instant;
+
 @Entity
 @Table(name = "outbox")
 @Getter
@@ -18,7 +20,8 @@ import org.hibernate.type.SqlTypes;
 @AllArgsConstructor
 public class OutboxEvent {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_id")
+    @SequenceGenerator(name = "outbox_id", sequenceName = "outbox_id_seq", allocationSize = 50)
     Long id;
     String eventType;
     String aggregateType;
@@ -27,5 +30,8 @@ public class OutboxEvent {
     String payload;
     String status = "NEW";
     Integer attemptCount = 0;
+    String traceparent;
+    @Column(insertable = false, updatable = false)
+    Instant createdAt;
 }
 
@@ -12,7 +12,8 @@ import java.math.BigDecimal;
 @Setter
 public class Txn {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "txn_id")
+    @SequenceGenerator(name = "txn_id", sequenceName = "txn_id_seq", allocationSize = 50)
     Long id;
     Long userId;
     Long participationId;
@@ -6,6 +6,7 @@ import jakarta.persistence.Table;
 import jakarta.persistence.Version;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Formula;
 
 import java.math.BigDecimal;
 
@@ -16,8 +17,14 @@ import java.math.BigDecimal;
 public class Wallet {
     @Id
     Long userId;
+    // Home balance; 0 for striped wallets once rebalanced
     BigDecimal balance;
     @Version
     Long version;
-}
+    // 0 = plain wallet, N = balance split across N wallet_stripe rows
+    Integer stripes;
 
+    // What the user can spend: home balance plus all stripes
+    @Formula("balance + coalesce((select sum(s.balance) from wallet_stripe s where s.user_id = user_id), 0)")
+    BigDecimal totalBalance;
+}
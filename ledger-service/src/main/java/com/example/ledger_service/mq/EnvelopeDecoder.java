@@ -0,0 +1,179 @@
+package com.example.ledger_service.mq;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+// Decodes the connector envelope {"schema": ..., "payload": "<event json>"} in one pass:
+// the outer parser stops on "payload", and the inner parser reads the unescaped event
+// straight out of the outer parser's text buffer. No JsonNode trees are built, and the
+// only copy of the event JSON is the payload string kept for the inbox row.
+public final class EnvelopeDecoder {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private EnvelopeDecoder() {
+    }
+
+    public static ParticipationCreated participationCreated(String envelope) throws IOException {
+        return decode(JSON.createParser(envelope), EnvelopeDecoder::bindParticipationCreated);
+    }
+
+    public static ParticipationCreated participationCreated(byte[] envelope) throws IOException {
+        return decode(JSON.createParser(envelope), EnvelopeDecoder::bindParticipationCreated);
+    }
+
+    public static TransactionEvent transactionEvent(String envelope) throws IOException {
+        return decode(JSON.createParser(envelope), EnvelopeDecoder::bindTransactionEvent);
+    }
+
+    public static TransactionEvent transactionEvent(byte[] envelope) throws IOException {
+        return decode(JSON.createParser(envelope), EnvelopeDecoder::bindTransactionEvent);
+    }
+
+    public static RefundRequested refundRequested(byte[] envelope) throws IOException {
+        return decode(JSON.createParser(envelope), EnvelopeDecoder::bindRefundRequested);
+    }
+
+    // A bare event payload, as stored in the outbox
+    static ParticipationCreated participationCreatedPayload(String payload) throws IOException {
+        try (JsonParser p = JSON.createParser(payload)) {
+            return bindParticipationCreated(p, payload);
+        }
+    }
+
+    static TransactionEvent transactionEventPayload(String payload) throws IOException {
+        try (JsonParser p = JSON.createParser(payload)) {
+            return bindTransactionEvent(p, payload);
+        }
+    }
+
+    static ParticipationCreated bindParticipationCreated(JsonParser p, String payload) throws IOException {
+        UUID messageId = null, sagaId = null;
+        Long participationId = null, investorId = null, userId = null, loanId = null;
+        BigDecimal amount = null;
+        String idempotencyKey = null;
+
+        expect(p.nextToken() == JsonToken.START_OBJECT, "payload is not a JSON object");
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "messageId" -> messageId = uuid(p);
+                case "sagaId" -> sagaId = uuid(p);
+                case "participationId" -> participationId = longValue(p);
+                case "investorId" -> investorId = longValue(p);
+                case "userId" -> userId = longValue(p);
+                case "loanId" -> loanId = longValue(p);
+                case "amount" -> amount = decimal(p);
+                case "idempotencyKey" -> idempotencyKey = p.getValueAsString();
+                default -> p.skipChildren();
+            }
+        }
+        expect(messageId != null, "Missing messageId");
+        return new ParticipationCreated(messageId, sagaId, participationId, investorId, userId, loanId,
+                amount, idempotencyKey, payload);
+    }
+
+    // TransactionCompleted and TransactionFailed share one payload shape
+    static TransactionEvent bindTransactionEvent(JsonParser p, String payload) throws IOException {
+        UUID messageId = null, sagaId = null;
+        Long participationId = null, transactionId = null;
+        String idempotencyKey = null, status = null, reason = null;
+
+        expect(p.nextToken() == JsonToken.START_OBJECT, "payload is not a JSON object");
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "messageId" -> messageId = uuid(p);
+                case "sagaId" -> sagaId = uuid(p);
+                case "participationId" -> participationId = longValue(p);
+                case "transactionId" -> transactionId = longValue(p);
+                case "idempotencyKey" -> idempotencyKey = p.getValueAsString();
+                case "status" -> status = p.getValueAsString();
+                case "reason" -> reason = p.getValueAsString();
+                default -> p.skipChildren();
+            }
+        }
+        expect(messageId != null, "Missing messageId field");
+        expect(participationId != null, "Missing participationId field");
+        return new TransactionEvent(messageId, sagaId, participationId, transactionId, idempotencyKey,
+                status, reason, payload);
+    }
+
+    static RefundRequested bindRefundRequested(JsonParser p, String payload) throws IOException {
+        UUID messageId = null, sagaId = null;
+        Long participationId = null;
+        String idempotencyKey = null;
+
+        expect(p.nextToken() == JsonToken.START_OBJECT, "payload is not a JSON object");
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "messageId" -> messageId = uuid(p);
+                case "sagaId" -> sagaId = uuid(p);
+                case "participationId" -> participationId = longValue(p);
+                case "idempotencyKey" -> idempotencyKey = p.getValueAsString();
+                default -> p.skipChildren();
+            }
+        }
+        expect(messageId != null, "Missing messageId field");
+        expect(participationId != null, "Missing participationId field");
+        expect(idempotencyKey != null, "Missing idempotencyKey field");
+        return new RefundRequested(messageId, sagaId, participationId, idempotencyKey, payload);
+    }
+
+    interface PayloadBinder<T> {
+        T bind(JsonParser payloadParser, String payload) throws IOException;
+    }
+
+    private static <T> T decode(JsonParser outer, PayloadBinder<T> binder) throws IOException {
+        try (outer) {
+            expect(outer.nextToken() == JsonToken.START_OBJECT, "envelope is not a JSON object");
+            while (outer.nextToken() == JsonToken.FIELD_NAME) {
+                boolean isPayload = "payload".equals(outer.currentName());
+                JsonToken value = outer.nextToken();
+                if (isPayload && value == JsonToken.VALUE_STRING) {
+                    char[] buf = outer.getTextCharacters();
+                    int offset = outer.getTextOffset();
+                    int length = outer.getTextLength();
+                    try (JsonParser inner = JSON.createParser(buf, offset, length)) {
+                        return binder.bind(inner, new String(buf, offset, length));
+                    }
+                }
+                outer.skipChildren();
+            }
+        }
+        throw new IllegalArgumentException("Envelope has no string payload");
+    }
+
+    static UUID uuid(JsonParser p) throws IOException {
+        return p.currentToken() == JsonToken.VALUE_NULL ? null : UUID.fromString(p.getText());
+    }
+
+    static Long longValue(JsonParser p) throws IOException {
+        return switch (p.currentToken()) {
+            case VALUE_NUMBER_INT -> p.getLongValue();
+            case VALUE_STRING -> Long.parseLong(p.getText());
+            default -> null;
+        };
+    }
+
+    // los-service writes the amount as a string, older producers as a number
+    static BigDecimal decimal(JsonParser p) throws IOException {
+        return switch (p.currentToken()) {
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> p.getDecimalValue();
+            case VALUE_STRING -> new BigDecimal(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+            default -> null;
+        };
+    }
+
+    static void expect(boolean condition, String message) {
+        if (!condition) throw new IllegalArgumentException(message);
+    }
+}
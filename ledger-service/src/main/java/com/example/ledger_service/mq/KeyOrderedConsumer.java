@@ -0,0 +1,377 @@
+package com.example.ledger_service.mq;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.springframework.dao.TransientDataAccessException;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Parallel record processing inside a partition. The poll thread hands each record to a
+// per-key queue; a pool of `concurrency` workers runs the head of every non-empty queue, so
+// records with the same key run one at a time in offset order while other keys keep going,
+// and the pool can be much wider than the partition count. Offsets are committed up to the
+// lowest record still in flight per partition, so a crash redelivers at most the records
+// that had not completed (the inbox drops the ones that had).
+@Slf4j
+public class KeyOrderedConsumer<T> {
+
+    public interface Processor<T> {
+        T parse(ConsumerRecord<String, byte[]> record) throws Exception;
+
+        // Records with equal keys are processed sequentially, in offset order
+        Object key(ConsumerRecord<String, byte[]> record, T event);
+
+        void process(ConsumerRecord<String, byte[]> record, T event) throws Exception;
+    }
+
+    // virtualThreads: the workers are virtual threads (blocking JDBC parks instead of holding a carrier);
+    // concurrency still bounds how many records run at once
+    public record Options(int concurrency, int maxInFlight, long commitIntervalMs, long maxBackoffMs,
+                          long shutdownTimeoutMs, boolean virtualThreads) {
+    }
+
+    private final String name;
+    private final Supplier<Consumer<String, byte[]>> consumerFactory;
+    private final Collection<String> topics;
+    private final Processor<T> processor;
+    private final Options options;
+
+    // Poll-thread state
+    private final Map<TopicPartition, PartitionOffsets> partitions = new ConcurrentHashMap<>();
+    private final Map<TopicPartition, Long> committed = new HashMap<>();
+    private Consumer<String, byte[]> consumer;
+
+    // Key queues: a key is present while one of its records is running; the deque holds the rest
+    private final Map<Object, ArrayDeque<Runnable>> keyQueues = new HashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    private ExecutorService workers;
+    private Thread pollThread;
+    private volatile boolean running;
+
+    public KeyOrderedConsumer(String name, Supplier<Consumer<String, byte[]>> consumerFactory,
+                              Collection<String> topics, Processor<T> processor, Options options) {
+        this.name = name;
+        this.consumerFactory = consumerFactory;
+        this.topics = List.copyOf(topics);
+        this.processor = processor;
+        this.options = options;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        ThreadFactory threads = options.virtualThreads()
+                ? Thread.ofVirtual().name(name + "-worker-", 1).factory()
+                : Thread.ofPlatform().name(name + "-worker-", 1).factory();
+        workers = Executors.newFixedThreadPool(options.concurrency(), threads);
+        pollThread = new Thread(this::pollLoop, name + "-poll");
+        pollThread.start();
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        Consumer<String, byte[]> c = consumer;
+        if (c != null) c.wakeup();
+        try {
+            pollThread.join(options.shutdownTimeoutMs() * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void pollLoop() {
+        consumer = consumerFactory.get();
+        try {
+            consumer.subscribe(topics, new Rebalance());
+            long nextCommit = System.currentTimeMillis() + options.commitIntervalMs();
+            while (running) {
+                ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(100));
+                for (ConsumerRecord<String, byte[]> record : records) {
+                    dispatch(record);
+                }
+                applyBackpressure();
+                if (System.currentTimeMillis() >= nextCommit) {
+                    commit(false);
+                    nextCommit = System.currentTimeMillis() + options.commitIntervalMs();
+                }
+            }
+        } catch (WakeupException e) {
+            if (running) throw e;
+        } catch (Exception e) {
+            log.error("{}: poll loop failed", name, e);
+        } finally {
+            workers.shutdown();
+            awaitQuietly(options.shutdownTimeoutMs());
+            try {
+                commit(true);
+            } catch (Exception e) {
+                log.warn("{}: final offset commit failed: {}", name, e.getMessage());
+            }
+            workers.shutdownNow();
+            consumer.close();
+            running = false;
+        }
+    }
+
+    private void dispatch(ConsumerRecord<String, byte[]> record) {
+        TopicPartition tp = new TopicPartition(record.topic(), record.partition());
+        PartitionOffsets offsets = partitions.computeIfAbsent(tp, k -> new PartitionOffsets());
+
+        T event;
+        try {
+            event = processor.parse(record);
+        } catch (Exception e) {
+            // A malformed record is skipped, just like KafkaErrorHandler does for the listeners
+            log.error("{}: skipping unreadable message at {}-{}@{}", name, record.topic(), record.partition(),
+                    record.offset(), e);
+            failed.increment();
+            offsets.seen(record.offset());
+            return;
+        }
+
+        offsets.begin(record.offset());
+        inFlight.incrementAndGet();
+        submit(processor.key(record, event), () -> run(record, event, offsets));
+    }
+
+    private void run(ConsumerRecord<String, byte[]> record, T event, PartitionOffsets offsets) {
+        boolean done = false;
+        try {
+            if (offsets.revoked) return; // the new owner redelivers it
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    processor.process(record, event);
+                    processed.increment();
+                    done = true;
+                    return;
+                } catch (TransientDataAccessException e) {
+                    // Retried in place: the record stays in flight, so its key waits and its offset is not committed
+                    if (!running || offsets.revoked) return;
+                    retries.increment();
+                    long backoff = Math.min(options.maxBackoffMs(), 10L << Math.min(attempt, 10));
+                    log.warn("{}: transient failure at {}-{}@{} (attempt {}), retrying in {} ms: {}", name,
+                            record.topic(), record.partition(), record.offset(), attempt, backoff, e.getMessage());
+                    Thread.sleep(backoff);
+                } catch (Exception e) {
+                    log.error("{}: failed to process message at {}-{}@{}", name, record.topic(), record.partition(),
+                            record.offset(), e);
+                    failed.increment();
+                    done = true;
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // An abandoned record (shutdown, revocation) keeps holding back the commit point
+            if (done) offsets.complete(record.offset());
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void submit(Object key, Runnable task) {
+        synchronized (keyQueues) {
+            ArrayDeque<Runnable> queue = keyQueues.get(key);
+            if (queue != null) {
+                queue.add(task);
+                return;
+            }
+            keyQueues.put(key, new ArrayDeque<>());
+        }
+        workers.execute(() -> runKey(key, task));
+    }
+
+    // Runs one task, then hands the key's next task back to the pool instead of looping,
+    // so a busy key does not monopolise a worker
+    private void runKey(Object key, Runnable task) {
+        try {
+            task.run();
+        } finally {
+            Runnable next;
+            synchronized (keyQueues) {
+                ArrayDeque<Runnable> queue = keyQueues.get(key);
+                next = queue.poll();
+                if (next == null) keyQueues.remove(key);
+            }
+            if (next != null) {
+                try {
+                    workers.execute(() -> runKey(key, next));
+                } catch (Exception e) {
+                    // Pool shut down: the rest of this key stays uncommitted and is redelivered
+                    synchronized (keyQueues) {
+                        keyQueues.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    // Stop fetching while too much is in flight; keep polling so the consumer stays in the group
+    private void applyBackpressure() {
+        int pending = inFlight.get();
+        if (pending >= options.maxInFlight() && consumer.paused().isEmpty()) {
+            consumer.pause(consumer.assignment());
+        } else if (pending <= options.maxInFlight() / 2 && !consumer.paused().isEmpty()) {
+            consumer.resume(consumer.paused());
+        }
+    }
+
+    private void commit(boolean sync) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        partitions.forEach((tp, p) -> {
+            long next = p.committable();
+            Long last = committed.get(tp);
+            if (next >= 0 && (last == null || next > last)) {
+                offsets.put(tp, new OffsetAndMetadata(next));
+            }
+        });
+        if (offsets.isEmpty()) return;
+
+        if (sync) {
+            consumer.commitSync(offsets);
+            offsets.forEach((tp, o) -> committed.put(tp, o.offset()));
+        } else {
+            consumer.commitAsync(offsets, (done, e) -> {
+                if (e != null) {
+                    log.warn("{}: offset commit failed: {}", name, e.getMessage());
+                } else {
+                    done.forEach((tp, o) -> committed.merge(tp, o.offset(), Math::max));
+                }
+            });
+        }
+    }
+
+    private boolean awaitQuietly(long timeoutMs) {
+        try {
+            return workers.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private class Rebalance implements ConsumerRebalanceListener {
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> revoked) {
+            // Give running records a chance to finish so the next owner starts past them
+            long deadline = System.currentTimeMillis() + options.shutdownTimeoutMs();
+            while (revoked.stream().map(partitions::get).anyMatch(p -> p != null && p.hasPending())
+                    && System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            try {
+                commit(true);
+            } catch (Exception e) {
+                log.warn("{}: commit on revocation failed: {}", name, e.getMessage());
+            }
+            forget(revoked);
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> assigned) {
+        }
+
+        @Override
+        public void onPartitionsLost(Collection<TopicPartition> lost) {
+            forget(lost);
+        }
+
+        private void forget(Collection<TopicPartition> tps) {
+            for (TopicPartition tp : tps) {
+                PartitionOffsets p = partitions.remove(tp);
+                if (p != null) p.revoked = true;
+                committed.remove(tp);
+            }
+        }
+    }
+
+    // In-flight offsets of one partition. Written by the poll thread (begin/seen) and the
+    // workers (complete); the commit point is the lowest in-flight offset, or one past the
+    // highest offset seen when nothing is in flight.
+    static class PartitionOffsets {
+        private final ConcurrentSkipListSet<Long> pending = new ConcurrentSkipListSet<>();
+        private volatile long highestSeen = -1;
+        volatile boolean revoked;
+
+        void begin(long offset) {
+            pending.add(offset);
+            seen(offset);
+        }
+
+        void seen(long offset) {
+            if (offset > highestSeen) highestSeen = offset;
+        }
+
+        void complete(long offset) {
+            pending.remove(offset);
+        }
+
+        boolean hasPending() {
+            return !pending.isEmpty();
+        }
+
+        long committable() {
+            long seen = highestSeen;
+            Iterator<Long> it = pending.iterator();
+            return it.hasNext() ? it.next() : seen + 1;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> lag = new HashMap<>();
+        partitions.forEach((tp, p) -> lag.put(tp.toString(), Map.of(
+                "committable", p.committable(),
+                "highestSeen", p.highestSeen,
+                "inFlight", p.pending.size())));
+        int activeKeys;
+        synchronized (keyQueues) {
+            activeKeys = keyQueues.size();
+        }
+        return Map.of(
+                "enabled", true,
+                "running", running,
+                "concurrency", options.concurrency(),
+                "inFlight", inFlight.get(),
+                "activeKeys", activeKeys,
+                "processed", processed.sum(),
+                "failed", failed.sum(),
+                "retries", retries.sum(),
+                "partitions", lag
+        );
+    }
+}
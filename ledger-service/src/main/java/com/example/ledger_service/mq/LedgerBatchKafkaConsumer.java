@@ -0,0 +1,63 @@
+package com.example.ledger_service.mq;
+
+import com.example.ledger_service.service.LedgerBatchService;
+import com.example.ledger_service.service.LedgerBatchService.Debit;
+import com.example.ledger_service.service.SagaMetrics;
+import com.example.ledger_service.service.Tracing;
+import com.example.ledger_service.util.EventTime;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnExpression("${app.kafka.batchListener:false} and !${app.kafka.parallel.enabled:false}")
+public class LedgerBatchKafkaConsumer {
+    private final LedgerBatchService service;
+    private final SagaMetrics metrics;
+    private final Tracing tracing;
+
+    @KafkaListener(topics = "ParticipationCreated", groupId = "ledger-service", batch = "true",
+            properties = "max.poll.records=${app.kafka.maxPollRecords:500}")
+    @Transactional
+    public void onParticipationCreated(List<ConsumerRecord<String, byte[]>> records) {
+        long received = System.nanoTime();
+        List<Debit> debits = new ArrayList<>(records.size());
+        // One span per record, each continuing its own trace; all of them end with the batch commit
+        List<Tracing.Span> spans = new ArrayList<>(records.size());
+        try {
+            for (ConsumerRecord<String, byte[]> record : records) {
+                metrics.received(record);
+                Tracing.Span span = tracing.consume(record).tag("batch", records.size());
+                spans.add(span);
+                try {
+                    debits.add(parse(record, span));
+                } catch (Exception e) {
+                    // A malformed record is skipped, just like KafkaErrorHandler does in single mode
+                    log.error("Skipping unreadable ParticipationCreated message at {}-{}@{}",
+                            record.topic(), record.partition(), record.offset(), e);
+                    span.error(e);
+                }
+            }
+            // The whole poll commits together, so every debit in it shares one pick-up -> commit time
+            metrics.debited(received, service.process(debits, "ParticipationCreated").size());
+        } finally {
+            for (int i = spans.size() - 1; i >= 0; i--) spans.get(i).close();
+        }
+    }
+
+    private Debit parse(ConsumerRecord<String, byte[]> record, Tracing.Span span) throws Exception {
+        ParticipationCreated e = SagaEventCodec.readParticipationCreated(record.value(), record.headers());
+        span.tag("sagaId", e.sagaId()).tag("participationId", e.participationId());
+        return new Debit(e.messageId(), e.sagaId(), e.userId(), e.participationId(), e.amount(),
+                e.idempotencyKey(), e.payload(), EventTime.of(record), span.context().header());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.ledger_service.mq;
+
+import com.example.ledger_service.service.InboxService;
+import com.example.ledger_service.service.LedgerService;
+import com.example.ledger_service.service.SagaMetrics;
+import com.example.ledger_service.service.Tracing;
+import com.example.ledger_service.util.EventTime;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+// ParticipationCreated through KeyOrderedConsumer instead of a @KafkaListener: debits of one
+// user stay in order (they touch the same wallet row), debits of different users run in
+// parallel even when they share a partition.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.kafka.parallel.enabled", havingValue = "true")
+public class ParallelLedgerConsumer implements SmartLifecycle {
+    private final LedgerService service;
+    private final InboxService inbox;
+    private final TransactionTemplate tx;
+    private final SagaMetrics metrics;
+    private final Tracing tracing;
+    private final KeyOrderedConsumer<ParticipationCreated> engine;
+
+    public ParallelLedgerConsumer(LedgerService service, InboxService inbox, TransactionTemplate tx, SagaMetrics metrics,
+                                  Tracing tracing,
+                                  ConsumerFactory<String, byte[]> consumerFactory,
+                                  @Value("${app.kafka.parallel.concurrency:32}") int concurrency,
+                                  @Value("${app.kafka.parallel.maxInFlight:2000}") int maxInFlight,
+                                  @Value("${app.kafka.parallel.commitIntervalMs:100}") long commitIntervalMs,
+                                  @Value("${app.kafka.parallel.maxBackoffMs:2000}") long maxBackoffMs,
+                                  @Value("${app.kafka.parallel.shutdownTimeoutMs:10000}") long shutdownTimeoutMs,
+                                  @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.service = service;
+        this.inbox = inbox;
+        this.tx = tx;
+        this.metrics = metrics;
+        this.tracing = tracing;
+        this.engine = new KeyOrderedConsumer<>("ledger-parallel", () -> createConsumer(consumerFactory),
+                List.of("ParticipationCreated"), new DebitProcessor(),
+                new KeyOrderedConsumer.Options(concurrency, maxInFlight, commitIntervalMs, maxBackoffMs,
+                        shutdownTimeoutMs, virtualThreads));
+    }
+
+    private static Consumer<String, byte[]> createConsumer(ConsumerFactory<String, byte[]> factory) {
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        return factory.createConsumer("ledger-service", "ledger-parallel", null, overrides);
+    }
+
+    private class DebitProcessor implements KeyOrderedConsumer.Processor<ParticipationCreated> {
+        @Override
+        public ParticipationCreated parse(ConsumerRecord<String, byte[]> record) throws Exception {
+            return SagaEventCodec.readParticipationCreated(record.value(), record.headers());
+        }
+
+        @Override
+        public Object key(ConsumerRecord<String, byte[]> record, ParticipationCreated e) {
+            return e.userId() != null ? e.userId() : e.messageId();
+        }
+
+        @Override
+        public void process(ConsumerRecord<String, byte[]> record, ParticipationCreated e) {
+            long received = metrics.received(record);
+            Tracing.Span span = tracing.consume(record).tag("sagaId", e.sagaId()).tag("participationId", e.participationId());
+            try {
+                tx.executeWithoutResult(s -> {
+                    if (!inbox.claim(e.messageId(), EventTime.of(record), e.payload(),
+                            "ParticipationCreated")) {
+                        log.info("Message already processed, skipping: {}", e.messageId());
+                        span.tag("duplicate", true);
+                        return;
+                    }
+                    service.processDebit(e.sagaId(), e.userId(), e.participationId(), e.amount(), e.idempotencyKey());
+                    metrics.debited(received, 1);
+                });
+            } catch (RuntimeException ex) {
+                // KeyOrderedConsumer retries the record; this attempt's span shows the failure
+                span.error(ex);
+                throw ex;
+            } finally {
+                span.close();
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        return engine.stats();
+    }
+
+    @Override
+    public void start() {
+        engine.start();
+    }
+
+    @Override
+    public void stop() {
+        engine.stop();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return engine.isRunning();
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.ledger_service.mq;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+// ParticipationCreated as published by los-service; payload is the event JSON kept for the inbox
+public record ParticipationCreated(UUID messageId, UUID sagaId, Long participationId, Long investorId,
+                                   Long userId, Long loanId, BigDecimal amount, String idempotencyKey,
+                                   String payload) {
+}
@@ -0,0 +1,52 @@
+package com.example.ledger_service.mq;
+
+import com.example.ledger_service.service.RefundService;
+import com.example.ledger_service.service.RefundService.Refund;
+import com.example.ledger_service.service.Tracing;
+import com.example.ledger_service.util.EventTime;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Always a batch listener, whatever app.kafka.batchListener says: a loan cancellation is a
+// burst of refunds and RefundService only coalesces the credits it sees in one poll
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RefundKafkaConsumer {
+    private final RefundService service;
+    private final Tracing tracing;
+
+    @KafkaListener(topics = "RefundRequested", groupId = "ledger-service", batch = "true",
+            properties = "max.poll.records=${app.refunds.maxPollRecords:2000}")
+    @Transactional
+    public void onRefundRequested(List<ConsumerRecord<String, byte[]>> records) {
+        List<Refund> refunds = new ArrayList<>(records.size());
+        List<Tracing.Span> spans = new ArrayList<>(records.size());
+        try {
+            for (ConsumerRecord<String, byte[]> record : records) {
+                Tracing.Span span = tracing.consume(record).tag("batch", records.size());
+                spans.add(span);
+                try {
+                    RefundRequested e = EnvelopeDecoder.refundRequested(record.value());
+                    span.tag("sagaId", e.sagaId()).tag("participationId", e.participationId());
+                    refunds.add(new Refund(e.messageId(), e.sagaId(), e.participationId(), e.idempotencyKey(),
+                            e.payload(), EventTime.of(record), span.context().header()));
+                } catch (Exception e) {
+                    log.error("Skipping unreadable RefundRequested message at {}-{}@{}",
+                            record.topic(), record.partition(), record.offset(), e);
+                    span.error(e);
+                }
+            }
+            service.process(refunds);
+        } finally {
+            for (int i = spans.size() - 1; i >= 0; i--) spans.get(i).close();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.ledger_service.mq;
+
+import java.util.UUID;
+
+// RefundRequested as published by los-service when it cancels a participation. The credit
+// is the participation's successful debit as recorded here, so the payload's amount and
+// wallet are not read; payload is the event JSON kept for the inbox
+public record RefundRequested(UUID messageId, UUID sagaId, Long participationId, String idempotencyKey,
+                              String payload) {
+}
@@ -0,0 +1,9 @@
+package com.example.ledger_service.mq;
+
+import java.util.UUID;
+
+// TransactionCompleted / TransactionFailed as published by ledger-service; payload is the
+// event JSON kept for the inbox
+public record TransactionEvent(UUID messageId, UUID sagaId, Long participationId, Long transactionId,
+                               String idempotencyKey, String status, String reason, String payload) {
+}
@@ -1,8 +1,20 @@
 package com.example.ledger_service.repo;
 
+
 import com.example.ledger_service.model.InboxMessage;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.Instant;
 import java.util.UUID;
 @Repository
-public interface InboxRepo extends JpaRepository<InboxMessage, UUID> {}
+public interface InboxRepo extends JpaRepository<InboxMessage, UUID> {
+    // One statement instead of existsById + save (which merges, i.e. probes the key again).
+    // receivedAt is the Kafka record timestamp: it is part of the partitioned primary key and
+    // is the same on every redelivery, so the conflict still catches duplicates.
+    @Modifying
+    @Query(value = "INSERT INTO inbox (message_id, payload, handler, received_at) VALUES (:id, :payload, :handler, :receivedAt) "
+            + "ON CONFLICT (message_id, received_at) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("id") UUID id, @Param("payload") String payload, @Param("handler") String handler,
+                       @Param("receivedAt") Instant receivedAt);
+}
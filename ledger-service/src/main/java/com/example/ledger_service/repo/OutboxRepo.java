@@ -1,13 +1,30 @@
 package com.example.ledger_service.repo;
 
 import com.example.ledger_service.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 @Repository
 public interface OutboxRepo extends JpaRepository<OutboxEvent, Long> {
+    // FOR UPDATE SKIP LOCKED (lock timeout -2): concurrent relays claim disjoint batches
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
     List<OutboxEvent> findTop100ByStatusOrderByIdAsc(String status);
 
+    @Modifying
+    @Query(value = "UPDATE outbox SET status = 'PUBLISHED', attempt_count = attempt_count + 1, last_attempt_at = now() "
+            + "WHERE id IN (:ids)", nativeQuery = true)
+    int markPublished(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "UPDATE outbox SET attempt_count = attempt_count + 1, last_attempt_at = now() "
+            + "WHERE id IN (:ids)", nativeQuery = true)
+    int recordFailedAttempt(@Param("ids") Collection<Long> ids);
+
     long countByStatus(String aNew);
 }
 
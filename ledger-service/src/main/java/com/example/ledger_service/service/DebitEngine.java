@@ -0,0 +1,244 @@
+package com.example.ledger_service.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Debits a wallet in a single statement: the balance check and decrement are one
+// conditional UPDATE, and the txn row and outbox event are written by the same statement.
+// Row locks replace the @Version check, so concurrent debits of one wallet queue on
+// the lock instead of failing; only lock conflicts and idempotency races are retried.
+// Striped wallets (see WalletStripes) are debited from one stripe instead.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DebitEngine {
+    // The TransactionCompleted/Failed event for the posted txn when :emitEvent; OutboxWriter
+    // appends the "event" CTE that writes it
+    private static final String EVENT_SOURCE_CTE = """
+            , event_source AS (
+                SELECT CASE p.status WHEN 'SUCCESS' THEN 'TransactionCompleted' ELSE 'TransactionFailed' END AS event_type,
+                       'Transaction' AS aggregate_type,
+                       a.id AS aggregate_id,
+                       json_build_object(
+                           'messageId', gen_random_uuid(),
+                           'sagaId', CAST(:sagaId AS uuid),
+                           'participationId', :participationId,
+                           'transactionId', a.id,
+                           'idempotencyKey', :idem,
+                           'status', p.status,
+                           'reason', CASE p.status WHEN 'SUCCESS' THEN NULL ELSE 'INSUFFICIENT_FUNDS' END)::text AS payload
+                  FROM posted p
+                 CROSS JOIN LATERAL (SELECT CASE p.status WHEN 'SUCCESS' THEN p.id ELSE :failedAggregateId END AS id) a
+                 WHERE :emitEvent
+            )
+            """;
+    private static final String EVENT_CTES = EVENT_SOURCE_CTE + "/*event*/";
+
+    // Plain wallets are debited in place; striped wallets take one funded stripe that no
+    // other transaction holds (SKIP LOCKED). STRIPE_BUSY sends the debit to the slow path,
+    // RETRY means the balance moved under us and the statement must see a fresh snapshot.
+    private static final String DEBIT_SQL_TEMPLATE = """
+            WITH seen AS (
+                SELECT 1 FROM txn WHERE :probe AND idempotency_key = :idem
+            ), target AS (
+                SELECT balance, stripes FROM wallet WHERE user_id = :userId
+            ), debit AS (
+                UPDATE wallet SET balance = balance - :amount, version = version + 1
+                 WHERE user_id = :userId AND stripes = 0 AND balance >= :amount AND NOT EXISTS (SELECT 1 FROM seen)
+                RETURNING balance
+            ), pick AS (
+                SELECT stripe FROM wallet_stripe
+                 WHERE user_id = :userId AND balance >= :amount AND NOT EXISTS (SELECT 1 FROM seen)
+                 ORDER BY random() LIMIT 1
+                   FOR UPDATE SKIP LOCKED
+            ), stripe_debit AS (
+                UPDATE wallet_stripe s SET balance = s.balance - :amount
+                  FROM pick WHERE s.user_id = :userId AND s.stripe = pick.stripe
+                RETURNING s.balance
+            ), outcome AS (
+                SELECT CASE WHEN EXISTS (SELECT 1 FROM seen) THEN 'DUPLICATE'
+                            WHEN NOT EXISTS (SELECT 1 FROM target) THEN 'NO_WALLET'
+                            WHEN EXISTS (SELECT 1 FROM debit) OR EXISTS (SELECT 1 FROM stripe_debit) THEN 'SUCCESS'
+                            WHEN (SELECT stripes FROM target) > 0 THEN 'STRIPE_BUSY'
+                            WHEN (SELECT balance FROM target) >= :amount THEN 'RETRY'
+                            ELSE 'FAILED' END AS status
+            ), posted AS (
+                INSERT INTO txn (user_id, participation_id, amount, status, idempotency_key)
+                SELECT :userId, :participationId, :amount, o.status, :idem
+                  FROM outcome o WHERE o.status IN ('SUCCESS', 'FAILED')
+                RETURNING id, status
+            )
+            """ + EVENT_CTES + """
+            SELECT (SELECT status FROM outcome) AS status, (SELECT id FROM posted) AS txn_id,
+                   (SELECT count(*) FROM event) AS events
+            """;
+
+    private static final String POST_SQL_TEMPLATE = """
+            WITH posted AS (
+                INSERT INTO txn (user_id, participation_id, amount, status, idempotency_key)
+                VALUES (:userId, :participationId, :amount, :status, :idem)
+                RETURNING id, status
+            )
+            """ + EVENT_CTES + """
+            SELECT status, id AS txn_id, (SELECT count(*) FROM event) AS events FROM posted
+            """;
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final Savepoints savepoints;
+    private final WalletStripes stripes;
+    private final HotWalletTracker hotWallets;
+    private final IdempotencyFilter idempotencyFilter;
+    private final OutboxWriter outboxWriter;
+    private final StatusCounters counters;
+    private final SagaMetrics metrics;
+    private final Tracing tracing;
+
+    private String debitSql;
+    private String postSql;
+
+    @Value("${app.debit.maxAttempts:5}")
+    int maxAttempts;
+
+    @Value("${app.debit.backoffMs:5}")
+    long backoffMs;
+
+    public record Result(String status, Long transactionId) {}
+
+    @PostConstruct
+    void buildStatements() {
+        debitSql = DEBIT_SQL_TEMPLATE.replace("/*event*/", outboxWriter.eventCte("event_source"));
+        postSql = POST_SQL_TEMPLATE.replace("/*event*/", outboxWriter.eventCte("event_source"));
+    }
+
+    // emitEvent=false is the pure sync path: txn row only, no outbox event
+    @Transactional
+    public Result debit(UUID sagaId, Long userId, Long participationId, BigDecimal amount, String idem, boolean emitEvent) {
+        return debitInTransaction(sagaId, userId, participationId, amount, idem, emitEvent);
+    }
+
+    // The same debit in the caller's transaction, for callers that put it under a savepoint of
+    // their own (DebitGroupCommitter). Not @Transactional on purpose: a failure leaving a
+    // transactional proxy marks the whole transaction rollback-only, which rolling back the
+    // savepoint does not undo.
+    public Result debitInTransaction(UUID sagaId, Long userId, Long participationId, BigDecimal amount, String idem,
+                                     boolean emitEvent) {
+        var params = new MapSqlParameterSource()
+                .addValue("sagaId", sagaId == null ? null : sagaId.toString())
+                .addValue("userId", userId)
+                .addValue("participationId", participationId)
+                .addValue("amount", amount)
+                .addValue("idem", idem)
+                // Failed debits keep the historical aggregate id of userId + participationId
+                .addValue("failedAggregateId", userId + participationId)
+                .addValue("emitEvent", emitEvent)
+                .addValue("traceparent", tracing.currentHeader());
+
+        hotWallets.enter(userId);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    // Skip the unique-index probe when the filter has never seen the key; if it
+                    // is a duplicate after all, the txn insert fails and the retry probes
+                    boolean probe = attempt > 1 || idempotencyFilter.mightContain(idem);
+                    params.addValue("probe", probe);
+                    Result r = savepoints.isolate(() -> attempt(params, userId, amount));
+                    if (attempt == 1) {
+                        idempotencyFilter.recordLookup(probe, "DUPLICATE".equals(r.status()));
+                    }
+                    idempotencyFilter.addOnCommit(idem);
+                    metrics.debitOutcome(r.status(), 1);
+                    if (r.transactionId() != null) {
+                        counters.addOnCommit(StatusCounters.TXN, r.status(), 1);
+                        if (emitEvent) outboxWriter.countOnCommit(1);
+                    }
+                    return r;
+                } catch (DuplicateKeyException e) {
+                    // A concurrent insert of the same idempotency key, committed by the time the
+                    // insert fails: retry at once, the probe now answers DUPLICATE. Not wallet contention.
+                    if (attempt >= maxAttempts) {
+                        log.error("Debit gave up after {} attempts - userId: {}, idempotencyKey: {}", attempt, userId, idem);
+                        throw e;
+                    }
+                    log.debug("Idempotency race on attempt {} - userId: {}, idempotencyKey: {}", attempt, userId, idem);
+                } catch (ConcurrencyFailureException e) {
+                    // Deadlock, lock timeout or a balance that moved under our snapshot; the next
+                    // attempt sees the committed state
+                    hotWallets.recordContention(userId);
+                    metrics.conflict();
+                    if (attempt >= maxAttempts) {
+                        log.error("Debit gave up after {} attempts - userId: {}, idempotencyKey: {}", attempt, userId, idem);
+                        throw e;
+                    }
+                    log.warn("Debit conflict on attempt {} - userId: {}, idempotencyKey: {}, error: {}",
+                            attempt, userId, idem, e.getMessage());
+                    backoff(attempt);
+                }
+            }
+        } finally {
+            hotWallets.exit(userId);
+        }
+    }
+
+    private Result attempt(MapSqlParameterSource params, Long userId, BigDecimal amount) {
+        Result r = jdbc.queryForObject(debitSql, params, this::mapResult);
+        switch (r.status()) {
+            case "NO_WALLET" -> {
+                log.error("Wallet not found for userId: {}", userId);
+                throw new RuntimeException("Wallet not found for userId: " + userId);
+            }
+            case "RETRY" -> throw new CannotAcquireLockException(
+                    "Balance of wallet " + userId + " changed under the statement snapshot");
+            case "STRIPE_BUSY" -> {
+                return debitAcrossStripes(params, userId, amount);
+            }
+            default -> {
+                return r;
+            }
+        }
+    }
+
+    // Slow path for striped wallets: every funded stripe was locked or none alone covered
+    // the amount. Lock the wallet row, then all stripes, and drain them largest first.
+    private Result debitAcrossStripes(MapSqlParameterSource params, Long userId, BigDecimal amount) {
+        var wallet = jdbc.getJdbcTemplate().queryForMap(
+                "SELECT balance, stripes FROM wallet WHERE user_id = ? FOR UPDATE", userId);
+        if (((Number) wallet.get("stripes")).intValue() == 0) {
+            throw new CannotAcquireLockException("Wallet " + userId + " left striped mode concurrently");
+        }
+
+        boolean funded = stripes.withdraw(userId, (BigDecimal) wallet.get("balance"), amount);
+        log.debug("Striped debit via slow path - userId: {}, amount: {}, funded: {}", userId, amount, funded);
+        return jdbc.queryForObject(postSql,
+                new MapSqlParameterSource(params.getValues()).addValue("status", funded ? "SUCCESS" : "FAILED"),
+                this::mapResult);
+    }
+
+    private Result mapResult(ResultSet rs, int rowNum) throws SQLException {
+        return new Result(rs.getString("status"), (Long) rs.getObject("txn_id"));
+    }
+
+    private void backoff(int attempt) {
+        long cap = backoffMs << Math.min(attempt - 1, 6);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off a debit retry", ie);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.ledger_service.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import com.example.ledger_service.util.TraceParent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+// Group commit for debits that arrive without a transaction of their own (the HTTP path):
+// callers park on a future while a flusher collects everything that arrives within windowMs
+// of the first debit, or maxBatch debits, and runs them in one transaction, each under its
+// own savepoint. One commit (and one WAL fsync) then covers the whole group; a debit that
+// fails only rolls back its savepoint and fails its own caller.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.debit.groupCommit.enabled", havingValue = "true")
+public class DebitGroupCommitter {
+    private final DebitEngine engine;
+    private final Savepoints savepoints;
+    private final TransactionTemplate tx;
+    private final Tracing tracing;
+    private final DistributionSummary batchSize;
+    private final Timer queueDelay;
+    private final Timer commitTime;
+    private final LongAdder overflow = new LongAdder();
+
+    @Value("${app.debit.groupCommit.windowMs:2}")
+    long windowMs;
+
+    @Value("${app.debit.groupCommit.maxBatch:64}")
+    int maxBatch;
+
+    @Value("${app.debit.groupCommit.flushers:2}")
+    int flushers;
+
+    @Value("${app.debit.groupCommit.queueCapacity:10000}")
+    int queueCapacity;
+
+    @Value("${app.debit.groupCommit.callerTimeoutMs:30000}")
+    long callerTimeoutMs;
+
+    private BlockingQueue<Request> queue;
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    // trace is the caller's context, so the debit's outbox event joins the caller's trace
+    record Request(UUID sagaId, Long userId, Long participationId, BigDecimal amount, String idem,
+                   TraceParent trace, long enqueuedAt, CompletableFuture<DebitEngine.Result> result) {}
+
+    public DebitGroupCommitter(DebitEngine engine, Savepoints savepoints, TransactionTemplate tx, Tracing tracing,
+                               MeterRegistry meters) {
+        this.engine = engine;
+        this.tracing = tracing;
+        this.savepoints = savepoints;
+        this.tx = tx;
+        this.batchSize = DistributionSummary.builder("ledger.debit.group.size")
+                .description("Debits committed per group commit")
+                .publishPercentiles(0.5, 0.99)
+                .register(meters);
+        this.queueDelay = Timer.builder("ledger.debit.group.queue.delay")
+                .description("Time a debit waited before its group started")
+                .publishPercentiles(0.5, 0.99)
+                .register(meters);
+        this.commitTime = Timer.builder("ledger.debit.group.commit")
+                .description("Time to apply and commit one group")
+                .register(meters);
+    }
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        for (int i = 0; i < flushers; i++) {
+            Thread t = new Thread(this::flushLoop, "debit-group-commit-" + i);
+            t.setDaemon(true);
+            t.start();
+            threads.add(t);
+        }
+        log.info("Debit group commit on: window {} ms, max {} debits, {} flushers", windowMs, maxBatch, flushers);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        for (Thread t : threads) {
+            t.interrupt();
+            t.join(callerTimeoutMs);
+        }
+        Request r;
+        while ((r = queue.poll()) != null) {
+            r.result().completeExceptionally(new IllegalStateException("Ledger is shutting down"));
+        }
+    }
+
+    // Blocks until the group holding this debit has committed (or failed)
+    public DebitEngine.Result debit(UUID sagaId, Long userId, Long participationId, BigDecimal amount, String idem) {
+        var request = new Request(sagaId, userId, participationId, amount, idem, tracing.current(),
+                System.nanoTime(), new CompletableFuture<>());
+        if (!running || !queue.offer(request)) {
+            // Queue full: do not add waiting time on top of an overload, debit directly
+            overflow.increment();
+            return engine.debit(sagaId, userId, participationId, amount, idem, true);
+        }
+        try {
+            return request.result().get(callerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Debit not committed within " + callerTimeoutMs + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for group commit", e);
+        }
+    }
+
+    private void flushLoop() {
+        List<Request> group = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                Request first = queue.take();
+                group.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMs);
+                while (group.size() < maxBatch) {
+                    long left = deadline - System.nanoTime();
+                    Request next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    group.add(next);
+                }
+                commit(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Group commit flusher failed", e);
+            } finally {
+                for (Request r : group) {
+                    r.result().completeExceptionally(new IllegalStateException("Group commit aborted"));
+                }
+                group.clear();
+            }
+        }
+    }
+
+    // Package-private for DebitGroupCommitTests, which commits a group of its own making
+    void commit(List<Request> group) {
+        long start = System.nanoTime();
+        for (Request r : group) {
+            queueDelay.record(start - r.enqueuedAt(), TimeUnit.NANOSECONDS);
+        }
+        batchSize.record(group.size());
+
+        // Wallet rows are locked in user id order (stable, so one user's debits keep their arrival order)
+        List<Request> ordered = new ArrayList<>(group);
+        ordered.sort(Comparator.comparing(Request::userId, Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        Object[] outcomes = new Object[ordered.size()];
+        try {
+            tx.executeWithoutResult(s -> {
+                for (int i = 0; i < ordered.size(); i++) {
+                    Request r = ordered.get(i);
+                    try {
+                        outcomes[i] = savepoints.isolate(() -> tracing.within(r.trace(), () ->
+                                engine.debitInTransaction(r.sagaId(), r.userId(), r.participationId(), r.amount(), r.idem(), true)));
+                    } catch (RuntimeException e) {
+                        outcomes[i] = e;
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // The commit itself failed: none of the group's debits happened
+            log.error("Group commit of {} debits failed: {}", ordered.size(), e.getMessage());
+            ordered.forEach(r -> r.result().completeExceptionally(e));
+            return;
+        } finally {
+            commitTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        for (int i = 0; i < ordered.size(); i++) {
+            if (outcomes[i] instanceof DebitEngine.Result r) {
+                ordered.get(i).result().complete(r);
+            } else {
+                ordered.get(i).result().completeExceptionally((RuntimeException) outcomes[i]);
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "enabled", true,
+                "windowMs", windowMs,
+                "maxBatch", maxBatch,
+                "groups", batchSize.count(),
+                "meanGroupSize", batchSize.mean(),
+                "maxGroupSize", batchSize.max(),
+                "meanQueueDelayMs", queueDelay.mean(TimeUnit.MILLISECONDS),
+                "maxQueueDelayMs", queueDelay.max(TimeUnit.MILLISECONDS),
+                "meanCommitMs", commitTime.mean(TimeUnit.MILLISECONDS),
+                "overflow", overflow.sum()
+        );
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.ledger_service.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts contended debits per wallet (a debit that starts while another debit of the
+// same wallet is in flight, or that hit a lock conflict) and promotes wallets that
+// cross the threshold within one window to striped mode.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HotWalletTracker {
+    private final WalletStripes stripes;
+
+    @Value("${app.wallet.striping.enabled:false}")
+    boolean enabled;
+
+    @Value("${app.wallet.striping.promoteThreshold:50}")
+    long promoteThreshold;
+
+    private final ConcurrentHashMap<Long, Integer> inFlight = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<Long, LongAdder> contended = new ConcurrentHashMap<>();
+    private volatile Map<Long, Long> lastWindow = Map.of();
+
+    public void enter(Long userId) {
+        if (inFlight.merge(userId, 1, Integer::sum) > 1) {
+            recordContention(userId);
+        }
+    }
+
+    public void exit(Long userId) {
+        inFlight.computeIfPresent(userId, (k, n) -> n == 1 ? null : n - 1);
+    }
+
+    public void recordContention(Long userId) {
+        contended.computeIfAbsent(userId, k -> new LongAdder()).increment();
+    }
+
+    @Scheduled(fixedDelayString = "${app.wallet.striping.windowMs:10000}")
+    public void promoteHotWallets() {
+        var window = contended;
+        contended = new ConcurrentHashMap<>();
+
+        Map<Long, Long> hottest = new LinkedHashMap<>();
+        window.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), e.getValue().sum()))
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(10)
+                .forEach(e -> hottest.put(e.getKey(), e.getValue()));
+        lastWindow = hottest;
+
+        if (!enabled) return;
+
+        window.forEach((userId, count) -> {
+            if (count.sum() < promoteThreshold) return;
+            try {
+                if (stripes.promote(userId)) {
+                    log.info("Wallet {} had {} contended debits in the last window, now striped", userId, count.sum());
+                }
+            } catch (Exception e) {
+                log.warn("Could not promote wallet {} to striped mode: {}", userId, e.getMessage());
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.wallet.striping.rebalanceMs:5000}")
+    public void rebalanceStripes() {
+        if (!enabled) return;
+
+        for (Long userId : stripes.skewedWallets()) {
+            try {
+                stripes.rebalance(userId);
+            } catch (Exception e) {
+                log.debug("Skipping rebalance of wallet {} this round: {}", userId, e.getMessage());
+            }
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        return Map.of(
+                "stripingEnabled", enabled,
+                "promoteThreshold", promoteThreshold,
+                "stripedWallets", stripes.stripedWallets(),
+                "contendedLastWindow", lastWindow
+        );
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.util.OffHeapBloomFilter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bloom filter of every txn.idempotency_key. A "no" answer means the key has never been
+// committed, so the debit can skip the probe of the unique index; a "maybe" falls back
+// to the database. Until the first load completes every answer is "maybe".
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdempotencyFilter {
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+
+    @Value("${app.idempotencyFilter.enabled:true}")
+    boolean enabled;
+
+    @Value("${app.idempotencyFilter.expectedKeys:10000000}")
+    long expectedKeys;
+
+    @Value("${app.idempotencyFilter.fpp:0.01}")
+    double fpp;
+
+    private volatile OffHeapBloomFilter current;
+    private volatile OffHeapBloomFilter building;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private volatile Instant lastBuiltAt;
+    private volatile long lastBuildMillis;
+
+    private final LongAdder probesSkipped = new LongAdder();
+    private final LongAdder probesMade = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (enabled) {
+            Thread.ofVirtual().name("idempotency-filter-load").start(this::rebuild);
+        }
+    }
+
+    public boolean mightContain(String key) {
+        var f = current;
+        return f == null || f.mightContain(key);
+    }
+
+    // Called once the outcome of a debit is known: probed=false means the filter ruled the
+    // key out; a probed key that was not a duplicate was a false positive
+    public void recordLookup(boolean probed, boolean duplicate) {
+        if (!probed) {
+            probesSkipped.increment();
+            return;
+        }
+        probesMade.increment();
+        if (!duplicate && current != null) {
+            falsePositives.increment();
+        }
+    }
+
+    // The key becomes visible to the filter only once its txn row is committed
+    public void addOnCommit(String key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add(key);
+            }
+        });
+    }
+
+    private void add(String key) {
+        var f = current;
+        if (f != null) f.put(key);
+        var b = building;
+        if (b != null) b.put(key);
+    }
+
+    // Builds a fresh filter from the txn table while the old one keeps serving. Keys
+    // committed during the scan are written to both filters, so none is missed.
+    public boolean rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            var fresh = OffHeapBloomFilter.create(expectedKeys, fpp);
+            building = fresh;
+            tx.executeWithoutResult(s -> jdbc.query(con -> {
+                var ps = con.prepareStatement("SELECT idempotency_key FROM txn");
+                ps.setFetchSize(10_000);
+                return ps;
+            }, rs -> { fresh.put(rs.getString(1)); }));
+
+            current = fresh;
+            lastBuiltAt = Instant.now();
+            lastBuildMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            falsePositives.reset();
+            probesMade.reset();
+            probesSkipped.reset();
+            log.info("Idempotency filter built - keys: {}, memory: {} bytes, expected fpp: {}, took {} ms",
+                    fresh.approximateSize(), fresh.memoryBytes(), fresh.expectedFpp(), lastBuildMillis);
+            return true;
+        } catch (Exception e) {
+            log.error("Idempotency filter build failed, keeping the previous filter: {}", e.getMessage(), e);
+            return false;
+        } finally {
+            building = null;
+            rebuilding.set(false);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        var f = current;
+        long made = probesMade.sum();
+        long skipped = probesSkipped.sum();
+        long fp = falsePositives.sum();
+        return Map.of(
+                "enabled", enabled,
+                "ready", f != null,
+                "rebuilding", rebuilding.get(),
+                "keys", f == null ? 0 : f.approximateSize(),
+                "memoryBytes", f == null ? 0 : f.memoryBytes(),
+                "expectedFpp", f == null ? 1.0 : f.expectedFpp(),
+                // share of genuinely new keys that still had to be probed
+                "observedFpp", fp + skipped == 0 ? 0.0 : (double) fp / (fp + skipped),
+                "probesSkipped", skipped,
+                "probesMade", made,
+                "lastBuiltAt", lastBuiltAt == null ? "never" : lastBuiltAt.toString()
+        );
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.repo.InboxRepo;
+import com.example.ledger_service.util.BoundedIdCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+// Inbox dedup: a bounded LRU of message ids known to be committed to the inbox answers
+// redeliveries without touching the database; everything else goes through a single
+// insert-if-absent. Ids enter the cache only after commit, so a rolled-back message is
+// never mistaken for a processed one.
+@Slf4j
+@Service
+public class InboxService {
+    private final InboxRepo inbox;
+    private final JdbcTemplate jdbc;
+    private final StatusCounters counters;
+    private final SagaMetrics metrics;
+    private final BoundedIdCache<UUID> recent;
+
+    public record Message(UUID messageId, String payload, Instant receivedAt) {}
+
+    public InboxService(InboxRepo inbox, JdbcTemplate jdbc, StatusCounters counters, SagaMetrics metrics,
+                        @Value("${app.inbox.cacheSize:100000}") int cacheSize) {
+        this.inbox = inbox;
+        this.jdbc = jdbc;
+        this.counters = counters;
+        this.metrics = metrics;
+        this.recent = new BoundedIdCache<>(cacheSize, 16);
+    }
+
+    // true if the message is new and is now recorded in the caller's transaction;
+    // receivedAt is the Kafka record timestamp, which picks the daily inbox partition
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean claim(UUID messageId, Instant receivedAt, String payload, String handler) {
+        if (recent.contains(messageId)) {
+            metrics.redelivered(1);
+            return false;
+        }
+        if (inbox.insertIfAbsent(messageId, payload, handler, receivedAt) == 0) {
+            recent.add(messageId);
+            metrics.redelivered(1);
+            return false;
+        }
+        rememberOnCommit(List.of(messageId));
+        counters.addOnCommit(StatusCounters.INBOX, StatusCounters.ROWS, 1);
+        return true;
+    }
+
+    // claim() for a whole poll with one multi-row insert: the items whose message is new (the
+    // first one per message id), in poll order, now recorded in the caller's transaction
+    @Transactional(propagation = Propagation.MANDATORY)
+    public <T> List<T> claimAll(List<T> items, Function<T, Message> message, String handler) {
+        Map<UUID, T> unique = new LinkedHashMap<>();
+        Map<UUID, Message> messages = new LinkedHashMap<>();
+        for (T item : items) {
+            Message m = message.apply(item);
+            // Redeliveries of recently committed messages are answered by the cache
+            if (!recent.contains(m.messageId()) && unique.putIfAbsent(m.messageId(), item) == null) {
+                messages.put(m.messageId(), m);
+            }
+        }
+        if (unique.isEmpty()) {
+            metrics.redelivered(items.size());
+            return List.of();
+        }
+
+        StringBuilder sql = new StringBuilder("INSERT INTO inbox (message_id, payload, handler, received_at) VALUES ");
+        List<Object> args = new ArrayList<>(messages.size() * 4);
+        for (Message m : messages.values()) {
+            if (!args.isEmpty()) sql.append(',');
+            sql.append("(?, ?, ?, ?)");
+            args.add(m.messageId());
+            args.add(m.payload());
+            args.add(handler);
+            args.add(Timestamp.from(m.receivedAt()));
+        }
+        sql.append(" ON CONFLICT (message_id, received_at) DO NOTHING RETURNING message_id");
+
+        Set<UUID> inserted = new HashSet<>(jdbc.queryForList(sql.toString(), UUID.class, args.toArray()));
+        metrics.redelivered(items.size() - inserted.size());
+        counters.addOnCommit(StatusCounters.INBOX, StatusCounters.ROWS, inserted.size());
+        // Conflicting ids are already committed by an earlier delivery
+        rememberOnCommit(unique.keySet().stream().filter(id -> !inserted.contains(id)).toList());
+        return unique.entrySet().stream().filter(e -> inserted.contains(e.getKey())).map(Map.Entry::getValue).toList();
+    }
+
+    public boolean isKnown(UUID messageId) {
+        return recent.contains(messageId);
+    }
+
+    public void rememberOnCommit(Collection<UUID> messageIds) {
+        if (messageIds.isEmpty()) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            messageIds.forEach(recent::add);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                messageIds.forEach(recent::add);
+            }
+        });
+    }
+
+    public Map<String, Object> cacheStats() {
+        return recent.stats();
+    }
+}
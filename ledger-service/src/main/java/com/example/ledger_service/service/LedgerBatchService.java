@@ -0,0 +1,247 @@
+package com.example.ledger_service.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.*;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LedgerBatchService {
+    private final JdbcTemplate jdbc;
+    private final Savepoints savepoints;
+    private final WalletStripes stripes;
+    private final IdempotencyFilter idempotencyFilter;
+    private final InboxService inboxService;
+    private final OutboxWriter outboxWriter;
+    private final StatusCounters counters;
+    private final SagaMetrics metrics;
+
+    // receivedAt is the Kafka record timestamp and selects the inbox partition; traceparent
+    // is stamped on the debit's outbox event
+    public record Debit(UUID messageId, UUID sagaId, Long userId, Long participationId,
+                        BigDecimal amount, String idempotencyKey, String payload, Instant receivedAt,
+                        String traceparent) {}
+
+    public record Outcome(String status, Long transactionId, String reason) {}
+
+    // Dedups the poll against the inbox with one multi-row insert, then applies the
+    // surviving debits with JDBC batching. If the batch fails, every debit is retried
+    // under its own savepoint so a single bad record cannot roll back the others. A debit
+    // that still fails is answered with TransactionFailed, unless the failure is transient
+    // (lock timeout, deadlock, serialization), which fails the poll so it is redelivered.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<UUID, Outcome> process(List<Debit> debits, String handler) {
+        List<Debit> fresh = claimInbox(debits, handler);
+        log.info("Batch of {} ParticipationCreated messages, {} new after inbox dedup", debits.size(), fresh.size());
+        if (fresh.isEmpty()) {
+            return Map.of();
+        }
+
+        try {
+            var outcomes = savepoints.isolate(() -> apply(fresh, false, true));
+            inboxService.rememberOnCommit(fresh.stream().map(Debit::messageId).toList());
+            countOutcomes(outcomes.values());
+            return outcomes;
+        } catch (RuntimeException e) {
+            log.warn("Batch apply of {} debits failed, isolating records: {}", fresh.size(), e.getMessage());
+        }
+
+        Map<UUID, Outcome> outcomes = new LinkedHashMap<>();
+        for (Debit d : fresh) {
+            try {
+                // Probe regardless of the filter: the key may have been committed by another instance
+                outcomes.putAll(savepoints.isolate(() -> apply(List.of(d), true, true)));
+                inboxService.rememberOnCommit(List.of(d.messageId()));
+            } catch (TransientDataAccessException e) {
+                // Not the record's fault: roll the whole poll back so the container redelivers it
+                // (records before this one are in the same transaction, so none of them may be acked)
+                log.warn("Debit hit a transient error, failing the batch for redelivery - messageId: {}, error: {}",
+                        d.messageId(), e.getMessage());
+                throw e;
+            } catch (RuntimeException e) {
+                log.error("Debit failed - messageId: {}, userId: {}, participationId: {}, error: {}",
+                        d.messageId(), d.userId(), d.participationId(), e.getMessage(), e);
+                // Redelivery would fail the same way: answer LOS so the participation leaves PENDING
+                outcomes.put(d.messageId(), rejected(d, e));
+                inboxService.rememberOnCommit(List.of(d.messageId()));
+            }
+        }
+        countOutcomes(outcomes.values());
+        return outcomes;
+    }
+
+    // HTTP batches: no inbox (the idempotency keys dedup retries), same batch-then-isolate
+    // strategy as process(). Outcomes are in request order; a debit that fails on its own
+    // is reported as FAILED with the error as reason instead of failing the whole request.
+    // Without events the debits behave like /wallet/sync/debit (no outbox rows).
+    @Transactional
+    public List<Outcome> applyRequests(List<Debit> debits, boolean emitEvents) {
+        Map<UUID, Outcome> outcomes;
+        try {
+            outcomes = savepoints.isolate(() -> apply(debits, false, emitEvents));
+        } catch (RuntimeException e) {
+            log.warn("Batch apply of {} requested debits failed, isolating records: {}", debits.size(), e.getMessage());
+            outcomes = new HashMap<>();
+            for (Debit d : debits) {
+                try {
+                    outcomes.putAll(savepoints.isolate(() -> apply(List.of(d), true, emitEvents)));
+                } catch (RuntimeException ex) {
+                    log.error("Debit failed - userId: {}, participationId: {}, error: {}",
+                            d.userId(), d.participationId(), ex.getMessage());
+                    outcomes.put(d.messageId(), new Outcome("FAILED", null, ex.getMessage()));
+                }
+            }
+        }
+        countOutcomes(outcomes.values());
+        List<Outcome> inOrder = new ArrayList<>(debits.size());
+        for (Debit d : debits) {
+            inOrder.add(outcomes.get(d.messageId()));
+        }
+        return inOrder;
+    }
+
+    // TransactionFailed with the error as reason and no txn; the inbox row stays, so a
+    // redelivery is a duplicate
+    private Outcome rejected(Debit d, RuntimeException e) {
+        String reason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        Long aggregateId = d.userId() + d.participationId();
+        outboxWriter.append(List.of(new OutboxWriter.Event("TransactionFailed", "Transaction", aggregateId, LedgerService.transactionPayload(
+                "TransactionFailed", d.sagaId(), d.participationId(), aggregateId, d.idempotencyKey(), reason), d.traceparent())));
+        return new Outcome("FAILED", null, reason);
+    }
+
+    private List<Debit> claimInbox(List<Debit> debits, String handler) {
+        return inboxService.claimAll(debits, d -> new InboxService.Message(d.messageId(), d.payload(), d.receivedAt()), handler);
+    }
+
+    // Counted from the outcomes that survived, not inside apply(), whose work may be rolled
+    // back to its savepoint and redone record by record. Errors (FAILED without a txn) are
+    // not debit outcomes.
+    private void countOutcomes(Collection<Outcome> outcomes) {
+        Map<String, Long> byStatus = new HashMap<>();
+        for (Outcome o : outcomes) {
+            if (o.transactionId() != null || "DUPLICATE".equals(o.status())) {
+                byStatus.merge(o.status(), 1L, Long::sum);
+            }
+        }
+        byStatus.forEach(metrics::debitOutcome);
+    }
+
+    private Map<UUID, Outcome> apply(List<Debit> debits, boolean probeAll, boolean emitEvents) {
+        String[] keys = debits.stream().map(Debit::idempotencyKey).distinct().toArray(String[]::new);
+        Long[] userIds = debits.stream().map(Debit::userId).distinct().toArray(Long[]::new);
+
+        // Only keys the idempotency filter cannot rule out need a look at the txn table
+        String[] maybeSeen = probeAll ? keys
+                : Arrays.stream(keys).filter(idempotencyFilter::mightContain).toArray(String[]::new);
+        Set<String> seenKeys = new HashSet<>();
+        if (maybeSeen.length > 0) {
+            seenKeys.addAll(jdbc.query(
+                    "SELECT idempotency_key FROM txn WHERE idempotency_key = ANY(?)",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", maybeSeen)),
+                    (rs, i) -> rs.getString(1)));
+        }
+
+        // Lock in user_id order so concurrent batches cannot deadlock on each other
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        Map<Long, BigDecimal> stripedHome = new HashMap<>();
+        jdbc.query("SELECT user_id, balance, stripes FROM wallet WHERE user_id = ANY(?) ORDER BY user_id FOR UPDATE",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", userIds)),
+                rs -> {
+                    balances.put(rs.getLong(1), rs.getBigDecimal(2));
+                    if (rs.getInt(3) > 0) stripedHome.put(rs.getLong(1), rs.getBigDecimal(2));
+                });
+        // A striped wallet's spendable balance is its home balance plus all of its stripes
+        Map<Long, BigDecimal> stripedAvailable = new HashMap<>();
+        for (var e : new TreeMap<>(stripedHome).entrySet()) {
+            BigDecimal available = stripes.lockStripes(e.getKey()).values().stream().reduce(e.getValue(), BigDecimal::add);
+            balances.put(e.getKey(), available);
+            stripedAvailable.put(e.getKey(), available);
+        }
+
+        Map<UUID, Outcome> outcomes = new LinkedHashMap<>();
+        List<Debit> posted = new ArrayList<>();
+        List<String> statuses = new ArrayList<>();
+        Set<Long> touched = new HashSet<>();
+        for (Debit d : debits) {
+            if (!seenKeys.add(d.idempotencyKey())) {
+                log.warn("Duplicate transaction detected for idempotencyKey: {}", d.idempotencyKey());
+                outcomes.put(d.messageId(), new Outcome("DUPLICATE", null, null));
+                continue;
+            }
+
+            BigDecimal balance = balances.get(d.userId());
+            if (balance == null) {
+                throw new RuntimeException("Wallet not found for userId: " + d.userId());
+            }
+
+            if (balance.compareTo(d.amount()) < 0) {
+                log.warn("Insufficient funds for userId: {}, required: {}, available: {}",
+                        d.userId(), d.amount(), balance);
+                statuses.add("FAILED");
+            } else {
+                balances.put(d.userId(), balance.subtract(d.amount()));
+                touched.add(d.userId());
+                statuses.add("SUCCESS");
+            }
+            posted.add(d);
+        }
+        if (posted.isEmpty()) {
+            return outcomes;
+        }
+
+        List<Long> txIds = jdbc.queryForList(
+                "SELECT nextval('txn_id_seq') FROM generate_series(1, ?)", Long.class, posted.size());
+
+        List<Object[]> walletRows = new ArrayList<>(touched.size());
+        for (Long userId : touched) {
+            if (stripedAvailable.containsKey(userId)) {
+                stripes.withdraw(userId, stripedHome.get(userId), stripedAvailable.get(userId).subtract(balances.get(userId)));
+            } else {
+                walletRows.add(new Object[]{balances.get(userId), userId});
+            }
+        }
+        List<Object[]> txnRows = new ArrayList<>(posted.size());
+        List<OutboxWriter.Event> events = new ArrayList<>(posted.size());
+        for (int i = 0; i < posted.size(); i++) {
+            Debit d = posted.get(i);
+            Long txId = txIds.get(i);
+            String status = statuses.get(i);
+            txnRows.add(new Object[]{txId, d.userId(), d.participationId(), d.amount(), status, d.idempotencyKey()});
+            idempotencyFilter.addOnCommit(d.idempotencyKey());
+
+            if (status.equals("SUCCESS")) {
+                if (emitEvents) events.add(new OutboxWriter.Event("TransactionCompleted", "Transaction", txId, LedgerService.transactionPayload(
+                        "TransactionCompleted", d.sagaId(), d.participationId(), txId, d.idempotencyKey(), null), d.traceparent()));
+                outcomes.put(d.messageId(), new Outcome("SUCCESS", txId, null));
+            } else {
+                // Same aggregate id as LedgerService.processDebit uses for failures
+                Long aggregateId = d.userId() + d.participationId();
+                if (emitEvents) events.add(new OutboxWriter.Event("TransactionFailed", "Transaction", aggregateId, LedgerService.transactionPayload(
+                        "TransactionFailed", d.sagaId(), d.participationId(), aggregateId, d.idempotencyKey(), "INSUFFICIENT_FUNDS"), d.traceparent()));
+                outcomes.put(d.messageId(), new Outcome("FAILED", txId, "INSUFFICIENT_FUNDS"));
+            }
+        }
+
+        jdbc.batchUpdate("UPDATE wallet SET balance = ?, version = version + 1 WHERE user_id = ?", walletRows);
+        jdbc.batchUpdate("INSERT INTO txn (id, user_id, participation_id, amount, status, idempotency_key) VALUES (?, ?, ?, ?, ?, ?)", txnRows);
+        if (!events.isEmpty()) {
+            outboxWriter.append(events);
+        }
+        long succeeded = statuses.stream().filter("SUCCESS"::equals).count();
+        counters.addOnCommit(StatusCounters.TXN, "SUCCESS", succeeded);
+        counters.addOnCommit(StatusCounters.TXN, "FAILED", statuses.size() - succeeded);
+
+        log.info("Applied {} debits in batch - wallets updated: {}", posted.size(), walletRows.size());
+        return outcomes;
+    }
+}
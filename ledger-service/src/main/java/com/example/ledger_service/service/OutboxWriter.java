@@ -0,0 +1,115 @@
+package com.example.ledger_service.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.example.ledger_service.util.Jsons.toJson;
+
+// Where outbox events go. TABLE inserts outbox rows; MESSAGE writes each event straight into
+// the WAL with pg_logical_emit_message(transactional = true), so it is still emitted only if
+// the business transaction commits but costs no heap tuple, index entry or vacuum. The
+// connector decodes messages with prefix "outbox" and routes them like outbox rows, which
+// is why the message content uses the outbox column names, created_at included. Every event
+// carries the traceparent of the span that wrote it; the connector moves it and created_at
+// into Kafka headers.
+@Slf4j
+@Component
+public class OutboxWriter {
+    public static final String MESSAGE_PREFIX = "outbox";
+
+    public enum Mode { TABLE, MESSAGE }
+
+    public record Event(String eventType, String aggregateType, Long aggregateId, String payload, String traceparent) {}
+
+    private final JdbcTemplate jdbc;
+    private final StatusCounters counters;
+    private final Mode mode;
+
+    public OutboxWriter(JdbcTemplate jdbc, StatusCounters counters, @Value("${app.outbox.mode:table}") String mode) {
+        this.jdbc = jdbc;
+        this.counters = counters;
+        this.mode = Mode.valueOf(mode.toUpperCase());
+        log.info("Outbox events are written as {}", this.mode == Mode.TABLE ? "outbox rows" : "logical decoding messages");
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    // A CTE named "event" that writes every row of the CTE named by source, whose columns are
+    // (event_type, aggregate_type, aggregate_id, payload), with the :traceparent parameter. It
+    // returns one row per event, and must be referenced by the statement: a SELECT-only CTE is
+    // not executed otherwise.
+    public String eventCte(String source) {
+        return switch (mode) {
+            case TABLE -> """
+                    , event AS (
+                        INSERT INTO outbox (event_type, aggregate_type, aggregate_id, payload, traceparent)
+                        SELECT event_type, aggregate_type, aggregate_id, payload, CAST(:traceparent AS text) FROM %s
+                        RETURNING 1
+                    )
+                    """.formatted(source);
+            case MESSAGE -> """
+                    , event AS (
+                        SELECT pg_logical_emit_message(true, '%s', json_build_object(
+                                   'id', gen_random_uuid(),
+                                   'event_type', event_type,
+                                   'aggregate_type', aggregate_type,
+                                   'aggregate_id', aggregate_id,
+                                   'payload', payload,
+                                   'traceparent', CAST(:traceparent AS text),
+                                   'created_at', now())::text)
+                          FROM %s
+                    )
+                    """.formatted(MESSAGE_PREFIX, source);
+        };
+    }
+
+    // Writes the events in one round trip, inside the caller's transaction
+    public void append(List<Event> events) {
+        if (events.isEmpty()) return;
+
+        if (mode == Mode.TABLE) {
+            List<Object[]> rows = new ArrayList<>(events.size());
+            for (Event e : events) {
+                rows.add(new Object[]{e.eventType(), e.aggregateType(), e.aggregateId(), e.payload(), e.traceparent()});
+            }
+            jdbc.batchUpdate("INSERT INTO outbox (event_type, aggregate_type, aggregate_id, payload, traceparent) VALUES (?, ?, ?, ?, ?)", rows);
+            countOnCommit(events.size());
+            return;
+        }
+
+        String[] contents = events.stream().map(OutboxWriter::messageContent).toArray(String[]::new);
+        // created_at is added here so it is the transaction's now(), as for outbox rows
+        jdbc.query("SELECT count(pg_logical_emit_message(true, ?, (m::jsonb || jsonb_build_object('created_at', now()))::text)) FROM unnest(?) m",
+                ps -> {
+                    ps.setString(1, MESSAGE_PREFIX);
+                    ps.setArray(2, ps.getConnection().createArrayOf("text", contents));
+                },
+                rs -> {});
+    }
+
+    // For statements that wrote events through eventCte(); only outbox rows are counted
+    public void countOnCommit(int events) {
+        if (mode == Mode.TABLE) counters.addOnCommit(StatusCounters.OUTBOX, "NEW", events);
+    }
+
+    private static String messageContent(Event e) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", UUID.randomUUID().toString());
+        m.put("event_type", e.eventType());
+        m.put("aggregate_type", e.aggregateType());
+        m.put("aggregate_id", e.aggregateId());
+        m.put("payload", e.payload());
+        m.put("traceparent", e.traceparent());
+        return toJson(m);
+    }
+}
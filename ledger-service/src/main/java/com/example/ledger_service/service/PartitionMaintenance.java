@@ -0,0 +1,245 @@
+package com.example.ledger_service.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+// Keeps the daily partitions of outbox and inbox in shape: upcoming days are created ahead
+// of time, and a day is dropped only when nobody can still need it. For the outbox that
+// means Debezium has confirmed the WAL past the day's last row and the day is older than
+// the Kafka redelivery window; for the inbox only the redelivery window matters, since a
+// message that can no longer be redelivered no longer needs deduplicating. Each table and day
+// is handled on its own, so one failure does not stop the rest. Rows that reached the DEFAULT
+// partition (maintenance behind, or a database initialised days earlier) are moved into
+// their day's partition when it is created.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PartitionMaintenance {
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final Pattern DAILY = Pattern.compile("(outbox|inbox)_p(\\d{8})");
+
+    private static final Map<String, String> PARTITION_KEY = Map.of("outbox", "created_at", "inbox", "received_at");
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final StatusCounters counters;
+
+    @Value("${app.partitions.enabled:true}")
+    boolean enabled;
+
+    @Value("${app.partitions.precreateDays:3}")
+    int precreateDays;
+
+    // How far back Kafka may redeliver (topic retention / consumer group reset horizon)
+    @Value("${app.partitions.redeliveryWindowDays:7}")
+    int redeliveryWindowDays;
+
+    // A day is sealed this long after midnight, once no open transaction can still insert into it
+    @Value("${app.partitions.sealGraceMinutes:60}")
+    long sealGraceMinutes;
+
+    // Blank when no CDC slot reads the outbox; a day is then dropped once it has no NEW rows
+    @Value("${app.partitions.slotName:ledger_outbox_slot}")
+    String slotName;
+
+    // With the in-service relay, published rows are marked, so NEW rows are what must survive
+    @Value("${app.outbox.relay.enabled:false}")
+    boolean relayEnabled;
+
+    // Bounds the wait for the parent's ACCESS EXCLUSIVE lock when a day is detached next to a
+    // DEFAULT partition, so writers never queue behind maintenance for longer; retried next run
+    @Value("${app.partitions.lockTimeoutMs:2000}")
+    long lockTimeoutMs;
+
+    private volatile Map<String, Object> lastRun = Map.of("ranAt", "never");
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${app.partitions.cron:0 5 * * * *}", zone = "UTC")
+    public void maintain() {
+        if (!enabled) return;
+
+        Instant now = Instant.now();
+        LocalDate today = LocalDate.ofInstant(now, ZoneOffset.UTC);
+        List<String> created = new ArrayList<>();
+        List<String> dropped = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        for (String table : PARTITION_KEY.keySet()) {
+            for (int d = 0; d <= precreateDays; d++) {
+                String name = partitionName(table, today.plusDays(d));
+                try {
+                    if (createPartition(table, today.plusDays(d))) created.add(name);
+                } catch (RuntimeException e) {
+                    log.error("Could not create partition {}: {}", name, e.getMessage(), e);
+                    failed.add(name);
+                }
+            }
+        }
+        try {
+            sealFinishedDays(now);
+        } catch (RuntimeException e) {
+            log.error("Could not seal finished outbox days: {}", e.getMessage(), e);
+        }
+
+        Instant horizon = now.minus(Duration.ofDays(redeliveryWindowDays));
+        for (String table : PARTITION_KEY.keySet()) {
+            partitions(table).forEach((day, name) -> {
+                try {
+                    if (end(day).isBefore(horizon) && (table.equals("inbox") || outboxConsumed(name))) {
+                        drop(table, name);
+                        dropped.add(name);
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Could not drop partition {}: {}", name, e.getMessage(), e);
+                    failed.add(name);
+                }
+            });
+        }
+
+        if (!created.isEmpty() || !dropped.isEmpty()) {
+            log.info("Partition maintenance - created: {}, dropped: {}", created, dropped);
+        }
+        if (!dropped.isEmpty()) {
+            // Dropped days take their rows out of the outbox/inbox counts
+            counters.reconcile();
+        }
+        lastRun = Map.of("ranAt", now.toString(), "created", created, "dropped", dropped, "failed", failed);
+    }
+
+    private boolean createPartition(String table, LocalDate day) {
+        String name = partitionName(table, day);
+        Boolean exists = jdbc.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name);
+        if (Boolean.TRUE.equals(exists)) return false;
+
+        String bounds = "FROM ('" + day + " 00:00:00+00') TO ('" + day.plusDays(1) + " 00:00:00+00')";
+        String inDay = PARTITION_KEY.get(table) + " >= '" + day + " 00:00:00+00' AND "
+                + PARTITION_KEY.get(table) + " < '" + day.plusDays(1) + " 00:00:00+00'";
+        String defaultPartition = defaultPartition(table);
+        Boolean stranded = defaultPartition != null && Boolean.TRUE.equals(jdbc.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + defaultPartition + " WHERE " + inDay + ")", Boolean.class));
+        if (!Boolean.TRUE.equals(stranded)) {
+            jdbc.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + table + " FOR VALUES " + bounds);
+            return true;
+        }
+
+        // The new partition's range would overlap rows in DEFAULT, which Postgres refuses: take
+        // DEFAULT out, create the day, move its rows over and put DEFAULT back, all in one
+        // transaction. Moved outbox rows keep id, created_at and status; a CDC connector sees
+        // them as new inserts and republishes them, which the consumers' inbox deduplicates.
+        tx.executeWithoutResult(s -> {
+            jdbc.execute("ALTER TABLE " + table + " DETACH PARTITION " + defaultPartition);
+            jdbc.execute("CREATE TABLE " + name + " PARTITION OF " + table + " FOR VALUES " + bounds);
+            int moved = jdbc.update("WITH moved AS (DELETE FROM " + defaultPartition + " WHERE " + inDay
+                    + " RETURNING *) INSERT INTO " + name + " SELECT * FROM moved");
+            jdbc.execute("ALTER TABLE " + table + " ATTACH PARTITION " + defaultPartition + " DEFAULT");
+            log.warn("Moved {} rows of {} out of {}", moved, name, defaultPartition);
+        });
+        return true;
+    }
+
+    private String defaultPartition(String table) {
+        List<String> names = jdbc.queryForList("SELECT c.relname FROM pg_partitioned_table p "
+                + "JOIN pg_class c ON c.oid = p.partdefid WHERE p.partrelid = ?::regclass", String.class, table);
+        return names.isEmpty() ? null : names.get(0);
+    }
+
+    // Records the WAL position after which a finished outbox day can receive no more rows
+    private void sealFinishedDays(Instant now) {
+        partitions("outbox").forEach((day, name) -> {
+            if (end(day).plus(Duration.ofMinutes(sealGraceMinutes)).isBefore(now)) {
+                jdbc.update("INSERT INTO partition_seal (partition_name, sealed_lsn) VALUES (?, pg_current_wal_lsn()) "
+                        + "ON CONFLICT (partition_name) DO NOTHING", name);
+            }
+        });
+    }
+
+    private boolean outboxConsumed(String name) {
+        if (relayEnabled || slotName == null || slotName.isBlank()) {
+            return Boolean.TRUE.equals(jdbc.queryForObject(
+                    "SELECT NOT EXISTS (SELECT 1 FROM " + name + " WHERE status = 'NEW')", Boolean.class));
+        }
+        // No row when the day is not sealed yet or the slot does not exist: keep the partition
+        List<Boolean> confirmed = jdbc.queryForList(
+                "SELECT s.sealed_lsn <= r.confirmed_flush_lsn FROM partition_seal s "
+                        + "JOIN pg_replication_slots r ON r.slot_name = ? WHERE s.partition_name = ?",
+                Boolean.class, slotName, name);
+        boolean consumed = !confirmed.isEmpty() && Boolean.TRUE.equals(confirmed.get(0));
+        if (!consumed) {
+            log.debug("Keeping {}: slot {} has not confirmed past it", name, slotName);
+        }
+        return consumed;
+    }
+
+    // Detached first, so the DROP itself takes no lock on the parent. DETACH CONCURRENTLY only
+    // needs SHARE UPDATE EXCLUSIVE, but Postgres refuses it while the table has a DEFAULT
+    // partition; the plain DETACH then holds ACCESS EXCLUSIVE for a moment, waiting at most
+    // lockTimeoutMs for it.
+    private void drop(String table, String name) {
+        if (defaultPartition(table) == null) {
+            Boolean pending = jdbc.queryForObject("SELECT inhdetachpending FROM pg_inherits WHERE inhrelid = ?::regclass",
+                    Boolean.class, name);
+            // An interrupted concurrent detach has to be finished instead of restarted
+            jdbc.execute("ALTER TABLE " + table + " DETACH PARTITION " + name
+                    + (Boolean.TRUE.equals(pending) ? " FINALIZE" : " CONCURRENTLY"));
+        } else {
+            tx.executeWithoutResult(s -> {
+                jdbc.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+                jdbc.execute("ALTER TABLE " + table + " DETACH PARTITION " + name);
+            });
+        }
+        jdbc.execute("DROP TABLE IF EXISTS " + name);
+        jdbc.update("DELETE FROM partition_seal WHERE partition_name = ?", name);
+    }
+
+    private TreeMap<LocalDate, String> partitions(String table) {
+        TreeMap<LocalDate, String> days = new TreeMap<>();
+        jdbc.query("SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "WHERE i.inhparent = ?::regclass",
+                rs -> {
+                    var m = DAILY.matcher(rs.getString(1));
+                    if (m.matches() && m.group(1).equals(table)) {
+                        days.put(LocalDate.parse(m.group(2), SUFFIX), rs.getString(1));
+                    }
+                }, table);
+        return days;
+    }
+
+    private static String partitionName(String table, LocalDate day) {
+        return table + "_p" + day.format(SUFFIX);
+    }
+
+    private static Instant end(LocalDate day) {
+        return day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "enabled", enabled,
+                "outbox", partitions("outbox").values(),
+                "inbox", partitions("inbox").values(),
+                "redeliveryWindowDays", redeliveryWindowDays,
+                "lastRun", lastRun
+        );
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.ledger_service.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Virtual-thread mode only: streams the JFR jdk.VirtualThreadPinned event, emitted when a
+// virtual thread blocks while it cannot unmount (inside synchronized or a native frame), and
+// counts pinning per application call site. A site that shows up here holds its carrier for
+// the whole wait, so enough concurrent hits starve every other virtual thread.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class PinningMonitor {
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+
+    @Value("${app.virtualThreads.pinningThresholdMs:20}")
+    long thresholdMs;
+
+    private final Map<String, LongAdder> bySite = new ConcurrentHashMap<>();
+    private final LongAdder pinned = new LongAdder();
+    private final LongAccumulator maxPinnedMs = new LongAccumulator(Math::max, 0);
+    private RecordingStream stream;
+
+    @PostConstruct
+    void start() {
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.onEvent(EVENT, this::onPinned);
+        stream.startAsync();
+        log.info("Watching for virtual thread pinning longer than {} ms", thresholdMs);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (stream != null) stream.close();
+    }
+
+    private void onPinned(RecordedEvent e) {
+        long ms = e.getDuration().toMillis();
+        String site = callSite(e);
+        pinned.increment();
+        maxPinnedMs.accumulate(ms);
+        LongAdder hits = bySite.computeIfAbsent(site, k -> new LongAdder());
+        if (hits.sum() == 0) {
+            log.warn("Virtual thread pinned for {} ms at {}", ms, site);
+        }
+        hits.increment();
+    }
+
+    // The innermost frame outside the JDK, i.e. the code that blocked while pinned
+    private static String callSite(RecordedEvent e) {
+        if (e.getStackTrace() == null) return "unknown";
+        List<RecordedFrame> frames = e.getStackTrace().getFrames();
+        for (RecordedFrame f : frames) {
+            String type = f.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return type + "." + f.getMethod().getName() + ":" + f.getLineNumber();
+            }
+        }
+        return frames.isEmpty() ? "unknown" : frames.get(0).getMethod().getType().getName();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Long> top = new LinkedHashMap<>();
+        bySite.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> en) -> en.getValue().sum()).reversed())
+                .limit(20)
+                .forEach(en -> top.put(en.getKey(), en.getValue().sum()));
+        return Map.of(
+                "enabled", true,
+                "thresholdMs", thresholdMs,
+                "pinnedEvents", pinned.sum(),
+                "maxPinnedMs", maxPinnedMs.get(),
+                "sites", top
+        );
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.ledger_service.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+// The ledger half of the LOS reconciliation (/stats/orphans there): one row per participation
+// with its ledger outcome: REFUNDED if its debit was given back, else SUCCESS if any of its
+// txns succeeded, else FAILED before PENDING.
+// Pages are keyset ranges in participation_id order, read from ix_ledger_txn_participation
+// alone (status is an INCLUDE column), so a page costs the same at the start and at the end
+// of the table and LOS can merge-join them with its own participation pages.
+@Service
+@RequiredArgsConstructor
+public class ReconciliationFeed {
+    private static final String SUMMARY = """
+            SELECT participation_id,
+                   CASE WHEN bool_or(status = 'REFUNDED') THEN 'REFUNDED'
+                        WHEN bool_or(status = 'SUCCESS') THEN 'SUCCESS'
+                        ELSE min(status) END
+            FROM txn
+            """;
+
+    private final JdbcTemplate jdbc;
+
+    // Parallel arrays keep the page compact on the wire (no field names per row)
+    public record Page(long[] participationIds, String[] statuses) {}
+
+    public Page page(long after, long upTo, int limit) {
+        Rows rows = new Rows(limit);
+        jdbc.query(SUMMARY + """
+                WHERE participation_id > ? AND participation_id <= ?
+                GROUP BY participation_id ORDER BY participation_id LIMIT ?
+                """, rows, after, upTo, limit);
+        return rows.page();
+    }
+
+    // The same summary for a set of participations (LOS re-checking earlier findings)
+    public Page lookup(long[] participationIds) {
+        Long[] ids = Arrays.stream(participationIds).boxed().toArray(Long[]::new);
+        Rows rows = new Rows(ids.length);
+        jdbc.query(SUMMARY + """
+                        WHERE participation_id = ANY(?)
+                        GROUP BY participation_id ORDER BY participation_id
+                        """,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)), rows);
+        return rows.page();
+    }
+
+    private static final class Rows implements RowCallbackHandler {
+        private final long[] ids;
+        private final String[] statuses;
+        private int n;
+
+        Rows(int capacity) {
+            ids = new long[capacity];
+            statuses = new String[capacity];
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            ids[n] = rs.getLong(1);
+            statuses[n++] = rs.getString(2);
+        }
+
+        Page page() {
+            return new Page(Arrays.copyOf(ids, n), Arrays.copyOf(statuses, n));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.util.Jsons;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.*;
+
+// The compensating step of the saga. LOS cancels participations (a whole loan at a time) and
+// sends RefundRequested for each; the credit is the participation's successful debit, posted
+// once as a REFUNDED txn under the refund's idempotency key. Refunds arrive in bursts keyed by
+// wallet, so a poll's credits are summed per wallet first and each wallet gets one balance
+// update per batch, however many of its participations were cancelled. Every refund is
+// answered with RefundCompleted (TransactionEvent shape, status REFUNDED), with reason
+// NOTHING_DEBITED when there was no successful debit to give back, or DUPLICATE. A refund
+// that fails on its own is answered with status FAILED and the error as reason; transient
+// failures fail the poll so it is redelivered instead.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RefundService {
+    private final JdbcTemplate jdbc;
+    private final Savepoints savepoints;
+    private final IdempotencyFilter idempotencyFilter;
+    private final InboxService inboxService;
+    private final OutboxWriter outboxWriter;
+    private final StatusCounters counters;
+    private final SagaMetrics metrics;
+
+    public record Refund(UUID messageId, UUID sagaId, Long participationId, String idempotencyKey,
+                         String payload, Instant receivedAt, String traceparent) {}
+
+    // What the refund gives back: the wallet and amount of the participation's debit
+    private record Debited(Long userId, BigDecimal amount) {}
+
+    // Same batch-then-isolate strategy as LedgerBatchService.process(); the map holds
+    // REFUNDED, NOTHING_DEBITED, DUPLICATE or FAILED per message
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<UUID, String> process(List<Refund> refunds) {
+        List<Refund> fresh = inboxService.claimAll(refunds,
+                r -> new InboxService.Message(r.messageId(), r.payload(), r.receivedAt()), "RefundRequested");
+        log.info("Batch of {} RefundRequested messages, {} new after inbox dedup", refunds.size(), fresh.size());
+        if (fresh.isEmpty()) {
+            return Map.of();
+        }
+
+        try {
+            var outcomes = savepoints.isolate(() -> apply(fresh, false));
+            inboxService.rememberOnCommit(fresh.stream().map(Refund::messageId).toList());
+            countOutcomes(outcomes.values());
+            return outcomes;
+        } catch (RuntimeException e) {
+            log.warn("Batch apply of {} refunds failed, isolating records: {}", fresh.size(), e.getMessage());
+        }
+
+        Map<UUID, String> outcomes = new LinkedHashMap<>();
+        for (Refund r : fresh) {
+            try {
+                outcomes.putAll(savepoints.isolate(() -> apply(List.of(r), true)));
+                inboxService.rememberOnCommit(List.of(r.messageId()));
+            } catch (TransientDataAccessException e) {
+                // e.g. a lock timeout on the wallet update: redeliver the poll, it was rolled back whole
+                log.warn("Refund hit a transient error, failing the batch for redelivery - messageId: {}, error: {}",
+                        r.messageId(), e.getMessage());
+                throw e;
+            } catch (RuntimeException e) {
+                log.error("Refund failed - messageId: {}, participationId: {}, error: {}",
+                        r.messageId(), r.participationId(), e.getMessage(), e);
+                // Answered like any other refund, so the cancellation saga still completes
+                String reason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                outboxWriter.append(List.of(completed(r, "FAILED", null, reason)));
+                outcomes.put(r.messageId(), "FAILED");
+                inboxService.rememberOnCommit(List.of(r.messageId()));
+            }
+        }
+        countOutcomes(outcomes.values());
+        return outcomes;
+    }
+
+    private void countOutcomes(Collection<String> outcomes) {
+        Map<String, Long> byStatus = new HashMap<>();
+        for (String o : outcomes) byStatus.merge(o, 1L, Long::sum);
+        byStatus.forEach(metrics::refundOutcome);
+    }
+
+    private Map<UUID, String> apply(List<Refund> refunds, boolean probeAll) {
+        String[] keys = refunds.stream().map(Refund::idempotencyKey).distinct().toArray(String[]::new);
+        Long[] participationIds = refunds.stream().map(Refund::participationId).distinct().toArray(Long[]::new);
+
+        String[] maybeSeen = probeAll ? keys
+                : Arrays.stream(keys).filter(idempotencyFilter::mightContain).toArray(String[]::new);
+        Set<String> seenKeys = new HashSet<>();
+        if (maybeSeen.length > 0) {
+            seenKeys.addAll(jdbc.query(
+                    "SELECT idempotency_key FROM txn WHERE idempotency_key = ANY(?)",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", maybeSeen)),
+                    (rs, i) -> rs.getString(1)));
+        }
+
+        // A participation has at most one successful debit (its ParticipationCreated key)
+        Map<Long, Debited> debited = new HashMap<>();
+        jdbc.query("SELECT participation_id, user_id, amount FROM txn WHERE participation_id = ANY(?) AND status = 'SUCCESS'",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", participationIds)),
+                rs -> {
+                    debited.put(rs.getLong(1), new Debited(rs.getLong(2), rs.getBigDecimal(3)));
+                });
+
+        Map<UUID, String> outcomes = new LinkedHashMap<>();
+        List<Refund> credited = new ArrayList<>();
+        // Sorted by user_id: the updates below lock wallets in the same order as the debit paths
+        Map<Long, BigDecimal> credits = new TreeMap<>();
+        List<OutboxWriter.Event> events = new ArrayList<>(refunds.size());
+        for (Refund r : refunds) {
+            if (!seenKeys.add(r.idempotencyKey())) {
+                log.warn("Duplicate refund detected for idempotencyKey: {}", r.idempotencyKey());
+                outcomes.put(r.messageId(), "DUPLICATE");
+                events.add(completed(r, "REFUNDED", null, "DUPLICATE"));
+                continue;
+            }
+            Debited d = debited.get(r.participationId());
+            if (d == null) {
+                log.warn("Nothing to refund for participationId: {}", r.participationId());
+                outcomes.put(r.messageId(), "NOTHING_DEBITED");
+                events.add(completed(r, "REFUNDED", null, "NOTHING_DEBITED"));
+                continue;
+            }
+            credits.merge(d.userId(), d.amount(), BigDecimal::add);
+            credited.add(r);
+        }
+
+        if (!credited.isEmpty()) {
+            List<Long> txIds = jdbc.queryForList(
+                    "SELECT nextval('txn_id_seq') FROM generate_series(1, ?)", Long.class, credited.size());
+            List<Object[]> txnRows = new ArrayList<>(credited.size());
+            for (int i = 0; i < credited.size(); i++) {
+                Refund r = credited.get(i);
+                Debited d = debited.get(r.participationId());
+                txnRows.add(new Object[]{txIds.get(i), d.userId(), r.participationId(), d.amount(), "REFUNDED", r.idempotencyKey()});
+                idempotencyFilter.addOnCommit(r.idempotencyKey());
+                outcomes.put(r.messageId(), "REFUNDED");
+                events.add(completed(r, "REFUNDED", txIds.get(i), null));
+            }
+
+            // Credits to a striped wallet land on its home balance, which is part of what it can spend
+            List<Object[]> walletRows = new ArrayList<>(credits.size());
+            credits.forEach((userId, amount) -> walletRows.add(new Object[]{amount, userId}));
+            int[] updated = jdbc.batchUpdate("UPDATE wallet SET balance = balance + ?, version = version + 1 WHERE user_id = ?", walletRows);
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    throw new RuntimeException("Wallet not found for userId: " + walletRows.get(i)[1]);
+                }
+            }
+            jdbc.batchUpdate("INSERT INTO txn (id, user_id, participation_id, amount, status, idempotency_key) VALUES (?, ?, ?, ?, ?, ?)", txnRows);
+            counters.addOnCommit(StatusCounters.TXN, "REFUNDED", credited.size());
+            metrics.refundWalletUpdates(walletRows.size());
+        }
+        outboxWriter.append(events);
+
+        log.info("Applied {} refunds in batch - wallets credited: {}", credited.size(), credits.size());
+        return outcomes;
+    }
+
+    // Keyed by participation, so a participation's refund outcomes stay in order
+    private static OutboxWriter.Event completed(Refund r, String status, Long txId, String reason) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("messageId", UUID.randomUUID().toString());
+        payload.put("sagaId", r.sagaId() == null ? null : r.sagaId().toString());
+        payload.put("participationId", r.participationId());
+        payload.put("transactionId", txId);
+        payload.put("idempotencyKey", r.idempotencyKey());
+        payload.put("status", status);
+        payload.put("reason", reason);
+        return new OutboxWriter.Event("RefundCompleted", "Participation", r.participationId(), Jsons.toJson(payload), r.traceparent());
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.util.EventTime;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.record.TimestampType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Ledger side of the saga latency breakdown (scraped at /actuator/prometheus):
+//   saga.stage{stage=outbox_to_ledger}  LOS outbox.created_at -> ParticipationCreated picked up here.
+//                                       The start is the outbox row's created_at (EventTime: the
+//                                       connector's created_at header, the relay's record timestamp),
+//                                       so this covers CDC/relay publish plus consumer lag.
+//   saga.stage{stage=ledger_debit}      pick-up -> debit committed
+// plus outcome/conflict/duplicate counters, and for compensations refund outcomes and the
+// wallet updates they cost (ledger.refunds over ledger.refund.wallet.updates is how many
+// refunds each balance update absorbed). Meters are resolved once, so nothing looks them up
+// on the hot path. Inside a transaction a record waits for the commit, which costs a lambda
+// and a TransactionSynchronization per call: per debit for debitOutcome, per batch for the
+// refund meters and for debited on the batch consumer.
+@Component
+public class SagaMetrics {
+    private final Timer outboxToLedger;
+    private final Timer ledgerDebit;
+    private final Counter succeeded;
+    private final Counter insufficientFunds;
+    private final Counter duplicates;
+    private final Counter conflicts;
+    private final Counter redeliveries;
+    private final Counter refunded;
+    private final Counter nothingDebited;
+    private final Counter refundDuplicates;
+    private final Counter refundsFailed;
+    private final Counter refundWalletUpdates;
+
+    public SagaMetrics(MeterRegistry meters) {
+        this.outboxToLedger = stage(meters, "outbox_to_ledger");
+        this.ledgerDebit = stage(meters, "ledger_debit");
+        this.succeeded = outcome(meters, "success");
+        this.insufficientFunds = outcome(meters, "insufficient_funds");
+        this.duplicates = outcome(meters, "duplicate");
+        this.conflicts = Counter.builder("ledger.debit.conflicts")
+                .description("Debit attempts retried after a lock conflict, deadlock or idempotency race")
+                .register(meters);
+        this.redeliveries = Counter.builder("saga.inbox.duplicates")
+                .description("Kafka deliveries dropped by the inbox as already processed")
+                .register(meters);
+        this.refunded = refund(meters, "refunded");
+        this.nothingDebited = refund(meters, "nothing_debited");
+        this.refundDuplicates = refund(meters, "duplicate");
+        this.refundsFailed = refund(meters, "failed");
+        this.refundWalletUpdates = Counter.builder("ledger.refund.wallet.updates")
+                .description("Wallet balance updates applied for refunds, one per wallet per batch")
+                .register(meters);
+    }
+
+    // Call when a ParticipationCreated record is picked up; returns the start for debited()
+    public long received(ConsumerRecord<?, ?> record) {
+        if (record.timestampType() != TimestampType.NO_TIMESTAMP_TYPE || record.headers().lastHeader(EventTime.HEADER) != null) {
+            outboxToLedger.record(Math.max(0, System.currentTimeMillis() - EventTime.of(record).toEpochMilli()), TimeUnit.MILLISECONDS);
+        }
+        return System.nanoTime();
+    }
+
+    // Pick-up -> commit of the debits of `records` messages received at receivedNanos
+    public void debited(long receivedNanos, int records) {
+        if (records == 0) return;
+        onCommit(() -> {
+            long nanos = System.nanoTime() - receivedNanos;
+            for (int i = 0; i < records; i++) {
+                ledgerDebit.record(nanos, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    public void debitOutcome(String status, long n) {
+        Counter counter = switch (status) {
+            case "SUCCESS" -> succeeded;
+            case "FAILED" -> insufficientFunds;
+            case "DUPLICATE" -> duplicates;
+            default -> null;
+        };
+        if (counter == null || n == 0) return;
+        onCommit(() -> counter.increment(n));
+    }
+
+    public void refundOutcome(String status, long n) {
+        Counter counter = switch (status) {
+            case "REFUNDED" -> refunded;
+            case "NOTHING_DEBITED" -> nothingDebited;
+            case "DUPLICATE" -> refundDuplicates;
+            case "FAILED" -> refundsFailed;
+            default -> null;
+        };
+        if (counter == null || n == 0) return;
+        onCommit(() -> counter.increment(n));
+    }
+
+    public void refundWalletUpdates(int wallets) {
+        if (wallets > 0) onCommit(() -> refundWalletUpdates.increment(wallets));
+    }
+
+    public void conflict() {
+        conflicts.increment();
+    }
+
+    public void redelivered(long n) {
+        if (n > 0) redeliveries.increment(n);
+    }
+
+    private static void onCommit(Runnable record) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record.run();
+            }
+        });
+    }
+
+    private static Timer stage(MeterRegistry meters, String stage) {
+        return Timer.builder("saga.stage")
+                .description("Time a participation spends in one saga stage")
+                .tag("stage", stage)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(5))
+                .register(meters);
+    }
+
+    private static Counter outcome(MeterRegistry meters, String outcome) {
+        return Counter.builder("ledger.debits")
+                .description("Debits by outcome")
+                .tag("outcome", outcome)
+                .register(meters);
+    }
+
+    private static Counter refund(MeterRegistry meters, String outcome) {
+        return Counter.builder("ledger.refunds")
+                .description("Refunds by outcome")
+                .tag("outcome", outcome)
+                .register(meters);
+    }
+}
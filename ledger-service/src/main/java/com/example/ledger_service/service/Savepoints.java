@@ -0,0 +1,54 @@
+package com.example.ledger_service.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.function.Supplier;
+
+// Runs a unit of JDBC work under a savepoint of the current transaction, so a
+// failure only rolls back that unit. JPA's transaction manager does not support
+// PROPAGATION_NESTED, hence the manual savepoint on the bound connection.
+@Component
+@RequiredArgsConstructor
+public class Savepoints {
+    private final DataSource dataSource;
+
+    public <T> T isolate(Supplier<T> work) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Savepoints require an active transaction");
+        }
+        Connection c = DataSourceUtils.getConnection(dataSource);
+        Savepoint sp;
+        try {
+            sp = c.setSavepoint();
+        } catch (SQLException e) {
+            throw new TransactionSystemException("Could not create savepoint", e);
+        }
+
+        T result;
+        try {
+            result = work.get();
+        } catch (RuntimeException e) {
+            try {
+                c.rollback(sp);
+            } catch (SQLException re) {
+                e.addSuppressed(re);
+            }
+            throw e;
+        }
+
+        try {
+            c.releaseSavepoint(sp);
+        } catch (SQLException e) {
+            throw new TransactionSystemException("Could not release savepoint", e);
+        }
+        return result;
+    }
+}
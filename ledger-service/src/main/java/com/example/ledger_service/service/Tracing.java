@@ -0,0 +1,231 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.util.EventTime;
+import com.example.ledger_service.util.TraceParent;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static com.example.ledger_service.util.Jsons.toJson;
+
+// Minimal W3C trace context for the saga hops. The current span lives in a thread local;
+// OutboxWriter and DebitEngine stamp its traceparent on every outbox event, the header
+// travels to Kafka (connector additional placement or the relay), and the consumers start
+// their span as a child of it. Finished spans go into a fixed ring (one array store per
+// span, no lock) and, if app.tracing.file is set, are appended to it as NDJSON by a
+// background export. Roots are sampled at app.tracing.sampleRatio; unsampled contexts are
+// still propagated but nothing is recorded for them.
+@Slf4j
+@Component
+public class Tracing {
+    public record SpanData(String traceId, String spanId, String parentSpanId, String name,
+                           long startMicros, long durationMicros, Map<String, Object> tags, String error) {}
+
+    private record Entry(long seq, SpanData span) {}
+
+    private final ThreadLocal<Span> current = new ThreadLocal<>();
+    private final double sampleRatio;
+    private final AtomicReferenceArray<Entry> ring;
+    private final AtomicLong recorded = new AtomicLong();
+    private final Path file;
+    private volatile long exported;
+    private final LongAdder exportDropped = new LongAdder();
+
+    public Tracing(@Value("${app.tracing.sampleRatio:1.0}") double sampleRatio,
+                   @Value("${app.tracing.bufferSize:10000}") int bufferSize,
+                   @Value("${app.tracing.file:}") String file) {
+        this.sampleRatio = sampleRatio;
+        this.ring = new AtomicReferenceArray<>(bufferSize);
+        this.file = file.isBlank() ? null : Path.of(file);
+    }
+
+    // A new span, current on this thread until closed; a root span if parent is null
+    public Span start(String name, TraceParent parent) {
+        TraceParent context = parent != null ? parent.child()
+                : TraceParent.root(ThreadLocalRandom.current().nextDouble() < sampleRatio);
+        Span span = new Span(name, context, parent == null ? null : parent.spanId(), current.get());
+        current.set(span);
+        return span;
+    }
+
+    // A span for one consumed record, continuing the trace of its traceparent header
+    public Span consume(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(TraceParent.HEADER);
+        TraceParent parent = header == null || header.value() == null ? null
+                : TraceParent.parse(new String(header.value(), StandardCharsets.UTF_8));
+        return start("consume " + record.topic(), parent)
+                .tag("partition", record.partition())
+                .tag("offset", record.offset())
+                .tag("lagMs", Math.max(0, System.currentTimeMillis() - EventTime.of(record).toEpochMilli()));
+    }
+
+    public TraceParent current() {
+        Span span = current.get();
+        return span == null ? null : span.context;
+    }
+
+    // The traceparent to store with an outbox event, null outside any span
+    public String currentHeader() {
+        Span span = current.get();
+        return span == null ? null : span.context.header();
+    }
+
+    // Runs work with a context captured on another thread as the current one
+    public <T> T within(TraceParent context, Supplier<T> work) {
+        if (context == null) return work.get();
+        Span previous = current.get();
+        current.set(new Span(null, context, null, previous));
+        try {
+            return work.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    public final class Span implements AutoCloseable {
+        private final String name;
+        private final TraceParent context;
+        private final String parentSpanId;
+        private final Span previous;
+        private final long startMicros = Math.multiplyExact(System.currentTimeMillis(), 1000L);
+        private final long startNanos = System.nanoTime();
+        private Map<String, Object> tags;
+        private String error;
+        private boolean closed;
+
+        private Span(String name, TraceParent context, String parentSpanId, Span previous) {
+            this.name = name;
+            this.context = context;
+            this.parentSpanId = parentSpanId;
+            this.previous = previous;
+        }
+
+        public TraceParent context() {
+            return context;
+        }
+
+        public Span tag(String key, Object value) {
+            if (tags == null) tags = new LinkedHashMap<>();
+            tags.put(key, value);
+            return this;
+        }
+
+        public void error(Throwable t) {
+            error = t.getClass().getSimpleName() + ": " + t.getMessage();
+        }
+
+        // Inside a transaction the span ends when the transaction does, so it covers the
+        // commit, and a rollback is recorded as the error
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            if (current.get() == this) restore(previous);
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                finish();
+                return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED && error == null) error = "rolled back";
+                    finish();
+                }
+            });
+        }
+
+        private void finish() {
+            if (name == null || !context.sampled()) return;
+            record(new SpanData(context.traceId(), context.spanId(), parentSpanId, name, startMicros,
+                    (System.nanoTime() - startNanos) / 1000, tags == null ? Map.of() : tags, error));
+        }
+    }
+
+    private void restore(Span previous) {
+        if (previous == null) current.remove();
+        else current.set(previous);
+    }
+
+    private void record(SpanData span) {
+        long seq = recorded.getAndIncrement();
+        ring.set((int) (seq % ring.length()), new Entry(seq, span));
+    }
+
+    // Spans of one trace still in the ring, in start order
+    public List<SpanData> trace(String traceId) {
+        List<SpanData> spans = new ArrayList<>();
+        for (int i = 0; i < ring.length(); i++) {
+            Entry e = ring.get(i);
+            if (e != null && e.span().traceId().equals(traceId)) spans.add(e.span());
+        }
+        spans.sort(Comparator.comparingLong(SpanData::startMicros));
+        return spans;
+    }
+
+    // The longest spans in the ring, optionally only those with the given name
+    public List<SpanData> slowest(int limit, String name) {
+        List<SpanData> spans = new ArrayList<>();
+        for (int i = 0; i < ring.length(); i++) {
+            Entry e = ring.get(i);
+            if (e != null && (name == null || e.span().name().equals(name))) spans.add(e.span());
+        }
+        spans.sort(Comparator.comparingLong(SpanData::durationMicros).reversed());
+        return spans.subList(0, Math.min(limit, spans.size()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.tracing.exportMs:1000}")
+    public synchronized void export() {
+        if (file == null) return;
+        long upTo = recorded.get();
+        if (exported == upTo) return;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (; exported < upTo; exported++) {
+                Entry e = ring.get((int) (exported % ring.length()));
+                if (e == null || e.seq() < exported) break; // claimed but not written yet, next round
+                if (e.seq() > exported) {
+                    // Overwritten before we got to it
+                    exportDropped.increment();
+                    continue;
+                }
+                out.write(toJson(e.span()));
+                out.newLine();
+            }
+        } catch (IOException ex) {
+            log.warn("Could not export spans to {}: {}", file, ex.getMessage());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sampleRatio", sampleRatio);
+        stats.put("recorded", recorded.get());
+        stats.put("bufferSize", ring.length());
+        stats.put("file", file == null ? "none" : file.toString());
+        stats.put("exported", exported);
+        stats.put("exportDropped", exportDropped.sum());
+        return stats;
+    }
+}
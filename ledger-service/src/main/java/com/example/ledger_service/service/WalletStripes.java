@@ -0,0 +1,129 @@
+package com.example.ledger_service.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+// Striped mode for hot wallets: the balance lives in N wallet_stripe rows so that
+// concurrent debits can each lock a different row. wallet.balance then only holds
+// money not yet spread over the stripes (e.g. credits), and is folded in by rebalance.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WalletStripes {
+    private final JdbcTemplate jdbc;
+
+    @Value("${app.wallet.striping.stripes:8}")
+    int stripeCount;
+
+    @Transactional
+    public boolean promote(Long userId) {
+        var wallet = jdbc.query("SELECT balance, stripes FROM wallet WHERE user_id = ? FOR UPDATE",
+                (rs, i) -> Map.entry(rs.getBigDecimal(1), rs.getInt(2)), userId);
+        if (wallet.isEmpty() || wallet.get(0).getValue() > 0) {
+            return false;
+        }
+
+        BigDecimal balance = wallet.get(0).getKey();
+        List<Object[]> rows = new ArrayList<>(stripeCount);
+        BigDecimal[] shares = spread(balance, stripeCount);
+        for (int stripe = 0; stripe < stripeCount; stripe++) {
+            rows.add(new Object[]{userId, stripe, shares[stripe]});
+        }
+        jdbc.batchUpdate("INSERT INTO wallet_stripe (user_id, stripe, balance) VALUES (?, ?, ?)", rows);
+        jdbc.update("UPDATE wallet SET balance = 0, stripes = ?, version = version + 1 WHERE user_id = ?", stripeCount, userId);
+
+        log.info("Promoted wallet {} to striped mode - stripes: {}, balance: {}", userId, stripeCount, balance);
+        return true;
+    }
+
+    // Spreads the wallet's whole balance evenly again; gives up quickly rather than
+    // queueing behind debits, the next round will try again
+    @Transactional
+    public boolean rebalance(Long userId) {
+        jdbc.execute("SET LOCAL lock_timeout = '200ms'");
+        BigDecimal home = jdbc.queryForObject("SELECT balance FROM wallet WHERE user_id = ? FOR UPDATE", BigDecimal.class, userId);
+        Map<Integer, BigDecimal> stripes = lockStripes(userId);
+        if (stripes.isEmpty()) {
+            return false;
+        }
+
+        BigDecimal total = stripes.values().stream().reduce(home, BigDecimal::add);
+        BigDecimal[] shares = spread(total, stripes.size());
+        List<Object[]> rows = new ArrayList<>(stripes.size());
+        int i = 0;
+        for (Integer stripe : stripes.keySet()) {
+            rows.add(new Object[]{shares[i++], userId, stripe});
+        }
+        jdbc.batchUpdate("UPDATE wallet_stripe SET balance = ? WHERE user_id = ? AND stripe = ?", rows);
+        jdbc.update("UPDATE wallet SET balance = 0, version = version + 1 WHERE user_id = ?", userId);
+
+        log.debug("Rebalanced wallet {} over {} stripes - total: {}", userId, stripes.size(), total);
+        return true;
+    }
+
+    // Wallets whose home balance is non-zero or whose thinnest stripe fell below half the average
+    public List<Long> skewedWallets() {
+        return jdbc.queryForList("""
+                SELECT s.user_id FROM wallet_stripe s JOIN wallet w ON w.user_id = s.user_id
+                 GROUP BY s.user_id, w.balance
+                HAVING w.balance > 0 OR MIN(s.balance) < AVG(s.balance) / 2
+                """, Long.class);
+    }
+
+    public long stripedWallets() {
+        return jdbc.queryForObject("SELECT count(*) FROM wallet WHERE stripes > 0", Long.class);
+    }
+
+    // Slow path when no single stripe could be taken without waiting: lock every stripe
+    // (the caller already holds the wallet row) and drain them, largest first.
+    // Returns false, changing nothing, when home balance plus stripes cannot cover the amount.
+    boolean withdraw(Long userId, BigDecimal home, BigDecimal amount) {
+        Map<Integer, BigDecimal> stripes = lockStripes(userId);
+        BigDecimal total = stripes.values().stream().reduce(home, BigDecimal::add);
+        if (total.compareTo(amount) < 0) {
+            return false;
+        }
+
+        BigDecimal remaining = amount;
+        BigDecimal fromHome = home.min(remaining);
+        remaining = remaining.subtract(fromHome);
+
+        List<Object[]> rows = new ArrayList<>();
+        var largestFirst = new ArrayList<>(stripes.entrySet());
+        largestFirst.sort(Map.Entry.<Integer, BigDecimal>comparingByValue().reversed());
+        for (var e : largestFirst) {
+            if (remaining.signum() == 0) break;
+            BigDecimal take = e.getValue().min(remaining);
+            remaining = remaining.subtract(take);
+            rows.add(new Object[]{take, userId, e.getKey()});
+        }
+        jdbc.batchUpdate("UPDATE wallet_stripe SET balance = balance - ? WHERE user_id = ? AND stripe = ?", rows);
+        if (fromHome.signum() > 0) {
+            jdbc.update("UPDATE wallet SET balance = balance - ?, version = version + 1 WHERE user_id = ?", fromHome, userId);
+        }
+        return true;
+    }
+
+    Map<Integer, BigDecimal> lockStripes(Long userId) {
+        Map<Integer, BigDecimal> stripes = new LinkedHashMap<>();
+        jdbc.query("SELECT stripe, balance FROM wallet_stripe WHERE user_id = ? ORDER BY stripe FOR UPDATE",
+                rs -> { stripes.put(rs.getInt(1), rs.getBigDecimal(2)); }, userId);
+        return stripes;
+    }
+
+    private static BigDecimal[] spread(BigDecimal total, int n) {
+        BigDecimal share = total.divide(BigDecimal.valueOf(n), 2, RoundingMode.DOWN);
+        BigDecimal[] shares = new BigDecimal[n];
+        Arrays.fill(shares, share);
+        shares[0] = total.subtract(share.multiply(BigDecimal.valueOf(n - 1)));
+        return shares;
+    }
+}
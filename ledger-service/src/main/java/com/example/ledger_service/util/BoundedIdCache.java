@@ -0,0 +1,93 @@
+package com.example.ledger_service.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Size-capped LRU set of recently seen ids. Split into independently locked segments so
+// concurrent consumers rarely contend; each segment evicts its own least recently used id.
+public final class BoundedIdCache<K> {
+    private final Segment<K>[] segments;
+    private final int maxSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BoundedIdCache(int maxSize, int segmentCount) {
+        this.maxSize = maxSize;
+        int perSegment = Math.max(1, maxSize / segmentCount);
+        segments = (Segment<K>[]) new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(perSegment, evictions);
+        }
+    }
+
+    public boolean contains(K key) {
+        Segment<K> s = segmentFor(key);
+        boolean found;
+        synchronized (s) {
+            found = s.get(key) != null;
+        }
+        (found ? hits : misses).increment();
+        return found;
+    }
+
+    public void add(K key) {
+        Segment<K> s = segmentFor(key);
+        synchronized (s) {
+            s.put(key, Boolean.TRUE);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K> s : segments) {
+            synchronized (s) {
+                size += s.size();
+            }
+        }
+        return size;
+    }
+
+    public Map<String, Object> stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        return Map.of(
+                "size", size(),
+                "maxSize", maxSize,
+                "hits", h,
+                "misses", m,
+                "evictions", evictions.sum(),
+                "hitRate", h + m == 0 ? 0.0 : (double) h / (h + m)
+        );
+    }
+
+    private Segment<K> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[Math.floorMod(h, segments.length)];
+    }
+
+    // Never serialized; LinkedHashMap just happens to be Serializable
+    @SuppressWarnings("serial")
+    private static final class Segment<K> extends LinkedHashMap<K, Boolean> {
+        private final int capacity;
+        private final LongAdder evictions;
+
+        Segment(int capacity, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Boolean> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.ledger_service.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bloom filter whose bit array lives in a direct ByteBuffer, so tens of millions of
+// keys cost a few MB outside the heap and nothing for the GC to scan. Bits are set
+// with atomic OR, making put/mightContain safe to call from any thread.
+public final class OffHeapBloomFilter {
+    private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final double LN2 = Math.log(2);
+
+    private final ByteBuffer bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final LongAdder insertions = new LongAdder();
+
+    private OffHeapBloomFilter(long bitCount, int hashCount) {
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+        this.bits = ByteBuffer.allocateDirect(Math.toIntExact(bitCount / 8));
+    }
+
+    public static OffHeapBloomFilter create(long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("expectedInsertions must be > 0 and fpp in (0, 1)");
+        }
+        long m = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (LN2 * LN2));
+        m = (m + 63) & ~63L; // whole 64-bit words
+        if (m / 8 > Integer.MAX_VALUE - 7) {
+            throw new IllegalArgumentException("Bloom filter of " + m + " bits does not fit in one direct buffer");
+        }
+        int k = Math.max(1, (int) Math.round((double) m / expectedInsertions * LN2));
+        return new OffHeapBloomFilter(m, k);
+    }
+
+    // Returns true if the key was (probably) not present before
+    public boolean put(String key) {
+        long h = hash(key);
+        long h1 = fmix64(h);
+        long h2 = fmix64(h ^ 0x9E3779B97F4A7C15L) | 1;
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            long mask = 1L << bit;
+            long prev = (long) WORDS.getAndBitwiseOr(bits, (int) (bit >>> 6) << 3, mask);
+            changed |= (prev & mask) == 0;
+        }
+        if (changed) insertions.increment();
+        return changed;
+    }
+
+    public boolean mightContain(String key) {
+        long h = hash(key);
+        long h1 = fmix64(h);
+        long h2 = fmix64(h ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            long word = (long) WORDS.getAcquire(bits, (int) (bit >>> 6) << 3);
+            if ((word & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    public long approximateSize() {
+        return insertions.sum();
+    }
+
+    // (1 - e^(-kn/m))^k for the current number of insertions
+    public double expectedFpp() {
+        return Math.pow(1 - Math.exp(-hashCount * (double) insertions.sum() / bitCount), hashCount);
+    }
+
+    public long memoryBytes() {
+        return bits.capacity();
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    // FNV-1a over the UTF-16 chars; the keys are short ASCII "loanId:investorId" strings
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // MurmurHash3 finalizer
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.ledger_service.mq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EnvelopeDecoderTests {
+    private static final ObjectMapper M = new ObjectMapper();
+
+    @Test
+    void bindsEveryFieldAndKeepsThePayloadForTheInbox() throws Exception {
+        UUID messageId = UUID.randomUUID();
+        UUID sagaId = UUID.randomUUID();
+        String payload = M.writeValueAsString(Map.of(
+                "messageId", messageId.toString(),
+                "sagaId", sagaId.toString(),
+                "participationId", 11,
+                "investorId", 12,
+                "userId", 13,
+                "loanId", 14,
+                "amount", "250.50",
+                "idempotencyKey", "14:12",
+                "unknown", Map.of("nested", 1)));
+
+        ParticipationCreated e = EnvelopeDecoder.participationCreated(envelope(payload));
+
+        assertThat(e).isEqualTo(new ParticipationCreated(messageId, sagaId, 11L, 12L, 13L, 14L,
+                new BigDecimal("250.50"), "14:12", payload));
+    }
+
+    @Test
+    void acceptsNumericAmounts() throws Exception {
+        String payload = "{\"messageId\":\"" + UUID.randomUUID() + "\",\"amount\":99.95}";
+
+        assertThat(EnvelopeDecoder.participationCreated(envelope(payload)).amount()).isEqualByComparingTo("99.95");
+    }
+
+    @Test
+    void rejectsPayloadWithoutMessageId() {
+        assertThatThrownBy(() -> EnvelopeDecoder.participationCreated(envelope("{\"userId\":1}")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Missing messageId");
+    }
+
+    @Test
+    void bindsRefundRequestedIgnoringWalletAndAmount() throws Exception {
+        UUID messageId = UUID.randomUUID();
+        UUID sagaId = UUID.randomUUID();
+        String payload = M.writeValueAsString(Map.of(
+                "messageId", messageId.toString(),
+                "sagaId", sagaId.toString(),
+                "participationId", 11,
+                "userId", 13,
+                "amount", "250.50",
+                "idempotencyKey", "refund:11"));
+
+        RefundRequested e = EnvelopeDecoder.refundRequested(envelope(payload).getBytes(StandardCharsets.UTF_8));
+
+        assertThat(e).isEqualTo(new RefundRequested(messageId, sagaId, 11L, "refund:11", payload));
+    }
+
+    private static String envelope(String payload) throws Exception {
+        Map<String, Object> env = new LinkedHashMap<>();
+        env.put("schema", Map.of("type", "string", "optional", false));
+        env.put("payload", payload);
+        return M.writeValueAsString(env);
+    }
+}
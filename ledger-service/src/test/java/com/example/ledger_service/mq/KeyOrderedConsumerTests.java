@@ -0,0 +1,121 @@
+package com.example.ledger_service.mq;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// One partition, one slow key: the other keys must finish around it, every key must see its
+// records in offset order, and the committed offset must stay on the slow record until it is done.
+@EmbeddedKafka(partitions = 1, topics = KeyOrderedConsumerTests.TOPIC)
+class KeyOrderedConsumerTests {
+    static final String TOPIC = "KeyOrderedProbe";
+    private static final String GROUP = "key-ordered-tests";
+    private static final int KEYS = 10;
+    private static final int PER_KEY = 20;
+
+    private KeyOrderedConsumer<String> engine;
+
+    @AfterEach
+    void stop() {
+        if (engine != null) engine.stop();
+    }
+
+    @Test
+    void slowKeyHoldsBackOnlyItsOwnRecordsAndTheCommitPoint(EmbeddedKafkaBroker broker) throws Exception {
+        String brokers = broker.getBrokersAsString();
+        produce(brokers);
+
+        CountDownLatch releaseSlow = new CountDownLatch(1);
+        Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+        engine = new KeyOrderedConsumer<>("test", () -> new KafkaConsumer<>(Map.<String, Object>of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, brokers,
+                ConsumerConfig.GROUP_ID_CONFIG, GROUP,
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest",
+                ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false),
+                new StringDeserializer(), new ByteArrayDeserializer()),
+                List.of(TOPIC), new KeyOrderedConsumer.Processor<>() {
+            @Override
+            public String parse(ConsumerRecord<String, byte[]> record) {
+                return new String(record.value(), StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public Object key(ConsumerRecord<String, byte[]> record, String value) {
+                return record.key();
+            }
+
+            @Override
+            public void process(ConsumerRecord<String, byte[]> record, String value) throws Exception {
+                if (record.offset() == 0) releaseSlow.await(30, TimeUnit.SECONDS);
+                seen.computeIfAbsent(record.key(), k -> Collections.synchronizedList(new ArrayList<>()))
+                        .add(Integer.parseInt(value));
+            }
+        }, new KeyOrderedConsumer.Options(8, 1000, 20, 100, 5000, false));
+        engine.start();
+
+        // Everything except key-0 (stuck behind offset 0) completes while offset 0 is blocked
+        await(() -> seen.entrySet().stream().filter(e -> !e.getKey().equals("key-0"))
+                .mapToInt(e -> e.getValue().size()).sum() == (KEYS - 1) * PER_KEY);
+        assertThat(seen.get("key-0")).isNull();
+        Thread.sleep(200);
+        assertThat(committedOffset(brokers)).isIn(null, 0L);
+
+        releaseSlow.countDown();
+        await(() -> seen.values().stream().mapToInt(List::size).sum() == KEYS * PER_KEY);
+        for (List<Integer> values : seen.values()) {
+            assertThat(values).isSorted().hasSize(PER_KEY);
+        }
+        await(() -> Long.valueOf(KEYS * PER_KEY).equals(committedOffset(brokers)));
+    }
+
+    private static void produce(String brokers) throws Exception {
+        try (var producer = new KafkaProducer<>(Map.<String, Object>of(
+                "bootstrap.servers", brokers), new StringSerializer(), new ByteArraySerializer())) {
+            for (int i = 0; i < KEYS * PER_KEY; i++) {
+                producer.send(new ProducerRecord<>(TOPIC, 0, "key-" + (i % KEYS),
+                        String.valueOf(i).getBytes(StandardCharsets.UTF_8))).get();
+            }
+        }
+    }
+
+    private static Long committedOffset(String brokers) {
+        try {
+            OffsetAndMetadata committed = KafkaTestUtils.getCurrentOffset(brokers, GROUP, TOPIC, 0);
+            return committed == null ? null : committed.offset();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("timed out").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
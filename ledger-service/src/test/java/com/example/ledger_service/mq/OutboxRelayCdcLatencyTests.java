@@ -0,0 +1,129 @@
+package com.example.ledger_service.mq;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Insert-to-consume latency of the relay next to Debezium for the very same outbox rows: the
+// in-service relay publishes to an embedded broker, and the ledger connector of the
+// docker-compose stack (watching the same database) publishes to the Kafka named by
+// -Dbench.cdc.bootstrapServers. Only runs with that property, e.g.
+// mvn test -Dtest=OutboxRelayCdcLatencyTests -Dbench.cdc.bootstrapServers=localhost:9092
+@EnabledIfSystemProperty(named = "bench.cdc.bootstrapServers", matches = ".+")
+@SpringBootTest(properties = {
+        "app.outbox.relay.enabled=true",
+        "app.outbox.relay.pollMs=10",
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}"})
+@EmbeddedKafka(partitions = 1, topics = OutboxRelayCdcLatencyTests.TOPIC)
+class OutboxRelayCdcLatencyTests {
+    static final String TOPIC = "OutboxLatencyProbe";
+    private static final int EVENTS = 2_000;
+    private static final ObjectMapper M = new ObjectMapper();
+
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    EmbeddedKafkaBroker broker;
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM outbox WHERE event_type = ?", TOPIC);
+    }
+
+    @Test
+    void relayAndDebeziumDeliverTheSameRows() throws Exception {
+        String cdcServers = System.getProperty("bench.cdc.bootstrapServers");
+        String run = UUID.randomUUID().toString();
+
+        try (Consumer<String, String> relayConsumer = relayConsumer();
+             Consumer<String, String> cdcConsumer = cdcConsumer(cdcServers)) {
+            for (int i = 0; i < EVENTS; i++) {
+                jdbc.update("INSERT INTO outbox (event_type, aggregate_type, aggregate_id, payload) VALUES (?, 'Probe', ?, ?)",
+                        TOPIC, (long) i, M.writeValueAsString(Map.of("run", run, "seq", i, "insertedAt", System.currentTimeMillis())));
+            }
+
+            long[] relay = collectLatencies(relayConsumer, run, "relay");
+            long[] cdc = collectLatencies(cdcConsumer, run, "cdc");
+            report("relay (embedded Kafka)", relay);
+            report("debezium (" + cdcServers + ")", cdc);
+
+            assertThat(relay).hasSize(EVENTS);
+            assertThat(cdc).hasSize(EVENTS);
+        }
+    }
+
+    private long[] collectLatencies(Consumer<String, String> consumer, String run, String path) throws Exception {
+        Map<Integer, Long> latencyBySeq = new HashMap<>();
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (latencyBySeq.size() < EVENTS && System.currentTimeMillis() < deadline) {
+            for (ConsumerRecord<String, String> r : consumer.poll(Duration.ofMillis(100))) {
+                long receivedAt = System.currentTimeMillis();
+                JsonNode payload = payload(r.value());
+                if (!run.equals(payload.get("run").asText())) continue;
+
+                int seq = payload.get("seq").asInt();
+                assertThat(latencyBySeq.put(seq, receivedAt - payload.get("insertedAt").asLong()))
+                        .as("%s delivered seq %d twice", path, seq).isNull();
+            }
+        }
+        return latencyBySeq.values().stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    // The relay wraps the payload in a schema envelope; the connector (schemas disabled) sends it as a JSON string
+    private static JsonNode payload(String value) throws Exception {
+        JsonNode node = M.readTree(value);
+        if (node.has("payload")) node = node.get("payload");
+        return M.readTree(node.asText());
+    }
+
+    private Consumer<String, String> relayConsumer() {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("outbox-latency-" + UUID.randomUUID(), "false", broker);
+        Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new StringDeserializer())
+                .createConsumer();
+        broker.consumeFromAnEmbeddedTopic(consumer, TOPIC);
+        return consumer;
+    }
+
+    private static Consumer<String, String> cdcConsumer(String bootstrapServers) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "outbox-latency-" + UUID.randomUUID());
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        var consumer = new KafkaConsumer<>(props, new StringDeserializer(), new StringDeserializer());
+        consumer.subscribe(List.of(TOPIC));
+        // Join the group before the rows are inserted so "latest" does not skip any of them
+        while (consumer.assignment().isEmpty()) {
+            consumer.poll(Duration.ofMillis(100));
+        }
+        return consumer;
+    }
+
+    private static void report(String path, long[] sorted) {
+        if (sorted.length == 0) {
+            System.out.printf("%s: no events received%n", path);
+            return;
+        }
+        System.out.printf("%s: %d events, latency ms p50=%d p95=%d p99=%d max=%d%n", path, sorted.length,
+                sorted[sorted.length / 2], sorted[(int) (sorted.length * 0.95)],
+                sorted[(int) (sorted.length * 0.99)], sorted[sorted.length - 1]);
+    }
+}
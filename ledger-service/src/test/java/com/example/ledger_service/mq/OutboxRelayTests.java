@@ -0,0 +1,84 @@
+package com.example.ledger_service.mq;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The in-service relay publishes every outbox row to an embedded broker exactly once, in the
+// Debezium EventRouter format: topic by event type, payload as a string, key the aggregate id.
+@SpringBootTest(properties = {
+        "app.outbox.relay.enabled=true",
+        "app.outbox.relay.pollMs=10",
+        "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}"})
+@EmbeddedKafka(partitions = 1, topics = OutboxRelayTests.TOPIC)
+class OutboxRelayTests {
+    static final String TOPIC = "OutboxRelayProbe";
+    private static final int EVENTS = 2_000;
+    private static final ObjectMapper M = new ObjectMapper();
+
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    EmbeddedKafkaBroker broker;
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM outbox WHERE event_type = ?", TOPIC);
+    }
+
+    @Test
+    void relayPublishesEveryRowOnceInTheConnectorFormat() throws Exception {
+        String run = UUID.randomUUID().toString();
+
+        try (Consumer<String, String> consumer = relayConsumer()) {
+            for (int i = 0; i < EVENTS; i++) {
+                jdbc.update("INSERT INTO outbox (event_type, aggregate_type, aggregate_id, payload) VALUES (?, 'Probe', ?, ?)",
+                        TOPIC, (long) i, M.writeValueAsString(Map.of("run", run, "seq", i)));
+            }
+
+            assertThat(collectSeqs(consumer, run)).hasSize(EVENTS);
+            assertThat(jdbc.queryForObject("SELECT count(*) FROM outbox WHERE event_type = ? AND status = 'PUBLISHED'",
+                    Long.class, TOPIC)).isEqualTo(EVENTS);
+        }
+    }
+
+    private Set<Integer> collectSeqs(Consumer<String, String> consumer, String run) throws Exception {
+        Set<Integer> seqs = new HashSet<>();
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (seqs.size() < EVENTS && System.currentTimeMillis() < deadline) {
+            for (ConsumerRecord<String, String> r : consumer.poll(Duration.ofMillis(100))) {
+                JsonNode payload = M.readTree(M.readTree(r.value()).get("payload").asText());
+                if (!run.equals(payload.get("run").asText())) continue;
+
+                int seq = payload.get("seq").asInt();
+                assertThat(M.readTree(r.key()).get("payload").asLong()).isEqualTo(seq);
+                assertThat(seqs.add(seq)).as("seq %d delivered twice", seq).isTrue();
+            }
+        }
+        return seqs;
+    }
+
+    private Consumer<String, String> relayConsumer() {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("outbox-relay-" + UUID.randomUUID(), "false", broker);
+        Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(), new StringDeserializer())
+                .createConsumer();
+        broker.consumeFromAnEmbeddedTopic(consumer, TOPIC);
+        return consumer;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.ledger_service.mq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Old and new producers and consumers must keep understanding each other: JSON records
+// without a header, binary v1, and binary records from a later version that appended fields.
+class SagaEventCodecCompatibilityTests {
+    private static final ObjectMapper M = new ObjectMapper();
+
+    private final UUID messageId = UUID.randomUUID();
+    private final UUID sagaId = UUID.randomUUID();
+
+    @Test
+    void recordsWithoutHeaderAreTheJsonEnvelope() throws Exception {
+        byte[] value = envelope(participationPayload()).getBytes(StandardCharsets.UTF_8);
+
+        ParticipationCreated e = SagaEventCodec.readParticipationCreated(value, new RecordHeaders());
+
+        assertThat(e.messageId()).isEqualTo(messageId);
+        assertThat(e.amount()).isEqualByComparingTo("250.50");
+    }
+
+    @Test
+    void binaryParticipationCreatedMatchesTheJsonDecoding() throws Exception {
+        String payload = participationPayload();
+        ParticipationCreated json = EnvelopeDecoder.participationCreatedPayload(payload);
+
+        byte[] value = SagaEventCodec.encodePayload("ParticipationCreated", payload);
+        ParticipationCreated binary = SagaEventCodec.readParticipationCreated(value, binaryHeader("bin-1"));
+
+        assertThat(binary).usingRecursiveComparison().ignoringFields("payload").isEqualTo(json);
+        assertThat(value.length).isLessThan(payload.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    void binaryTransactionEventsKeepNullsAndTheirType() throws Exception {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("messageId", messageId.toString());
+        payload.put("sagaId", sagaId.toString());
+        payload.put("participationId", 7);
+        payload.put("transactionId", null);
+        payload.put("idempotencyKey", "14:12");
+        payload.put("status", "FAILED");
+        payload.put("reason", "INSUFFICIENT_FUNDS");
+
+        byte[] failed = SagaEventCodec.encodePayload("TransactionFailed", M.writeValueAsString(payload));
+        TransactionEvent e = SagaEventCodec.readTransactionEvent(failed, binaryHeader("bin-1"));
+
+        assertThat(e.transactionId()).isNull();
+        assertThat(e.participationId()).isEqualTo(7L);
+        assertThat(e.reason()).isEqualTo("INSUFFICIENT_FUNDS");
+        assertThatThrownBy(() -> SagaEventCodec.readParticipationCreated(failed, binaryHeader("bin-1")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void v1DecoderReadsALaterVersionThatAppendedFields() throws Exception {
+        byte[] v1 = SagaEventCodec.encodePayload("ParticipationCreated", participationPayload());
+        byte[] v2 = ByteBuffer.allocate(v1.length + 12).put(v1).putLong(123L).putInt(456).array();
+        v2[0] = 2;
+
+        ParticipationCreated e = SagaEventCodec.readParticipationCreated(v2, binaryHeader("bin-2"));
+
+        assertThat(e).usingRecursiveComparison().ignoringFields("payload")
+                .isEqualTo(SagaEventCodec.readParticipationCreated(v1, binaryHeader("bin-1")));
+    }
+
+    @Test
+    void unknownCodecIsRejected() {
+        assertThatThrownBy(() -> SagaEventCodec.readParticipationCreated(new byte[0], binaryHeader("avro")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("avro");
+    }
+
+    private String participationPayload() throws Exception {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("messageId", messageId.toString());
+        payload.put("sagaId", sagaId.toString());
+        payload.put("participationId", 11);
+        payload.put("investorId", 12);
+        payload.put("userId", 13);
+        payload.put("loanId", 14);
+        payload.put("amount", "250.50");
+        payload.put("idempotencyKey", "14:12");
+        return M.writeValueAsString(payload);
+    }
+
+    private static String envelope(String payload) throws Exception {
+        Map<String, Object> env = new LinkedHashMap<>();
+        env.put("schema", Map.of("type", "string", "optional", false));
+        env.put("payload", payload);
+        return M.writeValueAsString(env);
+    }
+
+    private static RecordHeaders binaryHeader(String codec) {
+        var headers = new RecordHeaders();
+        headers.add(SagaEventCodec.HEADER, codec.getBytes(StandardCharsets.UTF_8));
+        return headers;
+    }
+}
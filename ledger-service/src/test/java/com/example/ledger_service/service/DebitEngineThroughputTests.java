@@ -0,0 +1,106 @@
+package com.example.ledger_service.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Many threads debiting one wallet: every debit must land, none may be lost to a
+// version conflict, and the final balance must match the sum of the debits.
+@SpringBootTest
+class DebitEngineThroughputTests {
+    private static final long USER_ID = 990_001L;
+    private static final int THREADS = 32;
+    private static final int DEBITS_PER_THREAD = 200;
+
+    @Autowired
+    DebitEngine engine;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    TransactionTemplate tx;
+
+    @BeforeEach
+    void seedWallet() {
+        cleanUp();
+        jdbc.update("INSERT INTO wallet (user_id, balance) VALUES (?, ?)", USER_ID, new BigDecimal("1000000.00"));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM outbox WHERE payload::json ->> 'idempotencyKey' IN "
+                + "(SELECT idempotency_key FROM txn WHERE user_id = ?)", USER_ID);
+        jdbc.update("DELETE FROM txn WHERE user_id = ?", USER_ID);
+        jdbc.update("DELETE FROM wallet WHERE user_id = ?", USER_ID);
+    }
+
+    @Test
+    void concurrentDebitsOnOneWalletAllSucceed() throws Exception {
+        String run = UUID.randomUUID().toString();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                int ok = 0;
+                for (int i = 0; i < DEBITS_PER_THREAD; i++) {
+                    long pid = (long) thread * DEBITS_PER_THREAD + i;
+                    String idem = run + ":" + pid;
+                    var r = tx.execute(s -> engine.debit(UUID.randomUUID(), USER_ID, pid, BigDecimal.ONE, idem, true));
+                    if ("SUCCESS".equals(r.status())) ok++;
+                }
+                return ok;
+            }));
+        }
+
+        int succeeded = 0;
+        for (Future<Integer> f : futures) {
+            succeeded += f.get();
+        }
+        pool.shutdown();
+
+        int total = THREADS * DEBITS_PER_THREAD;
+
+        assertThat(succeeded).isEqualTo(total);
+        assertThat(jdbc.queryForObject("SELECT balance FROM wallet WHERE user_id = ?", BigDecimal.class, USER_ID))
+                .isEqualByComparingTo(new BigDecimal("1000000.00").subtract(BigDecimal.valueOf(total)));
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM txn WHERE user_id = ? AND status = 'SUCCESS'", Long.class, USER_ID))
+                .isEqualTo(total);
+    }
+
+    @Test
+    void replayedIdempotencyKeyIsDuplicateAndDebitsOnce() {
+        String idem = UUID.randomUUID() + ":1";
+        var first = tx.execute(s -> engine.debit(UUID.randomUUID(), USER_ID, 1L, BigDecimal.TEN, idem, true));
+        var second = tx.execute(s -> engine.debit(UUID.randomUUID(), USER_ID, 1L, BigDecimal.TEN, idem, true));
+
+        assertThat(first.status()).isEqualTo("SUCCESS");
+        assertThat(second.status()).isEqualTo("DUPLICATE");
+        assertThat(jdbc.queryForObject("SELECT balance FROM wallet WHERE user_id = ?", BigDecimal.class, USER_ID))
+                .isEqualByComparingTo("999990.00");
+    }
+
+    @Test
+    void insufficientFundsRecordsFailedTxnWithoutDebiting() {
+        var r = tx.execute(s -> engine.debit(UUID.randomUUID(), USER_ID, 2L, new BigDecimal("2000000.00"),
+                UUID.randomUUID() + ":2", true));
+
+        assertThat(r.status()).isEqualTo("FAILED");
+        assertThat(jdbc.queryForObject("SELECT balance FROM wallet WHERE user_id = ?", BigDecimal.class, USER_ID))
+                .isEqualByComparingTo("1000000.00");
+    }
+}
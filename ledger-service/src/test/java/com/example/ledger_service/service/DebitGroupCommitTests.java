@@ -0,0 +1,118 @@
+package com.example.ledger_service.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Concurrent processDebit calls share commits: every caller still gets its own status, a failing
+// debit does not take its group down, and groups hold more than one debit under load.
+@SpringBootTest(properties = {
+        "app.debit.groupCommit.enabled=true",
+        "app.debit.groupCommit.windowMs=5",
+        "app.debit.groupCommit.maxBatch=32"
+})
+class DebitGroupCommitTests {
+    private static final long USER_ID = 990_201L;
+    private static final long MISSING_USER_ID = 990_202L;
+    private static final int CALLERS = 200;
+
+    @Autowired
+    LedgerService ledgerService;
+    @Autowired
+    DebitGroupCommitter committer;
+    @Autowired
+    JdbcTemplate jdbc;
+
+    private final String run = UUID.randomUUID().toString();
+
+    @BeforeEach
+    void seedWallet() {
+        cleanUp();
+        jdbc.update("INSERT INTO wallet (user_id, balance) VALUES (?, ?)", USER_ID, new BigDecimal("150.00"));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM txn WHERE user_id IN (?, ?)", USER_ID, MISSING_USER_ID);
+        jdbc.update("DELETE FROM wallet WHERE user_id = ?", USER_ID);
+    }
+
+    @Test
+    void concurrentDebitsAreCommittedInGroupsWithPerCallerResults() throws Exception {
+        List<Future<Map<String, Object>>> calls = new ArrayList<>();
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CALLERS; i++) {
+                long pid = 20_000 + i;
+                calls.add(callers.submit(() ->
+                        ledgerService.processDebit(UUID.randomUUID(), USER_ID, pid, BigDecimal.ONE, run + ":" + pid)));
+            }
+            // No wallet: the engine throws for this one caller only
+            calls.add(callers.submit(() ->
+                    ledgerService.processDebit(UUID.randomUUID(), MISSING_USER_ID, 1L, BigDecimal.ONE, run + ":missing")));
+        }
+
+        int success = 0;
+        int failed = 0;
+        int errors = 0;
+        for (Future<Map<String, Object>> call : calls) {
+            try {
+                Object status = call.get().get("status");
+                if ("SUCCESS".equals(status)) success++;
+                if ("FAILED".equals(status)) failed++;
+            } catch (Exception e) {
+                errors++;
+            }
+        }
+
+        assertThat(success).isEqualTo(150);
+        assertThat(failed).isEqualTo(CALLERS - 150);
+        assertThat(errors).isEqualTo(1);
+        assertThat(jdbc.queryForObject("SELECT balance FROM wallet WHERE user_id = ?", BigDecimal.class, USER_ID))
+                .isEqualByComparingTo("0.00");
+
+        Map<String, Object> stats = committer.stats();
+        assertThat((double) stats.get("meanGroupSize")).isGreaterThan(1.0);
+    }
+
+    // One group, one transaction: the failing debit between two good ones only fails its own caller
+    @Test
+    void failingDebitDoesNotTakeItsGroupDown() throws Exception {
+        var first = request(USER_ID, 30_001L);
+        var missing = request(MISSING_USER_ID, 30_002L);
+        var second = request(USER_ID, 30_003L);
+
+        committer.commit(List.of(first, missing, second));
+
+        assertThat(first.result().get().status()).isEqualTo("SUCCESS");
+        assertThat(second.result().get().status()).isEqualTo("SUCCESS");
+        assertThatThrownBy(() -> missing.result().get())
+                .isInstanceOf(ExecutionException.class)
+                .hasMessageContaining("Wallet not found");
+        assertThat(jdbc.queryForObject("SELECT balance FROM wallet WHERE user_id = ?", BigDecimal.class, USER_ID))
+                .isEqualByComparingTo("148.00");
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM txn WHERE idempotency_key LIKE ?", Long.class, run + ":%"))
+                .isEqualTo(2);
+    }
+
+    private DebitGroupCommitter.Request request(long userId, long participationId) {
+        return new DebitGroupCommitter.Request(UUID.randomUUID(), userId, participationId, BigDecimal.ONE,
+                run + ":" + participationId, null, System.nanoTime(), new CompletableFuture<>());
+    }
+}
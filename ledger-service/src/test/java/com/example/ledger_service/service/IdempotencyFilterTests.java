@@ -0,0 +1,121 @@
+package com.example.ledger_service.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The filter around the bloom filter: keys committed while a rebuild scans the txn table are
+// in the rebuilt filter, and a key reaches the filter only if its transaction commits. The txn
+// table is a list of keys here, and the transaction outcome is driven by hand.
+class IdempotencyFilterTests {
+    private final ScriptedTxnTable txn = new ScriptedTxnTable();
+    private final IdempotencyFilter filter = new IdempotencyFilter(txn, new TransactionTemplate() {
+        @Override
+        public <T> T execute(TransactionCallback<T> action) {
+            return action.doInTransaction(null);
+        }
+    });
+
+    {
+        filter.enabled = true;
+        filter.expectedKeys = 10_000;
+        filter.fpp = 0.01;
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void everyAnswerIsMaybeBeforeTheFirstBuild() {
+        assertThat(filter.mightContain("1:1")).isTrue();
+    }
+
+    @Test
+    void keysCommittedDuringARebuildSurviveTheSwap() {
+        txn.keys = List.of("1:1");
+        assertThat(filter.rebuild()).isTrue();
+
+        txn.keys = List.of("1:1", "1:2");
+        txn.midScan = row -> {
+            filter.addOnCommit("1:3"); // commits after the scan's snapshot was taken
+            assertThat(filter.mightContain("1:3")).as("served by the old filter meanwhile").isTrue();
+        };
+        assertThat(filter.rebuild()).isTrue();
+
+        assertThat(filter.mightContain("1:1")).isTrue();
+        assertThat(filter.mightContain("1:2")).isTrue();
+        assertThat(filter.mightContain("1:3")).isTrue();
+        assertThat(filter.mightContain("1:4")).isFalse();
+    }
+
+    @Test
+    void onlyCommittedKeysAreAdded() {
+        txn.keys = List.of();
+        filter.rebuild();
+
+        complete(() -> filter.addOnCommit("2:1"), TransactionSynchronization.STATUS_ROLLED_BACK);
+        complete(() -> {
+            filter.addOnCommit("2:2");
+            assertThat(filter.mightContain("2:2")).as("not before commit").isFalse();
+        }, TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(filter.mightContain("2:1")).isFalse();
+        assertThat(filter.mightContain("2:2")).isTrue();
+    }
+
+    // Runs work as the body of a transaction and ends it with the given status, calling the
+    // registered synchronizations the way the transaction manager does
+    private static void complete(Runnable work, int status) {
+        TransactionSynchronizationManager.initSynchronization();
+        work.run();
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            TransactionSynchronizationUtils.invokeAfterCommit(synchronizations);
+        }
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, status);
+    }
+
+    // Answers the rebuild's scan of txn.idempotency_key from a list, calling midScan after the
+    // first row
+    private static class ScriptedTxnTable extends JdbcTemplate {
+        List<String> keys = List.of();
+        Consumer<String> midScan = row -> {};
+
+        @Override
+        public void query(PreparedStatementCreator psc, RowCallbackHandler rch) {
+            for (int i = 0; i < keys.size(); i++) {
+                try {
+                    rch.processRow(row(keys.get(i)));
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                if (i == 0) midScan.accept(keys.get(i));
+            }
+        }
+
+        private static ResultSet row(String key) {
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    (proxy, method, args) -> method.getName().equals("getString") ? key : null);
+        }
+    }
+}
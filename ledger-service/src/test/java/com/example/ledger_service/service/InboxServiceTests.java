@@ -0,0 +1,96 @@
+package com.example.ledger_service.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Inbox dedup of a whole poll: recently committed messages are answered by the cache without
+// touching the inbox, the rest by one insert-if-absent that returns only the fresh messages.
+@SpringBootTest
+class InboxServiceTests {
+    private static final String HANDLER = "InboxServiceTests";
+
+    @Autowired
+    InboxService inbox;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    TransactionTemplate tx;
+
+    private final Instant receivedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM inbox WHERE handler = ?", HANDLER);
+    }
+
+    @Test
+    void redeliveredPollYieldsOnlyFreshMessages() {
+        UUID a = UUID.randomUUID(), b = UUID.randomUUID(), c = UUID.randomUUID(), d = UUID.randomUUID();
+        assertThat(claimAll(a, b)).containsExactly(a, b);
+        // d was committed by another instance, so only the inbox knows it
+        jdbc.update("INSERT INTO inbox (message_id, payload, handler, received_at) VALUES (?, '{}', ?, ?)",
+                d, HANDLER, Timestamp.from(receivedAt));
+
+        assertThat(claimAll(a, d, c, b, c)).containsExactly(c);
+
+        assertThat(inboxRows(a, b, c, d)).isEqualTo(4);
+        assertThat(inbox.isKnown(d)).isTrue();
+    }
+
+    // The cache answers before the insert: with the inbox rows gone, a redelivery of
+    // recently committed messages is still dropped
+    @Test
+    void cachedMessagesSkipTheInsert() {
+        UUID a = UUID.randomUUID(), b = UUID.randomUUID();
+        claimAll(a, b);
+        jdbc.update("DELETE FROM inbox WHERE message_id IN (?, ?)", a, b);
+
+        assertThat(claimAll(a, b)).isEmpty();
+        assertThat(inboxRows(a, b)).isZero();
+    }
+
+    @Test
+    void rolledBackPollIsNotCached() {
+        UUID a = UUID.randomUUID();
+        tx.executeWithoutResult(s -> {
+            inbox.rememberOnCommit(inbox.claimAll(List.of(a), this::message, HANDLER));
+            s.setRollbackOnly();
+        });
+
+        assertThat(inbox.isKnown(a)).isFalse();
+        assertThat(claimAll(a)).containsExactly(a);
+    }
+
+    // Like LedgerBatchService, which remembers the fresh messages once the poll is applied
+    private List<UUID> claimAll(UUID... ids) {
+        return tx.execute(s -> {
+            List<UUID> fresh = inbox.claimAll(List.of(ids), this::message, HANDLER);
+            inbox.rememberOnCommit(fresh);
+            return fresh;
+        });
+    }
+
+    private InboxService.Message message(UUID id) {
+        return new InboxService.Message(id, "{}", receivedAt);
+    }
+
+    private long inboxRows(UUID... ids) {
+        long rows = 0;
+        for (UUID id : ids) {
+            rows += jdbc.queryForObject("SELECT count(*) FROM inbox WHERE message_id = ?", Long.class, id);
+        }
+        return rows;
+    }
+}
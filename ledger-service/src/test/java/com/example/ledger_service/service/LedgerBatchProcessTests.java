@@ -0,0 +1,127 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.service.LedgerBatchService.Debit;
+import com.example.ledger_service.service.LedgerBatchService.Outcome;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// A ParticipationCreated poll: a record that fails for its own reasons is answered with
+// TransactionFailed while the rest of the poll commits; a transient error rolls the whole
+// poll back so the container redelivers it.
+@SpringBootTest
+class LedgerBatchProcessTests {
+    private static final long USER_ID = 990_201L;
+    private static final long OTHER_USER_ID = 990_202L;
+    private static final long MISSING_USER_ID = 990_203L;
+
+    @Autowired
+    LedgerBatchService batchService;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    TransactionTemplate tx;
+    @Autowired
+    DataSource dataSource;
+
+    private final String run = UUID.randomUUID().toString();
+
+    @BeforeEach
+    void seedWallets() {
+        cleanUp();
+        jdbc.update("INSERT INTO wallet (user_id, balance) VALUES (?, ?), (?, ?)",
+                USER_ID, new BigDecimal("100.00"), OTHER_USER_ID, new BigDecimal("100.00"));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM txn WHERE user_id IN (?, ?, ?)", USER_ID, OTHER_USER_ID, MISSING_USER_ID);
+        jdbc.update("DELETE FROM wallet WHERE user_id IN (?, ?)", USER_ID, OTHER_USER_ID);
+        jdbc.update("DELETE FROM inbox WHERE payload = ?", payload());
+        jdbc.update("DELETE FROM outbox WHERE payload LIKE ?", "%" + run + "%");
+    }
+
+    @Test
+    void badRecordIsAnsweredAndTheRestOfThePollCommits() {
+        Debit first = debit(USER_ID, 1, "30.00");
+        Debit bad = debit(MISSING_USER_ID, 2, "1.00");
+        Debit second = debit(USER_ID, 3, "20.00");
+
+        Map<UUID, Outcome> outcomes = tx.execute(s -> batchService.process(List.of(first, bad, second), "ParticipationCreated"));
+
+        assertThat(outcomes.get(first.messageId()).status()).isEqualTo("SUCCESS");
+        assertThat(outcomes.get(second.messageId()).status()).isEqualTo("SUCCESS");
+        assertThat(outcomes.get(bad.messageId()))
+                .extracting(Outcome::status, Outcome::transactionId)
+                .containsExactly("FAILED", null);
+        assertThat(outcomes.get(bad.messageId()).reason()).contains("Wallet not found");
+
+        assertThat(jdbc.queryForObject("SELECT balance FROM wallet WHERE user_id = ?", BigDecimal.class, USER_ID))
+                .isEqualByComparingTo("50.00");
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM txn WHERE idempotency_key = ?", Long.class, bad.idempotencyKey()))
+                .isZero();
+        assertThat(jdbc.queryForList("SELECT event_type FROM outbox WHERE payload LIKE ?", String.class,
+                "%" + bad.idempotencyKey() + "%")).containsExactly("TransactionFailed");
+        assertThat(inboxRows(first, bad, second)).isEqualTo(3);
+    }
+
+    // Another transaction holds OTHER_USER_ID's wallet past lock_timeout: the batch fails, and
+    // when the isolated retry reaches that record the lock timeout is rethrown, taking the
+    // debit that already succeeded in this poll down with it
+    @Test
+    void transientErrorRollsBackTheWholePoll() throws Exception {
+        Debit first = debit(USER_ID, 1, "30.00");
+        Debit blocked = debit(OTHER_USER_ID, 2, "30.00");
+
+        try (Connection holder = dataSource.getConnection()) {
+            holder.setAutoCommit(false);
+            holder.createStatement().execute("SELECT 1 FROM wallet WHERE user_id = " + OTHER_USER_ID + " FOR UPDATE");
+
+            assertThatThrownBy(() -> tx.executeWithoutResult(s -> {
+                jdbc.execute("SET LOCAL lock_timeout = '200ms'");
+                batchService.process(List.of(first, blocked), "ParticipationCreated");
+            })).isInstanceOf(TransientDataAccessException.class);
+
+            holder.rollback();
+        }
+
+        assertThat(jdbc.queryForObject("SELECT balance FROM wallet WHERE user_id = ?", BigDecimal.class, USER_ID))
+                .isEqualByComparingTo("100.00");
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM txn WHERE user_id IN (?, ?)", Long.class, USER_ID, OTHER_USER_ID))
+                .isZero();
+        assertThat(inboxRows(first, blocked)).isZero();
+    }
+
+    private long inboxRows(Debit... debits) {
+        long rows = 0;
+        for (Debit d : debits) {
+            rows += jdbc.queryForObject("SELECT count(*) FROM inbox WHERE message_id = ?", Long.class, d.messageId());
+        }
+        return rows;
+    }
+
+    private Debit debit(long userId, long participationId, String amount) {
+        return new Debit(UUID.randomUUID(), UUID.randomUUID(), userId, participationId, new BigDecimal(amount),
+                run + ":" + participationId, payload(), Instant.now(), null);
+    }
+
+    private String payload() {
+        return "{\"run\":\"" + run + "\"}";
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.service.LedgerBatchService.Debit;
+import com.example.ledger_service.service.LedgerBatchService.Outcome;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// /wallet/debit/batch semantics: per-item SUCCESS/FAILED/DUPLICATE in request order, one bad
+// item isolated from the rest, and a large batch moved in one transaction.
+@SpringBootTest
+class LedgerBatchRequestsTests {
+    private static final long USER_ID = 990_101L;
+    private static final long MISSING_USER_ID = 990_102L;
+
+    @Autowired
+    LedgerBatchService batchService;
+    @Autowired
+    JdbcTemplate jdbc;
+
+    private final String run = UUID.randomUUID().toString();
+
+    @BeforeEach
+    void seedWallet() {
+        cleanUp();
+        jdbc.update("INSERT INTO wallet (user_id, balance) VALUES (?, ?)", USER_ID, new BigDecimal("100.00"));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM txn WHERE user_id IN (?, ?)", USER_ID, MISSING_USER_ID);
+        jdbc.update("DELETE FROM wallet WHERE user_id = ?", USER_ID);
+    }
+
+    @Test
+    void resultsFollowRequestOrderWithTheSingleDebitStatuses() {
+        List<Outcome> first = batchService.applyRequests(List.of(
+                debit(USER_ID, 1, "60.00"),
+                debit(USER_ID, 2, "60.00"),         // only 40.00 left
+                debit(USER_ID, 1, "60.00"),         // same key as the first item
+                debit(MISSING_USER_ID, 3, "1.00")   // no wallet: fails alone
+        ), false);
+
+        assertThat(first).extracting(Outcome::status).containsExactly("SUCCESS", "FAILED", "DUPLICATE", "FAILED");
+        assertThat(first.get(1).reason()).isEqualTo("INSUFFICIENT_FUNDS");
+        assertThat(first.get(3).reason()).contains("Wallet not found");
+
+        // A retry of the whole request is answered from the txn table
+        List<Outcome> retry = batchService.applyRequests(List.of(debit(USER_ID, 1, "60.00")), false);
+        assertThat(retry).extracting(Outcome::status).containsExactly("DUPLICATE");
+        assertThat(jdbc.queryForObject("SELECT balance FROM wallet WHERE user_id = ?", BigDecimal.class, USER_ID))
+                .isEqualByComparingTo("40.00");
+    }
+
+    @Test
+    void thousandsOfDebitsInOneCall() {
+        jdbc.update("UPDATE wallet SET balance = 1000000 WHERE user_id = ?", USER_ID);
+        List<Debit> debits = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            debits.add(debit(USER_ID, 10_000 + i, "1.00"));
+        }
+
+        List<Outcome> outcomes = batchService.applyRequests(debits, false);
+
+        assertThat(outcomes).hasSize(debits.size()).allMatch(o -> o.status().equals("SUCCESS"));
+        assertThat(jdbc.queryForObject("SELECT balance FROM wallet WHERE user_id = ?", BigDecimal.class, USER_ID))
+                .isEqualByComparingTo("995000.00");
+    }
+
+    private Debit debit(long userId, long participationId, String amount) {
+        return new Debit(UUID.randomUUID(), UUID.randomUUID(), userId, participationId, new BigDecimal(amount),
+                run + ":" + participationId, null, null, null);
+    }
+}
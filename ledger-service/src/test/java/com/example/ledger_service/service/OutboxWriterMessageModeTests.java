@@ -0,0 +1,167 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.util.EventTime;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.debezium.connector.postgresql.transforms.DecodeLogicalDecodingMessageContent;
+import io.debezium.transforms.outbox.EventRouter;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.apache.kafka.connect.storage.SimpleHeaderConverter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// In message mode a debit writes its event into the WAL only: a test_decoding slot sees the
+// "outbox" message on commit, nothing on rollback, and the outbox table stays untouched. The
+// message content goes through the connector's transforms the same way an outbox row does.
+@SpringBootTest(properties = "app.outbox.mode=message")
+class OutboxWriterMessageModeTests {
+    private static final long USER_ID = 990_002L;
+    private static final String SLOT = "outbox_message_test_slot";
+
+    @Autowired
+    DebitEngine engine;
+    @Autowired
+    OutboxWriter writer;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+        jdbc.update("INSERT INTO wallet (user_id, balance) VALUES (?, ?)", USER_ID, new BigDecimal("100.00"));
+        jdbc.queryForList("SELECT pg_create_logical_replication_slot(?, 'test_decoding')", SLOT);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.queryForList("SELECT pg_drop_replication_slot(slot_name) FROM pg_replication_slots WHERE slot_name = ?", SLOT);
+        jdbc.update("DELETE FROM txn WHERE user_id = ?", USER_ID);
+        jdbc.update("DELETE FROM wallet WHERE user_id = ?", USER_ID);
+    }
+
+    @Test
+    void committedDebitEmitsOneMessageAndNoOutboxRow() {
+        String idem = UUID.randomUUID() + ":1";
+        long outboxBefore = jdbc.queryForObject("SELECT count(*) FROM outbox", Long.class);
+
+        var r = tx.execute(s -> engine.debit(UUID.randomUUID(), USER_ID, 1L, BigDecimal.TEN, idem, true));
+
+        assertThat(writer.mode()).isEqualTo(OutboxWriter.Mode.MESSAGE);
+        assertThat(r.status()).isEqualTo("SUCCESS");
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM outbox", Long.class)).isEqualTo(outboxBefore);
+        List<String> messages = outboxMessages();
+        assertThat(messages).hasSize(1);
+        assertThat(messages.get(0))
+                .contains("TransactionCompleted")
+                .contains(idem)
+                .contains("\"aggregate_id\" : " + r.transactionId());
+    }
+
+    // The message through the connector's transforms (connectors/ledger-outbox.json), as
+    // Debezium would emit it: routed by event type, keyed by aggregate, and with created_at in
+    // a header that consumers read back as the event time
+    @Test
+    void connectorRoutesTheMessageLikeAnOutboxRow() throws Exception {
+        String idem = UUID.randomUUID() + ":4";
+        Instant before = jdbc.queryForObject("SELECT now()", Timestamp.class).toInstant().truncatedTo(ChronoUnit.MILLIS);
+
+        var r = tx.execute(s -> engine.debit(UUID.randomUUID(), USER_ID, 4L, BigDecimal.TEN, idem, true));
+
+        String content = outboxMessages().get(0).replaceFirst("^.*? content:", "");
+        SourceRecord routed = route(content);
+        assertThat(routed.topic()).isEqualTo("TransactionCompleted");
+        assertThat(String.valueOf(routed.key())).isEqualTo(String.valueOf(r.transactionId()));
+        assertThat((String) routed.value()).contains(idem);
+
+        var createdAt = routed.headers().lastWithName(EventTime.HEADER);
+        assertThat(createdAt).isNotNull();
+        byte[] header = new SimpleHeaderConverter().fromConnectHeader(routed.topic(), createdAt.key(), createdAt.schema(), createdAt.value());
+        var record = new ConsumerRecord<>(routed.topic(), 0, 0L, "", new byte[0]);
+        record.headers().add(EventTime.HEADER, header);
+        assertThat(EventTime.of(record)).isBetween(before, Instant.now());
+    }
+
+    @Test
+    void rolledBackDebitEmitsNothing() {
+        tx.executeWithoutResult(s -> {
+            engine.debit(UUID.randomUUID(), USER_ID, 2L, BigDecimal.ONE, UUID.randomUUID() + ":2", true);
+            s.setRollbackOnly();
+        });
+
+        assertThat(outboxMessages()).isEmpty();
+    }
+
+    @Test
+    void syncDebitEmitsNothing() {
+        tx.execute(s -> engine.debit(null, USER_ID, 3L, BigDecimal.ONE, UUID.randomUUID() + ":3", false));
+
+        assertThat(outboxMessages()).isEmpty();
+    }
+
+    // A logical decoding message record as the Postgres connector emits it, through the
+    // connector's decode and outbox transforms
+    private static SourceRecord route(String content) throws Exception {
+        Schema message = SchemaBuilder.struct().name("io.debezium.connector.postgresql.Message")
+                .field("prefix", Schema.OPTIONAL_STRING_SCHEMA)
+                .field("content", Schema.OPTIONAL_BYTES_SCHEMA)
+                .build();
+        Schema value = SchemaBuilder.struct().name("io.debezium.connector.postgresql.MessageValue")
+                .field("op", Schema.STRING_SCHEMA)
+                .field("ts_ms", Schema.OPTIONAL_INT64_SCHEMA)
+                .field("message", message)
+                .build();
+        Struct v = new Struct(value)
+                .put("op", "m")
+                .put("ts_ms", System.currentTimeMillis())
+                .put("message", new Struct(message)
+                        .put("prefix", OutboxWriter.MESSAGE_PREFIX)
+                        .put("content", content.getBytes(StandardCharsets.UTF_8)));
+        SourceRecord record = new SourceRecord(Map.of(), Map.of(), "ledger.message", null, null, null, value, v);
+
+        JsonNode config = new ObjectMapper().readTree(Path.of("../connectors/ledger-outbox.json").toFile()).get("config");
+        try (var decode = new DecodeLogicalDecodingMessageContent<SourceRecord>();
+             var outbox = new EventRouter<SourceRecord>()) {
+            decode.configure(transformConfig(config, "decode"));
+            outbox.configure(transformConfig(config, "outbox"));
+            return outbox.apply(decode.apply(record));
+        }
+    }
+
+    private static Map<String, String> transformConfig(JsonNode config, String transform) {
+        String prefix = "transforms." + transform + ".";
+        Map<String, String> props = new HashMap<>();
+        config.fields().forEachRemaining(e -> {
+            if (e.getKey().startsWith(prefix)) props.put(e.getKey().substring(prefix.length()), e.getValue().asText());
+        });
+        return props;
+    }
+
+    private List<String> outboxMessages() {
+        return jdbc.queryForList("SELECT data FROM pg_logical_slot_get_changes(?, NULL, NULL) "
+                + "WHERE data LIKE 'message: transactional: 1 prefix: outbox%'", String.class, SLOT);
+    }
+}
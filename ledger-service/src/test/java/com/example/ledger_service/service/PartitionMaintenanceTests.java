@@ -0,0 +1,83 @@
+package com.example.ledger_service.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Rows stranded in the DEFAULT partition move into their day's partition when maintenance
+// creates it, and days past the redelivery window are detached and dropped.
+@SpringBootTest
+class PartitionMaintenanceTests {
+    @Autowired
+    PartitionMaintenance maintenance;
+    @Autowired
+    JdbcTemplate jdbc;
+
+    private final LocalDate upcoming = LocalDate.now(ZoneOffset.UTC).plusDays(2);
+    private final LocalDate expired = LocalDate.now(ZoneOffset.UTC).minusDays(30);
+    private final List<UUID> messageIds = List.of(UUID.randomUUID(), UUID.randomUUID());
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.execute("DROP TABLE IF EXISTS " + name(expired));
+        for (UUID id : messageIds) {
+            jdbc.update("DELETE FROM inbox WHERE message_id = ?", id);
+        }
+    }
+
+    @Test
+    void rowsInDefaultMoveIntoTheirDayWhenItIsCreated() {
+        jdbc.execute("DROP TABLE IF EXISTS " + name(upcoming));
+        for (UUID id : messageIds) {
+            jdbc.update("INSERT INTO inbox (message_id, payload, handler, received_at) VALUES (?, '{}', 'test', ?::timestamptz)",
+                    id, upcoming + " 12:00:00+00");
+        }
+        assertThat(count("inbox_default")).isEqualTo(2);
+
+        maintenance.maintain();
+
+        assertThat(count(name(upcoming))).isEqualTo(2);
+        assertThat(count("inbox_default")).isZero();
+        assertThat(jdbc.queryForObject("SELECT c.relname FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partdefid "
+                + "WHERE p.partrelid = 'inbox'::regclass", String.class)).isEqualTo("inbox_default");
+        assertThat(lastRun("created")).contains(name(upcoming));
+    }
+
+    @Test
+    void daysPastTheRedeliveryWindowAreDropped() {
+        jdbc.execute("CREATE TABLE " + name(expired) + " PARTITION OF inbox FOR VALUES FROM ('" + expired
+                + " 00:00:00+00') TO ('" + expired.plusDays(1) + " 00:00:00+00')");
+        jdbc.update("INSERT INTO inbox (message_id, payload, handler, received_at) VALUES (?, '{}', 'test', ?::timestamptz)",
+                messageIds.get(0), expired + " 12:00:00+00");
+
+        maintenance.maintain();
+
+        assertThat(jdbc.queryForObject("SELECT to_regclass(?) IS NULL", Boolean.class, name(expired))).isTrue();
+        assertThat(lastRun("dropped")).contains(name(expired));
+    }
+
+    private long count(String table) {
+        return jdbc.queryForObject("SELECT count(*) FROM " + table + " WHERE message_id = ANY(?::uuid[])", Long.class,
+                (Object) messageIds.stream().map(UUID::toString).toArray(String[]::new));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> lastRun(String key) {
+        return (List<String>) ((Map<String, Object>) maintenance.stats().get("lastRun")).get(key);
+    }
+
+    private static String name(LocalDate day) {
+        return "inbox_p" + day.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+}
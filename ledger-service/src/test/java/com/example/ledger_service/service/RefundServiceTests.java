@@ -0,0 +1,172 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.service.RefundService.Refund;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// RefundRequested polls: credits to one wallet coalesce into a single balance update, every
+// refund is answered with RefundCompleted, and only a transient error fails the poll.
+@SpringBootTest
+class RefundServiceTests {
+    private static final long USER_ID = 990_301L;
+    private static final long MISSING_USER_ID = 990_302L;
+    private static final long PARTICIPATION = 990_301_000L;
+
+    @Autowired
+    RefundService refundService;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    TransactionTemplate tx;
+    @Autowired
+    DataSource dataSource;
+
+    private final String run = UUID.randomUUID().toString();
+    private final UUID sagaId = UUID.randomUUID();
+
+    @BeforeEach
+    void seed() {
+        cleanUp();
+        // What is left after three successful debits and one that failed for lack of funds
+        jdbc.update("INSERT INTO wallet (user_id, balance) VALUES (?, ?)", USER_ID, new BigDecimal("40.00"));
+        debited(USER_ID, PARTICIPATION + 1, "10.00", "SUCCESS");
+        debited(USER_ID, PARTICIPATION + 2, "20.00", "SUCCESS");
+        debited(USER_ID, PARTICIPATION + 3, "30.00", "SUCCESS");
+        debited(USER_ID, PARTICIPATION + 4, "500.00", "FAILED");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM txn WHERE user_id IN (?, ?)", USER_ID, MISSING_USER_ID);
+        jdbc.update("DELETE FROM wallet WHERE user_id = ?", USER_ID);
+        jdbc.update("DELETE FROM inbox WHERE payload = ?", payload());
+        jdbc.update("DELETE FROM outbox WHERE payload LIKE ?", "%" + run + "%");
+    }
+
+    @Test
+    void refundsOfOneWalletAreOneBalanceUpdate() {
+        long version = version();
+        List<Refund> refunds = List.of(refund(1), refund(2), refund(3));
+
+        Map<UUID, String> outcomes = tx.execute(s -> refundService.process(refunds));
+
+        assertThat(outcomes).containsOnlyKeys(refunds.stream().map(Refund::messageId).toList())
+                .allSatisfy((id, status) -> assertThat(status).isEqualTo("REFUNDED"));
+        assertThat(balance()).isEqualByComparingTo("100.00");
+        assertThat(version()).isEqualTo(version + 1);
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM txn WHERE user_id = ? AND status = 'REFUNDED'", Long.class, USER_ID))
+                .isEqualTo(3);
+        assertThat(answers()).hasSize(3).allSatisfy(a -> assertThat(a).contains("\"status\":\"REFUNDED\""));
+    }
+
+    // LOS may send the same refund again under a new messageId (a repeated cancellation), which
+    // the inbox cannot catch; the idempotency key does
+    @Test
+    void redeliveryWithANewMessageIdIsADuplicate() {
+        tx.execute(s -> refundService.process(List.of(refund(1))));
+
+        Refund again = refund(1);
+        Map<UUID, String> outcomes = tx.execute(s -> refundService.process(List.of(again)));
+
+        assertThat(outcomes).containsExactly(Map.entry(again.messageId(), "DUPLICATE"));
+        assertThat(balance()).isEqualByComparingTo("50.00");
+        assertThat(answers()).hasSize(2).anySatisfy(a -> assertThat(a).contains("\"reason\":\"DUPLICATE\""));
+    }
+
+    @Test
+    void failedDebitHasNothingToGiveBack() {
+        Refund refund = refund(4);
+
+        Map<UUID, String> outcomes = tx.execute(s -> refundService.process(List.of(refund)));
+
+        assertThat(outcomes).containsExactly(Map.entry(refund.messageId(), "NOTHING_DEBITED"));
+        assertThat(balance()).isEqualByComparingTo("40.00");
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM txn WHERE idempotency_key = ?", Long.class, refund.idempotencyKey()))
+                .isZero();
+        assertThat(answers()).singleElement().asString()
+                .contains("\"status\":\"REFUNDED\"", "\"reason\":\"NOTHING_DEBITED\"");
+    }
+
+    // The wallet of participation 5's debit is gone: the batch update fails, and the isolated
+    // retry answers that refund FAILED while the other one is credited
+    @Test
+    void refundThatFailsOnItsOwnIsAnsweredFailed() {
+        debited(MISSING_USER_ID, PARTICIPATION + 5, "5.00", "SUCCESS");
+        Refund ok = refund(1);
+        Refund orphaned = refund(5);
+
+        Map<UUID, String> outcomes = tx.execute(s -> refundService.process(List.of(ok, orphaned)));
+
+        assertThat(outcomes).containsEntry(ok.messageId(), "REFUNDED").containsEntry(orphaned.messageId(), "FAILED");
+        assertThat(balance()).isEqualByComparingTo("50.00");
+        assertThat(answers()).hasSize(2).anySatisfy(a -> assertThat(a)
+                .contains("\"status\":\"FAILED\"", "Wallet not found for userId: " + MISSING_USER_ID));
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM inbox WHERE message_id IN (?, ?)", Long.class,
+                ok.messageId(), orphaned.messageId())).isEqualTo(2);
+    }
+
+    @Test
+    void transientErrorFailsThePollForRedelivery() throws Exception {
+        Refund refund = refund(1);
+
+        try (Connection holder = dataSource.getConnection()) {
+            holder.setAutoCommit(false);
+            holder.createStatement().execute("SELECT 1 FROM wallet WHERE user_id = " + USER_ID + " FOR UPDATE");
+
+            assertThatThrownBy(() -> tx.executeWithoutResult(s -> {
+                jdbc.execute("SET LOCAL lock_timeout = '200ms'");
+                refundService.process(List.of(refund));
+            })).isInstanceOf(TransientDataAccessException.class);
+
+            holder.rollback();
+        }
+
+        assertThat(balance()).isEqualByComparingTo("40.00");
+        assertThat(answers()).isEmpty();
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM inbox WHERE message_id = ?", Long.class, refund.messageId()))
+                .isZero();
+    }
+
+    private void debited(long userId, long participationId, String amount, String status) {
+        jdbc.update("INSERT INTO txn (user_id, participation_id, amount, status, idempotency_key) VALUES (?, ?, ?, ?, ?)",
+                userId, participationId, new BigDecimal(amount), status, run + ":" + participationId);
+    }
+
+    private Refund refund(int n) {
+        return new Refund(UUID.randomUUID(), sagaId, PARTICIPATION + n, run + ":refund:" + n, payload(), Instant.now(), null);
+    }
+
+    private BigDecimal balance() {
+        return jdbc.queryForObject("SELECT balance FROM wallet WHERE user_id = ?", BigDecimal.class, USER_ID);
+    }
+
+    private long version() {
+        return jdbc.queryForObject("SELECT version FROM wallet WHERE user_id = ?", Long.class, USER_ID);
+    }
+
+    private List<String> answers() {
+        return jdbc.queryForList("SELECT payload FROM outbox WHERE event_type = 'RefundCompleted' AND payload LIKE ?",
+                String.class, "%" + run + ":refund:%");
+    }
+
+    private String payload() {
+        return "{\"run\":\"" + run + "\"}";
+    }
+}
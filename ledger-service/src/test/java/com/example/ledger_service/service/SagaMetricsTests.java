@@ -0,0 +1,51 @@
+package com.example.ledger_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SagaMetricsTests {
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final SagaMetrics metrics = new SagaMetrics(meters);
+
+    @Test
+    void outboxLagIsMeasuredFromTheRecordTimestamp() {
+        var record = new ConsumerRecord<>("ParticipationCreated", 0, 0L, System.currentTimeMillis() - 250,
+                TimestampType.CREATE_TIME, 0, 0, "k", new byte[0], new RecordHeaders(), Optional.empty());
+
+        long received = metrics.received(record);
+        metrics.debited(received, 3);
+
+        var lag = meters.get("saga.stage").tag("stage", "outbox_to_ledger").timer();
+        assertThat(lag.count()).isEqualTo(1);
+        assertThat(lag.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(250);
+        assertThat(meters.get("saga.stage").tag("stage", "ledger_debit").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    void outcomesAreCountedOnlyOnCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            metrics.debitOutcome("SUCCESS", 2);
+            metrics.debitOutcome("FAILED", 1);
+            assertThat(meters.get("ledger.debits").tag("outcome", "success").counter().count()).isZero();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(meters.get("ledger.debits").tag("outcome", "success").counter().count()).isEqualTo(2);
+        assertThat(meters.get("ledger.debits").tag("outcome", "insufficient_funds").counter().count()).isEqualTo(1);
+        assertThat(meters.get("ledger.debits").tag("outcome", "duplicate").counter().count()).isZero();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.ledger_service.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Committed debits move the counters, rolled-back ones do not, and a reconcile against the
+// tables finds nothing to correct.
+@SpringBootTest(properties = "app.stats.reconcileMs=3600000")
+class StatusCountersTests {
+    private static final long USER_ID = 990_301L;
+
+    @Autowired
+    StatusCounters counters;
+    @Autowired
+    DebitEngine engine;
+    @Autowired
+    OutboxWriter outboxWriter;
+    @Autowired
+    TransactionTemplate tx;
+    @Autowired
+    JdbcTemplate jdbc;
+
+    private final String run = UUID.randomUUID().toString();
+
+    @BeforeEach
+    void seedWallet() {
+        cleanUp();
+        jdbc.update("INSERT INTO wallet (user_id, balance) VALUES (?, ?)", USER_ID, new BigDecimal("10.00"));
+        counters.reconcile();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM outbox WHERE payload::json ->> 'idempotencyKey' LIKE ?", run + "%");
+        jdbc.update("DELETE FROM txn WHERE user_id = ?", USER_ID);
+        jdbc.update("DELETE FROM wallet WHERE user_id = ?", USER_ID);
+    }
+
+    @Test
+    void countsFollowCommittedTransitionsOnly() {
+        long success = counters.count(StatusCounters.TXN, "SUCCESS");
+        long failed = counters.count(StatusCounters.TXN, "FAILED");
+        long outboxNew = counters.count(StatusCounters.OUTBOX, "NEW");
+
+        tx.executeWithoutResult(s -> engine.debit(UUID.randomUUID(), USER_ID, 1L, new BigDecimal("6.00"), run + ":1", true));
+        tx.executeWithoutResult(s -> engine.debit(UUID.randomUUID(), USER_ID, 2L, new BigDecimal("6.00"), run + ":2", true));
+        tx.executeWithoutResult(s -> {
+            engine.debit(UUID.randomUUID(), USER_ID, 3L, new BigDecimal("1.00"), run + ":3", true);
+            s.setRollbackOnly();
+        });
+
+        assertThat(counters.count(StatusCounters.TXN, "SUCCESS")).isEqualTo(success + 1);
+        assertThat(counters.count(StatusCounters.TXN, "FAILED")).isEqualTo(failed + 1);
+        if (outboxWriter.mode() == OutboxWriter.Mode.TABLE) {
+            assertThat(counters.count(StatusCounters.OUTBOX, "NEW")).isEqualTo(outboxNew + 2);
+        }
+
+        counters.reconcile();
+        @SuppressWarnings("unchecked")
+        Map<String, Long> drift = (Map<String, Long>) ((Map<String, Object>) counters.stats().get("lastReconcile")).get("drift");
+        assertThat(drift.get(StatusCounters.TXN)).isZero();
+    }
+}
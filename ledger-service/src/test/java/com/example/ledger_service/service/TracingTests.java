@@ -0,0 +1,69 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.util.TraceParent;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TracingTests {
+    private final Tracing tracing = new Tracing(1.0, 100, "");
+
+    @Test
+    void traceparentRoundTripsAndRejectsMalformedHeaders() {
+        TraceParent root = TraceParent.root(true);
+        assertThat(TraceParent.parse(root.header())).isEqualTo(root);
+        assertThat(TraceParent.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00").sampled()).isFalse();
+        assertThat(TraceParent.parse("00-00000000000000000000000000000000-00f067aa0ba902b7-01")).isNull();
+        assertThat(TraceParent.parse("00-4BF92F3577B34DA6A3CE929D0E0E4736-00f067aa0ba902b7-01")).isNull();
+        assertThat(TraceParent.parse("garbage")).isNull();
+    }
+
+    @Test
+    void consumerSpanContinuesTheTraceOfTheRecordHeader() {
+        TraceParent upstream = TraceParent.root(true);
+        var headers = new RecordHeaders();
+        headers.add(TraceParent.HEADER, upstream.header().getBytes(StandardCharsets.UTF_8));
+        var record = new ConsumerRecord<>("ParticipationCreated", 0, 7L, System.currentTimeMillis(),
+                TimestampType.CREATE_TIME, 0, 0, "k", new byte[0], headers, Optional.empty());
+
+        String stamped;
+        try (Tracing.Span span = tracing.consume(record)) {
+            stamped = tracing.currentHeader();
+            assertThat(span.context().traceId()).isEqualTo(upstream.traceId());
+        }
+        assertThat(tracing.current()).isNull();
+
+        var spans = tracing.trace(upstream.traceId());
+        assertThat(spans).hasSize(1);
+        assertThat(spans.get(0).parentSpanId()).isEqualTo(upstream.spanId());
+        assertThat(TraceParent.parse(stamped).spanId()).isEqualTo(spans.get(0).spanId());
+        assertThat(spans.get(0).tags()).containsEntry("offset", 7L);
+    }
+
+    @Test
+    void spanClosedInATransactionEndsWithIt() {
+        String traceId;
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            try (Tracing.Span span = tracing.start("debit", null)) {
+                traceId = span.context().traceId();
+            }
+            assertThat(tracing.trace(traceId)).isEmpty();
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(tracing.trace(traceId)).singleElement()
+                .satisfies(s -> assertThat(s.error()).isEqualTo("rolled back"));
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.service.LedgerBatchService.Debit;
+import com.example.ledger_service.service.LedgerBatchService.Outcome;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Striped wallets against the database: concurrent debits never overdraw and never lose money,
+// the slow path drains several stripes plus the home balance, rebalancing can run under load,
+// and the batch path spends home balance and stripes alike. Striping stays disabled so that
+// only the test promotes and rebalances.
+@SpringBootTest(properties = "app.wallet.striping.stripes=4")
+class WalletStripesTests {
+    private static final long USER_ID = 990_401L;
+
+    @Autowired
+    WalletStripes stripes;
+    @Autowired
+    DebitEngine engine;
+    @Autowired
+    LedgerBatchService batchService;
+    @Autowired
+    JdbcTemplate jdbc;
+
+    private final String run = UUID.randomUUID().toString();
+    private final AtomicInteger keys = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM txn WHERE user_id = ?", USER_ID);
+        jdbc.update("DELETE FROM wallet_stripe WHERE user_id = ?", USER_ID);
+        jdbc.update("DELETE FROM wallet WHERE user_id = ?", USER_ID);
+    }
+
+    @Test
+    void promotedWalletIsNeverOverdrawnByConcurrentDebits() throws Exception {
+        promote("100.00");
+        assertThat(jdbc.queryForList("SELECT balance FROM wallet_stripe WHERE user_id = ? ORDER BY stripe", BigDecimal.class, USER_ID))
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("25.00"), new BigDecimal("25.00"), new BigDecimal("25.00"), new BigDecimal("25.00"));
+
+        // 150 debits of 1.00 against 100.00
+        Outcomes outcomes = debitConcurrently(150, new AtomicBoolean(true));
+
+        assertThat(outcomes.succeeded.get()).isEqualTo(100);
+        assertThat(outcomes.failed.get() + outcomes.gaveUp.get()).isEqualTo(50);
+        assertThat(total()).isEqualByComparingTo("0.00");
+        assertNothingNegative();
+        assertThat(successfulTxns()).isEqualTo(100);
+    }
+
+    // 60.00 is more than any stripe holds: home (10.00) first, then the largest stripes
+    @Test
+    void slowPathDrainsSeveralStripesAndTheHomeBalance() {
+        promote("100.00");
+        jdbc.update("UPDATE wallet SET balance = 10.00 WHERE user_id = ?", USER_ID);
+
+        assertThat(debit("60.00")).isEqualTo("SUCCESS");
+
+        assertThat(home()).isEqualByComparingTo("0.00");
+        assertThat(jdbc.queryForList("SELECT balance FROM wallet_stripe WHERE user_id = ? ORDER BY balance", BigDecimal.class, USER_ID))
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("0.00"), new BigDecimal("0.00"), new BigDecimal("25.00"), new BigDecimal("25.00"));
+
+        assertThat(debit("60.00")).isEqualTo("FAILED");
+        assertThat(total()).isEqualByComparingTo("50.00");
+    }
+
+    @Test
+    void rebalanceRacingDebitsConservesTheBalance() throws Exception {
+        promote("1000.00");
+        jdbc.update("UPDATE wallet SET balance = 100.00 WHERE user_id = ?", USER_ID);
+
+        AtomicBoolean debiting = new AtomicBoolean(true);
+        AtomicInteger rebalanced = new AtomicInteger();
+        ExecutorService rebalancer = Executors.newSingleThreadExecutor();
+        Future<?> rebalancing = rebalancer.submit(() -> {
+            while (debiting.get()) {
+                try {
+                    if (stripes.rebalance(USER_ID)) rebalanced.incrementAndGet();
+                } catch (ConcurrencyFailureException e) {
+                    // gave up behind a debit; the next round tries again
+                }
+            }
+        });
+        Outcomes outcomes = debitConcurrently(400, debiting);
+        rebalancing.get(30, TimeUnit.SECONDS);
+        rebalancer.shutdown();
+
+        assertThat(rebalanced.get()).isPositive();
+        assertThat(outcomes.failed.get()).isZero();
+        assertThat(total()).isEqualByComparingTo(new BigDecimal("1100.00").subtract(BigDecimal.valueOf(outcomes.succeeded.get())));
+        assertThat(successfulTxns()).isEqualTo(outcomes.succeeded.get());
+        assertNothingNegative();
+
+        assertThat(stripes.rebalance(USER_ID)).isTrue();
+        assertThat(home()).isEqualByComparingTo("0.00");
+    }
+
+    // LedgerBatchService.apply locks all stripes and spends home plus stripes as one balance
+    @Test
+    void batchDebitsSpendHomeAndStripes() {
+        promote("100.00");
+        jdbc.update("UPDATE wallet SET balance = 10.00 WHERE user_id = ?", USER_ID);
+
+        List<Outcome> outcomes = batchService.applyRequests(List.of(
+                batchDebit(1, "30.00"),
+                batchDebit(2, "50.00"),
+                batchDebit(3, "40.00")    // 30.00 left
+        ), false);
+
+        assertThat(outcomes).extracting(Outcome::status).containsExactly("SUCCESS", "SUCCESS", "FAILED");
+        assertThat(total()).isEqualByComparingTo("30.00");
+        assertThat(home()).isEqualByComparingTo("0.00");
+        assertNothingNegative();
+    }
+
+    private record Outcomes(AtomicInteger succeeded, AtomicInteger failed, AtomicInteger gaveUp) {}
+
+    // Debits of 1.00 from 16 threads; clears `running` when done
+    private Outcomes debitConcurrently(int debits, AtomicBoolean running) throws Exception {
+        Outcomes outcomes = new Outcomes(new AtomicInteger(), new AtomicInteger(), new AtomicInteger());
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>(debits);
+            for (int i = 0; i < debits; i++) {
+                futures.add(pool.submit(() -> {
+                    try {
+                        String status = debit("1.00");
+                        (status.equals("SUCCESS") ? outcomes.succeeded : outcomes.failed).incrementAndGet();
+                    } catch (ConcurrencyFailureException e) {
+                        outcomes.gaveUp.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        } finally {
+            running.set(false);
+            pool.shutdown();
+        }
+        return outcomes;
+    }
+
+    private void promote(String balance) {
+        jdbc.update("INSERT INTO wallet (user_id, balance) VALUES (?, ?)", USER_ID, new BigDecimal(balance));
+        assertThat(stripes.promote(USER_ID)).isTrue();
+        assertThat(home()).isEqualByComparingTo("0.00");
+    }
+
+    private String debit(String amount) {
+        int n = keys.incrementAndGet();
+        return engine.debit(null, USER_ID, (long) n, new BigDecimal(amount), run + ":" + n, false).status();
+    }
+
+    private Debit batchDebit(long participationId, String amount) {
+        return new Debit(UUID.randomUUID(), UUID.randomUUID(), USER_ID, participationId, new BigDecimal(amount),
+                run + ":batch:" + participationId, null, null, null);
+    }
+
+    private BigDecimal total() {
+        return jdbc.queryForObject("SELECT balance FROM wallet_balance WHERE user_id = ?", BigDecimal.class, USER_ID);
+    }
+
+    private BigDecimal home() {
+        return jdbc.queryForObject("SELECT balance FROM wallet WHERE user_id = ?", BigDecimal.class, USER_ID);
+    }
+
+    private long successfulTxns() {
+        return jdbc.queryForObject("SELECT count(*) FROM txn WHERE user_id = ? AND status = 'SUCCESS'", Long.class, USER_ID);
+    }
+
+    private void assertNothingNegative() {
+        assertThat(home().signum()).isNotNegative();
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM wallet_stripe WHERE user_id = ? AND balance < 0", Long.class, USER_ID))
+                .isZero();
+    }
+}
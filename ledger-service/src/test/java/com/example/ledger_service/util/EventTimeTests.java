@@ -0,0 +1,42 @@
+package com.example.ledger_service.util;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventTimeTests {
+
+    // The relay stamps created_at as the record timestamp, the connectors send it in a header
+    // with microseconds; both have to key the inbox row the same way
+    @Test
+    void relayAndConnectorDeliveriesOfOneEventAgree() {
+        Instant createdAt = Instant.parse("2026-10-18T09:15:42.123456Z");
+
+        ConsumerRecord<String, String> relayed = record(createdAt.toEpochMilli());
+        ConsumerRecord<String, String> captured = record(createdAt.toEpochMilli() + 250);
+        captured.headers().add(EventTime.HEADER, createdAt.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertThat(EventTime.of(relayed)).isEqualTo(Instant.parse("2026-10-18T09:15:42.123Z"));
+        assertThat(EventTime.of(captured)).isEqualTo(EventTime.of(relayed));
+    }
+
+    @Test
+    void unparsableHeaderFallsBackToTheRecordTimestamp() {
+        ConsumerRecord<String, String> record = record(1_000L);
+        record.headers().add(EventTime.HEADER, "yesterday".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(EventTime.of(record)).isEqualTo(Instant.ofEpochMilli(1_000L));
+    }
+
+    private static ConsumerRecord<String, String> record(long timestamp) {
+        return new ConsumerRecord<>("topic", 0, 0L, timestamp, TimestampType.CREATE_TIME,
+                0, 0, "key", "value", new RecordHeaders(), Optional.empty());
+    }
+}
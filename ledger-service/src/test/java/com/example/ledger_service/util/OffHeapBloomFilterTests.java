@@ -0,0 +1,65 @@
+package com.example.ledger_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+class OffHeapBloomFilterTests {
+    private static final int CAPACITY = 200_000;
+    private static final double FPP = 0.01;
+
+    @Test
+    void everyKeyPutIsFound() {
+        OffHeapBloomFilter filter = OffHeapBloomFilter.create(CAPACITY, FPP);
+        for (int i = 0; i < CAPACITY; i++) {
+            filter.put(key(i));
+        }
+
+        for (int i = 0; i < CAPACITY; i++) {
+            assertThat(filter.mightContain(key(i))).as(key(i)).isTrue();
+        }
+    }
+
+    // Filled to the capacity it was sized for, the share of never-added keys it lets through
+    // stays near the target
+    @Test
+    void falsePositiveRateAtCapacityMeetsTheTarget() {
+        OffHeapBloomFilter filter = OffHeapBloomFilter.create(CAPACITY, FPP);
+        for (int i = 0; i < CAPACITY; i++) {
+            filter.put(key(i));
+        }
+
+        int probes = 500_000, falsePositives = 0;
+        for (int i = CAPACITY; i < CAPACITY + probes; i++) {
+            if (filter.mightContain(key(i))) falsePositives++;
+        }
+        double measured = (double) falsePositives / probes;
+
+        assertThat(measured).isLessThan(FPP * 1.5);
+        assertThat(filter.expectedFpp()).isCloseTo(FPP, offset(FPP * 0.2));
+        assertThat(filter.approximateSize()).isBetween((long) (CAPACITY * 0.99), (long) CAPACITY);
+    }
+
+    @Test
+    void putReportsWhetherTheKeyWasNew() {
+        OffHeapBloomFilter filter = OffHeapBloomFilter.create(1_000, FPP);
+
+        assertThat(filter.put("7:42")).isTrue();
+        assertThat(filter.put("7:42")).isFalse();
+        assertThat(filter.approximateSize()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsImpossibleSizing() {
+        assertThatThrownBy(() -> OffHeapBloomFilter.create(0, FPP)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> OffHeapBloomFilter.create(1_000, 1.0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> OffHeapBloomFilter.create(Long.MAX_VALUE / 64, FPP)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Shaped like the idempotency keys, loanId:investorId
+    private static String key(int i) {
+        return (i / 1_000) + ":" + i;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One auto-invest batch per call, against either path, returning null once every participation
+// of the batch is CONFIRMED or a short reason otherwise. Investor ids never repeat, so every
+// participation is new to both services; userIds are spread over the seeded wallets.
+public class AutoInvestClient {
+    private static final ObjectMapper M = new ObjectMapper();
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final AtomicLong investorIds = new AtomicLong();
+    private final String losUrl;
+    private final int batch;
+    private final int users;
+    private final Duration timeout;
+
+    public AutoInvestClient(String losUrl, int batch, int users, Duration timeout) {
+        this.losUrl = losUrl;
+        this.batch = batch;
+        this.users = users;
+        this.timeout = timeout;
+    }
+
+    // Saga path: accepted with a batchId, then CONFIRMED once the saga's long poll reports it
+    // complete, i.e. after the ledger debits and the LOS confirmations have all committed
+    public String saga() throws Exception {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        HttpResponse<String> accepted = post("/saga/auto-invest");
+        if (accepted.statusCode() != 202) return "HTTP " + accepted.statusCode();
+        String batchId = M.readTree(accepted.body()).path("batchId").asText();
+
+        while (true) {
+            long remainingMs = (deadline - System.nanoTime()) / 1_000_000;
+            if (remainingMs <= 0) return "timeout";
+            HttpResponse<String> polled = http.send(HttpRequest.newBuilder(
+                            URI.create(losUrl + "/saga/" + batchId + "/completion?timeoutMs=" + Math.min(remainingMs, 30_000)))
+                    .timeout(Duration.ofMillis(remainingMs + 5_000))
+                    .GET().build(), HttpResponse.BodyHandlers.ofString());
+            if (polled.statusCode() != 200) return "HTTP " + polled.statusCode() + " on completion";
+            JsonNode status = M.readTree(polled.body());
+            if (!status.path("complete").asBoolean()) continue;
+            return status.path("failed").asInt() == 0 ? null : "FAILED participations";
+        }
+    }
+
+    // Sync path: the response itself carries each participation's final status
+    public String sync() throws Exception {
+        HttpResponse<String> response = post("/sync/auto-invest");
+        if (response.statusCode() != 200) return "HTTP " + response.statusCode();
+        for (JsonNode result : M.readTree(response.body()).path("results")) {
+            if (!"CONFIRMED".equals(result.path("status").asText())) return "FAILED participations";
+        }
+        return null;
+    }
+
+    private HttpResponse<String> post(String path) throws Exception {
+        return http.send(HttpRequest.newBuilder(URI.create(losUrl + path))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(M.writeValueAsString(investors())))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<Map<String, Object>> investors() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        List<Map<String, Object>> reqs = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) {
+            reqs.add(Map.of(
+                    "investorId", investorIds.incrementAndGet(),
+                    "userId", 1 + rnd.nextInt(users),
+                    "loanId", 1 + rnd.nextInt(1000),
+                    "amount", "1.00"));
+        }
+        return reqs;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Runs /saga/auto-invest and /sync/auto-invest one after the other at the same arrival rate
+// against a SagaStack and prints time-to-CONFIRMED percentiles, throughput and error rate per
+// path. Arguments are key=value:
+//   rate=20        batches started per second
+//   duration=60    measured seconds per path, after warmup=10 unmeasured seconds
+//   batch=10       investors per batch
+//   users=1000     seeded wallets the investors debit (1 = one hot wallet)
+//   paths=saga,sync
+//   partitions=8   per saga topic
+//   timeout=60     seconds before a batch counts as failed
+//   hlog=file      also write the per-second histograms as an HdrHistogram log
+//   ledger.<property>=value / los.<property>=value   passed to that service
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        Map<String, String> ledgerProps = new HashMap<>();
+        Map<String, String> losProps = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) throw new IllegalArgumentException("Expected key=value, got " + arg);
+            String key = arg.substring(0, eq), value = arg.substring(eq + 1);
+            if (key.startsWith("ledger.")) ledgerProps.put(key.substring("ledger.".length()), value);
+            else if (key.startsWith("los.")) losProps.put(key.substring("los.".length()), value);
+            else opts.put(key, value);
+        }
+        double rate = Double.parseDouble(opts.getOrDefault("rate", "20"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(opts.getOrDefault("duration", "60")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(opts.getOrDefault("warmup", "10")));
+        Duration timeout = Duration.ofSeconds(Long.parseLong(opts.getOrDefault("timeout", "60")));
+        int batch = Integer.parseInt(opts.getOrDefault("batch", "10"));
+        int users = Integer.parseInt(opts.getOrDefault("users", "1000"));
+        int partitions = Integer.parseInt(opts.getOrDefault("partitions", "8"));
+        List<String> paths = List.of(opts.getOrDefault("paths", "saga,sync").split(","));
+
+        HistogramLogWriter hlog = null;
+        if (opts.containsKey("hlog")) {
+            hlog = new HistogramLogWriter(new File(opts.get("hlog")));
+            hlog.outputLogFormatVersion();
+            hlog.outputStartTime(System.currentTimeMillis());
+            hlog.outputLegend();
+        }
+
+        List<OpenLoop.Result> results = new ArrayList<>();
+        try (SagaStack stack = new SagaStack(Path.of(System.getProperty("saga.root", "..")), users, partitions,
+                ledgerProps, losProps)) {
+            AutoInvestClient client = new AutoInvestClient(stack.losUrl(), batch, users, timeout);
+            for (String path : paths) {
+                OpenLoop loop = new OpenLoop(path, rate, warmup, duration, timeout, hlog);
+                results.add(switch (path) {
+                    case "saga" -> loop.run(client::saga);
+                    case "sync" -> loop.run(client::sync);
+                    default -> throw new IllegalArgumentException("Unknown path " + path + " (saga or sync)");
+                });
+            }
+        } finally {
+            if (hlog != null) hlog.close();
+        }
+
+        System.out.printf("%n%d investors per batch, %d wallets; latency = batch due -> all participations CONFIRMED%n",
+                batch, users);
+        System.out.printf("%-5s %9s %11s %9s %7s %9s %9s %9s %9s %12s%n", "path", "offered/s", "completed/s",
+                "batches", "error%", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "max lag ms");
+        for (OpenLoop.Result r : results) {
+            Histogram h = r.latency();
+            System.out.printf("%-5s %9.1f %11.1f %9d %7.2f %9.1f %9.1f %9.1f %9.1f %12.1f%n", r.name(), r.offeredRate(),
+                    r.throughput(), r.requests(), 100 * r.errorRate(), h.getValueAtPercentile(50) / 1000.0,
+                    h.getValueAtPercentile(99) / 1000.0, h.getValueAtPercentile(99.9) / 1000.0, h.getMaxValue() / 1000.0,
+                    r.maxLagMicros() / 1000.0);
+            if (r.unfinished() > 0) System.out.printf("      %d unfinished after %ds%n", r.unfinished(), timeout.toSeconds());
+            r.errorReasons().forEach((reason, n) -> System.out.printf("      %6d x %s%n", n, reason));
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Open-model load: requests start at a fixed rate whether or not earlier ones have finished,
+// each on its own virtual thread, so a slow system builds up requests in flight the way it
+// would under real traffic instead of quietly slowing the generator down. Latency counts from
+// the moment a request was due, not when it was actually sent, so falling behind schedule
+// shows up as latency (no coordinated omission). Requests due during the warmup are sent but
+// left out of the result.
+public class OpenLoop {
+    // Latencies up to an hour, in microseconds, at 3 significant digits
+    private static final long MAX_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    public record Result(String name, double offeredRate, long requests, long succeeded, long errors,
+                         long unfinished, double seconds, Histogram latency, long maxLagMicros,
+                         Map<String, Long> errorReasons) {
+        public double throughput() {
+            return succeeded / seconds;
+        }
+
+        public double errorRate() {
+            return requests == 0 ? 0 : (double) (errors + unfinished) / requests;
+        }
+    }
+
+    private final String name;
+    private final double rate;
+    private final Duration warmup;
+    private final Duration duration;
+    private final Duration drainTimeout;
+    private final HistogramLogWriter logWriter;
+
+    private final Recorder interval = new Recorder(MAX_MICROS, 3);
+    private final Recorder measured = new Recorder(MAX_MICROS, 3);
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder intervalErrors = new LongAdder();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLong unfinishedMeasured = new AtomicLong();
+    private final AtomicLong maxLag = new AtomicLong();
+    private final Map<String, LongAdder> errorReasons = new ConcurrentHashMap<>();
+
+    public OpenLoop(String name, double rate, Duration warmup, Duration duration, Duration drainTimeout,
+                    HistogramLogWriter logWriter) {
+        this.name = name;
+        this.rate = rate;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.drainTimeout = drainTimeout;
+        this.logWriter = logWriter;
+    }
+
+    // request returns null on success or a short reason for the failure
+    public Result run(Callable<String> request) throws InterruptedException {
+        long periodNanos = (long) (1_000_000_000L / rate);
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        long requests = 0;
+
+        var progress = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().factory());
+        progress.scheduleAtFixedRate(() -> progress(start), 1, 1, TimeUnit.SECONDS);
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long due = start; due < end; due += periodNanos) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+                boolean measure = due >= measureFrom;
+                if (measure) {
+                    requests++;
+                    unfinishedMeasured.incrementAndGet();
+                }
+                long dueAt = due;
+                inFlight.incrementAndGet();
+                workers.execute(() -> call(request, dueAt, measure));
+            }
+            // Let what is in flight finish; whatever is still running after drainTimeout is unfinished
+            workers.shutdown();
+            if (!workers.awaitTermination(drainTimeout.toMillis(), TimeUnit.MILLISECONDS)) workers.shutdownNow();
+        } finally {
+            progress.shutdownNow();
+            progress(start);
+        }
+
+        Map<String, Long> reasons = new TreeMap<>();
+        errorReasons.forEach((reason, n) -> reasons.put(reason, n.sum()));
+        return new Result(name, rate, requests, succeeded.sum(), errors.sum(), unfinishedMeasured.get(),
+                duration.toNanos() / 1e9, measured.getIntervalHistogram(), maxLag.get(), reasons);
+    }
+
+    private void call(Callable<String> request, long due, boolean measure) {
+        maxLag.accumulateAndGet((System.nanoTime() - due) / 1000, Math::max);
+        String failure;
+        try {
+            failure = request.call();
+        } catch (Exception e) {
+            failure = e.getClass().getSimpleName();
+        }
+        long micros = Math.min((System.nanoTime() - due) / 1000, MAX_MICROS);
+        inFlight.decrementAndGet();
+        if (failure != null) {
+            intervalErrors.increment();
+        } else {
+            interval.recordValue(micros);
+        }
+        if (!measure || Thread.currentThread().isInterrupted()) return;
+        unfinishedMeasured.decrementAndGet();
+        if (failure != null) {
+            errors.increment();
+            errorReasons.computeIfAbsent(failure, r -> new LongAdder()).increment();
+        } else {
+            succeeded.increment();
+            measured.recordValue(micros);
+        }
+    }
+
+    // One line per second, and the same interval histograms to the log file if there is one
+    private synchronized void progress(long start) {
+        Histogram h = interval.getIntervalHistogram();
+        long failed = intervalErrors.sumThenReset();
+        System.out.printf("[%s] %4ds  done %5d  errors %4d  in flight %5d  p50 %8.1f ms  p99 %8.1f ms%n",
+                name, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), h.getTotalCount(), failed,
+                inFlight.get(), h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(99) / 1000.0);
+        if (logWriter != null) {
+            h.setTag(name);
+            logWriter.outputIntervalHistogram(h);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.loadgen;
+
+import com.example.ledger_service.LedgerServiceApplication;
+import com.example.los_service.LosServiceApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+// Both services in this JVM: one embedded Postgres with a ledger and a los database built from
+// db/*-init/01_ddl.sql, one embedded Kafka broker with the saga topics, and the two Spring
+// contexts on random ports. Debezium is not available here, so both publish their outbox with
+// the in-service relay (OutboxRelayCdcLatencyTests compares it with Debezium). Extra properties
+// (ledger.* / los.* arguments) are applied last, so any tuning switch of either service can be
+// load tested.
+@Slf4j
+public class SagaStack implements AutoCloseable {
+    private final EmbeddedPostgres postgres;
+    private final EmbeddedKafkaBroker kafka;
+    private final ConfigurableApplicationContext ledger;
+    private final ConfigurableApplicationContext los;
+
+    public SagaStack(Path root, int users, int partitions,
+                     Map<String, String> ledgerProps, Map<String, String> losProps) throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        try (Connection c = postgres.getPostgresDatabase().getConnection(); Statement s = c.createStatement()) {
+            s.execute("CREATE DATABASE ledger");
+            s.execute("CREATE DATABASE los");
+        }
+        runScript("ledger", root.resolve("db/ledger-init/01_ddl.sql"),
+                "INSERT INTO wallet (user_id, balance) SELECT g, 1000000000 FROM generate_series(1, " + users + ") g"
+                        + " ON CONFLICT (user_id) DO UPDATE SET balance = EXCLUDED.balance");
+        runScript("los", root.resolve("db/los-init/01_ddl.sql"), null);
+
+        kafka = new EmbeddedKafkaKraftBroker(1, partitions,
+                "ParticipationCreated", "TransactionCompleted", "TransactionFailed", "RefundRequested", "RefundCompleted");
+        kafka.afterPropertiesSet();
+        log.info("Embedded Postgres on port {}, Kafka at {}", postgres.getPort(), kafka.getBrokersAsString());
+
+        ledger = start(LedgerServiceApplication.class, root.resolve("ledger-service/src/main/resources/application.yaml"),
+                "ledger", ledgerProps, Map.of());
+        los = start(LosServiceApplication.class, root.resolve("los-service/src/main/resources/application.yaml"),
+                "los", losProps, Map.of("app.ledgerBaseUrl", "http://localhost:" + port(ledger)));
+    }
+
+    public String losUrl() {
+        return "http://localhost:" + port(los);
+    }
+
+    private void runScript(String database, Path ddl, String seed) throws Exception {
+        try (Connection c = postgres.getDatabase("postgres", database).getConnection(); Statement s = c.createStatement()) {
+            s.execute(Files.readString(ddl));
+            if (seed != null) s.execute(seed);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not set up database " + database + " from " + ddl, e);
+        }
+    }
+
+    private ConfigurableApplicationContext start(Class<?> app, Path config, String database,
+                                                 Map<String, String> overrides, Map<String, String> wiring) {
+        Map<String, Object> props = new HashMap<>();
+        // The classpath has both services' application.yaml, so name the file explicitly
+        props.put("spring.config.location", "file:" + config.toAbsolutePath());
+        props.put("server.port", "0");
+        props.put("spring.datasource.url", postgres.getJdbcUrl("postgres", database));
+        props.put("spring.datasource.username", "postgres");
+        props.put("spring.datasource.password", "");
+        props.put("spring.kafka.bootstrap-servers", kafka.getBrokersAsString());
+        props.put("app.outbox.relay.enabled", "true");
+        // The ledger's DeterministicChaosController needs the chaos-monkey profile; assaults stay off
+        props.put("spring.profiles.active", "chaos-monkey");
+        props.put("chaos.monkey.enabled", "false");
+        // Per-participation INFO lines would cost more than the work being measured
+        props.put("logging.level.com.example", "WARN");
+        props.putAll(wiring);
+        props.putAll(overrides);
+        // As command-line arguments: default properties would lose to the ${SPRING_DATASOURCE_URL:...}
+        // style fallbacks in application.yaml
+        return new SpringApplicationBuilder(app).run(props.entrySet().stream()
+                .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new));
+    }
+
+    private static int port(ConfigurableApplicationContext context) {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    @Override
+    public void close() throws Exception {
+        los.close();
+        ledger.close();
+        kafka.destroy();
+        postgres.close();
+    }
+}
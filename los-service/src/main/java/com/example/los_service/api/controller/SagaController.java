@@ -2,25 +2,43 @@ package com.example.los_service.api.controller;
 
 
 import com.example.los_service.api.record.InvestorReq;
-import com.example.los_service.model.OutboxEvent;
+import com.example.los_service.api.record.SagaStatus;
 import com.example.los_service.model.Participation;
-import com.example.los_service.repo.OutboxRepo;
+import com.example.los_service.service.OutboxWriter;
 import com.example.los_service.service.ParticipationService;
+import com.example.los_service.service.SagaTracker;
 import com.example.los_service.util.Jsons;
+import com.example.los_service.util.LongHashSet;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @RestController
@@ -28,9 +46,18 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class SagaController {
     private final ParticipationService svc;
-    private final OutboxRepo outbox;
+    private final OutboxWriter outboxWriter;
+    private final TransactionTemplate tx;
+    private final SagaTracker sagas;
     private final ObjectMapper M = new ObjectMapper();
 
+    @Value("${app.saga.stream.chunkSize:500}")
+    int chunkSize;
+
+    // Upper bound for long polls and SSE streams on /saga/{id}
+    @Value("${app.saga.watch.maxWaitMs:300000}")
+    long maxWaitMs;
+
 
     @PostMapping("/auto-invest")
     @Transactional
@@ -38,45 +65,17 @@ public class SagaController {
         UUID sagaId = UUID.randomUUID();
         log.info("Starting auto-invest batch with sagaId: {}, requests: {}", sagaId, reqs.size());
 
-        for (var r : reqs.stream().collect(
-                java.util.stream.Collectors.toMap(InvestorReq::investorId, it -> it, (a, b) -> a)).values()) {
+        var unique = reqs.stream().collect(
+                java.util.stream.Collectors.toMap(InvestorReq::investorId, it -> it, (a, b) -> a)).values();
+        sagas.start(sagaId, unique.size(), false);
+
+        for (var r : unique) {
 
             log.debug("Processing request for investorId: {}, userId: {}, loanId: {}, amount: {}",
                     r.investorId(), r.userId(), r.loanId(), r.amount());
 
             Participation p = svc.createPending(r);
-
-            // ⚠️ ISSUE: Amount should be converted to string for JSON consistency
-            // The Kafka consumer expects string values, but you're putting BigDecimal directly
-            var payload = Map.of(
-                    "messageId", UUID.randomUUID().toString(),
-                    "sagaId", sagaId.toString(),
-                    "participationId", p.getId(),
-                    "investorId", p.getInvestorId(),
-                    "userId", p.getUserId(),
-                    "loanId", p.getLoanId(),
-                    "amount", p.getAmount().toString(), // 🔧 FIX: Convert to string
-                    "idempotencyKey", p.getLoanId() + ":" + p.getInvestorId()
-            );
-
-            String payloadJson;
-            try {
-                payloadJson = M.writeValueAsString(payload);
-                log.debug("Created outbox payload: {}", payloadJson);
-            } catch (JsonProcessingException e) {
-                log.error("Failed to serialize outbox event - type: {}, sagaId: {}, error: {}",
-                        "ParticipationCreated", sagaId, e.getMessage(), e);
-                throw new RuntimeException("Failed to serialize outbox event", e);
-            }
-
-            outbox.save(OutboxEvent.builder()
-                    .eventType("ParticipationCreated")
-                    .aggregateType("Participation")
-                    .aggregateId(p.getId())
-                    .payload(payloadJson)
-                    .status("NEW")
-                    .attemptCount(0)
-                    .build());
+            outboxWriter.append("ParticipationCreated", "Participation", p.getId(), participationCreated(sagaId, p));
 
             log.info("Created participation {} for investor {} with amount {}",
                     p.getId(), p.getInvestorId(), p.getAmount());
@@ -85,5 +84,201 @@ public class SagaController {
         log.info("Completed auto-invest batch with sagaId: {}", sagaId);
         return ResponseEntity.accepted().body(Map.of("batchId", sagaId.toString()));
     }
+
+    // NDJSON variant for very large batches: requests are parsed one at a time as the upload
+    // arrives and committed every chunkSize accepted investors, each chunk with its own outbox
+    // rows, so ParticipationCreated events flow to Kafka while the client is still sending.
+    // Memory is one chunk plus the seen-investor set (a primitive long set, ~16 bytes/investor).
+    // A bad line stops the upload; everything before it has been committed and is reported.
+    @PostMapping(value = "/auto-invest/stream", consumes = "application/x-ndjson")
+    public ResponseEntity<?> autoInvestStream(InputStream body) throws IOException {
+        UUID sagaId = UUID.randomUUID();
+        LongHashSet seen = new LongHashSet(chunkSize);
+        List<InvestorReq> chunk = new ArrayList<>(chunkSize);
+        long accepted = 0, duplicates = 0, chunks = 0, line = 0;
+        log.info("Starting streamed auto-invest with sagaId: {}", sagaId);
+        sagas.start(sagaId, 0, true);
+
+        try (MappingIterator<InvestorReq> reqs = M.readerFor(InvestorReq.class).readValues(body)) {
+            while (reqs.hasNextValue()) {
+                InvestorReq r = reqs.nextValue();
+                line++;
+                String problem = problem(r);
+                if (problem != null) {
+                    accepted += commitChunk(sagaId, chunk);
+                    return ResponseEntity.badRequest().body(Map.of(
+                            "batchId", sagaId.toString(),
+                            "accepted", accepted,
+                            "error", "line " + line + ": " + problem));
+                }
+                // First request per investor wins, as in autoInvest
+                if (!seen.add(r.investorId())) {
+                    duplicates++;
+                    continue;
+                }
+                chunk.add(r);
+                if (chunk.size() == chunkSize) {
+                    accepted += commitChunk(sagaId, chunk);
+                    chunks++;
+                }
+            }
+        } catch (JsonProcessingException e) {
+            accepted += commitChunk(sagaId, chunk);
+            return ResponseEntity.badRequest().body(Map.of(
+                    "batchId", sagaId.toString(),
+                    "accepted", accepted,
+                    "error", "line " + (e.getLocation() != null ? e.getLocation().getLineNr() : line + 1) + ": " + e.getOriginalMessage()));
+        } finally {
+            sagas.close(sagaId);
+        }
+        if (!chunk.isEmpty()) {
+            accepted += commitChunk(sagaId, chunk);
+            chunks++;
+        }
+
+        log.info("Completed streamed auto-invest with sagaId: {} - {} participations in {} chunks, {} duplicates skipped",
+                sagaId, accepted, chunks, duplicates);
+        return ResponseEntity.accepted().body(Map.of(
+                "batchId", sagaId.toString(),
+                "accepted", accepted,
+                "duplicates", duplicates,
+                "chunks", chunks));
+    }
+
+    // Compensation for a cancelled loan: every CONFIRMED participation of the loan gets a
+    // RefundRequested, committed chunkSize at a time in participation id order. The refunds
+    // are a saga like the uploads (/saga/{batchId} and its watchers); each participation turns
+    // COMPENSATED when the ledger reports its refund.
+    @PostMapping("/loans/{loanId}/cancel")
+    public ResponseEntity<?> cancelLoan(@PathVariable Long loanId) {
+        UUID sagaId = UUID.randomUUID();
+        long refunds = 0, chunks = 0, after = 0;
+        log.info("Cancelling loan {} with sagaId: {}", loanId, sagaId);
+        sagas.start(sagaId, 0, true);
+        try {
+            List<Participation> page;
+            do {
+                page = svc.requestRefunds(loanId, sagaId, after, chunkSize);
+                if (page.isEmpty()) break;
+                refunds += page.size();
+                chunks++;
+                after = page.get(page.size() - 1).getId();
+            } while (page.size() == chunkSize);
+        } finally {
+            sagas.close(sagaId);
+        }
+
+        log.info("Requested {} refunds for loan {} in {} chunks, sagaId: {}", refunds, loanId, chunks, sagaId);
+        return ResponseEntity.accepted().body(Map.of(
+                "batchId", sagaId.toString(),
+                "refunds", refunds,
+                "chunks", chunks));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<SagaStatus> status(@PathVariable UUID id) {
+        return sagas.find(id).map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build());
+    }
+
+    // Long poll: answers as soon as the saga is complete, or with its current progress after timeoutMs
+    @GetMapping("/{id}/completion")
+    public DeferredResult<ResponseEntity<SagaStatus>> completion(@PathVariable UUID id,
+                                                                 @RequestParam(defaultValue = "30000") long timeoutMs) {
+        DeferredResult<ResponseEntity<SagaStatus>> result = new DeferredResult<>(Math.min(timeoutMs, maxWaitMs));
+        // Watch before reading so a completion in between is not missed
+        Runnable stop = sagas.watch(id, s -> {
+            if (s.complete()) result.setResult(ResponseEntity.ok(s));
+        });
+        result.onCompletion(stop);
+        result.onTimeout(() -> result.setResult(status(id)));
+
+        Optional<SagaStatus> current = sagas.find(id);
+        if (current.isEmpty()) {
+            result.setResult(ResponseEntity.notFound().build());
+        } else if (current.get().complete()) {
+            result.setResult(ResponseEntity.ok(current.get()));
+        }
+        return result;
+    }
+
+    // Server-sent events: "progress" whenever the counts change, then "complete" and the stream ends
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable UUID id) {
+        SseEmitter emitter = new SseEmitter(maxWaitMs);
+        AtomicReference<SagaStatus> lastSent = new AtomicReference<>();
+        Runnable stop = sagas.watch(id, s -> push(emitter, lastSent, s));
+        emitter.onCompletion(stop);
+        emitter.onTimeout(stop);
+        emitter.onError(e -> stop.run());
+
+        SagaStatus current = sagas.find(id).orElse(null);
+        if (current == null) {
+            stop.run();
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown saga " + id);
+        }
+        push(emitter, lastSent, current);
+        return emitter;
+    }
+
+    private static void push(SseEmitter emitter, AtomicReference<SagaStatus> lastSent, SagaStatus s) {
+        SagaStatus previous = lastSent.get();
+        if (s.equals(previous) || (previous != null && previous.complete()) || !lastSent.compareAndSet(previous, s)) {
+            return;
+        }
+        try {
+            emitter.send(SseEmitter.event().name(s.complete() ? "complete" : "progress").data(s));
+            if (s.complete()) emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            // client went away or the emitter already finished
+            emitter.completeWithError(e);
+        }
+    }
+
+    private int commitChunk(UUID sagaId, List<InvestorReq> chunk) {
+        if (chunk.isEmpty()) return 0;
+        tx.executeWithoutResult(s -> {
+            sagas.addParticipations(sagaId, chunk.size());
+            for (InvestorReq r : chunk) {
+                Participation p = svc.createPending(r);
+                outboxWriter.append("ParticipationCreated", "Participation", p.getId(), participationCreated(sagaId, p));
+            }
+        });
+        int n = chunk.size();
+        chunk.clear();
+        return n;
+    }
+
+    private static String problem(InvestorReq r) {
+        if (r == null) return "empty request";
+        if (r.investorId() == null || r.userId() == null || r.loanId() == null) return "investorId, userId and loanId are required";
+        if (r.amount() == null || r.amount().signum() <= 0) return "amount must be positive";
+        return null;
+    }
+
+    // Package-private for ParticipationPayloadBenchmark (benchmarks/)
+    String participationCreated(UUID sagaId, Participation p) {
+        // ⚠️ ISSUE: Amount should be converted to string for JSON consistency
+        // The Kafka consumer expects string values, but you're putting BigDecimal directly
+        var payload = Map.of(
+                "messageId", UUID.randomUUID().toString(),
+                "sagaId", sagaId.toString(),
+                "participationId", p.getId(),
+                "investorId", p.getInvestorId(),
+                "userId", p.getUserId(),
+                "loanId", p.getLoanId(),
+                "amount", p.getAmount().toString(), // 🔧 FIX: Convert to string
+                "idempotencyKey", p.getLoanId() + ":" + p.getInvestorId()
+        );
+
+        try {
+            String payloadJson = M.writeValueAsString(payload);
+            log.debug("Created outbox payload: {}", payloadJson);
+            return payloadJson;
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize outbox event - type: {}, sagaId: {}, error: {}",
+                    "ParticipationCreated", sagaId, e.getMessage(), e);
+            throw new RuntimeException("Failed to serialize outbox event", e);
+        }
+    }
 }
 
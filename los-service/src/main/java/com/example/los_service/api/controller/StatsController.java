@@ -2,13 +2,21 @@ package com.example.los_service.api.controller;
 
 
 import com.example.los_service.model.Participation;
-import com.example.los_service.repo.InboxRepo;
-import com.example.los_service.repo.OutboxRepo;
-import com.example.los_service.repo.ParticipationRepo;
+import com.example.los_service.mq.OutboxRelay;
+import com.example.los_service.mq.ParallelLosConsumer;
+import com.example.los_service.service.InboxService;
+import com.example.los_service.service.PartitionMaintenance;
+import com.example.los_service.service.PinningMonitor;
+import com.example.los_service.service.Reconciler;
+import com.example.los_service.service.StatusCounters;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.Instant;
@@ -18,16 +26,22 @@ import java.util.Map;
 @RequestMapping("/stats")
 @RequiredArgsConstructor
 public class StatsController {
-    private final ParticipationRepo participationRepo;
-    private final OutboxRepo outboxRepo;
-    private final InboxRepo inboxRepo;
+    private final StatusCounters counters;
+    private final InboxService inboxService;
+    private final PartitionMaintenance partitions;
+    private final ObjectProvider<OutboxRelay> outboxRelay;
+    private final ObjectProvider<ParallelLosConsumer> parallelConsumer;
+    private final ObjectProvider<PinningMonitor> pinningMonitor;
+    private final Reconciler reconciler;
 
+    // The counts below come from StatusCounters; /stats/counters shows when they were last reconciled
     @GetMapping("/consistency")
     public Map<String, Object> getConsistencyStats() {
-        long pending = participationRepo.countByStatus(Participation.Status.PENDING);
-        long confirmed = participationRepo.countByStatus(Participation.Status.CONFIRMED);
-        long failed = participationRepo.countByStatus(Participation.Status.FAILED);
-        long total = participationRepo.count();
+        Map<String, Long> participations = counters.counts(StatusCounters.PARTICIPATION);
+        long pending = participations.getOrDefault(Participation.Status.PENDING.name(), 0L);
+        long confirmed = participations.getOrDefault(Participation.Status.CONFIRMED.name(), 0L);
+        long failed = participations.getOrDefault(Participation.Status.FAILED.name(), 0L);
+        long total = participations.get("total");
 
         return Map.of(
                 "pending", pending,
@@ -40,9 +54,9 @@ public class StatsController {
 
     @GetMapping("/outbox")
     public Map<String, Object> getOutboxStats() {
-        long newEvents = outboxRepo.countByStatus("NEW");
-        long publishedEvents = outboxRepo.countByStatus("PUBLISHED");
-        long total = outboxRepo.count();
+        long newEvents = counters.count(StatusCounters.OUTBOX, "NEW");
+        long publishedEvents = counters.count(StatusCounters.OUTBOX, "PUBLISHED");
+        long total = counters.counts(StatusCounters.OUTBOX).get("total");
 
         return Map.of(
                 "new", newEvents,
@@ -54,22 +68,57 @@ public class StatsController {
 
     @GetMapping("/inbox")
     public Map<String, Object> getInboxStats() {
-        long totalMessages = inboxRepo.count();
+        long totalMessages = counters.count(StatusCounters.INBOX, StatusCounters.ROWS);
 
         return Map.of(
                 "processed", totalMessages,
+                "dedupCache", inboxService.cacheStats(),
                 "timestamp", Instant.now()
         );
     }
 
+    @GetMapping("/counters")
+    public Map<String, Object> getCounterStats() {
+        return counters.stats();
+    }
+
+    @GetMapping("/partitions")
+    public Map<String, Object> getPartitionStats() {
+        return partitions.stats();
+    }
+
+    @GetMapping("/relay")
+    public Map<String, Object> getRelayStats() {
+        OutboxRelay relay = outboxRelay.getIfAvailable();
+        return relay == null ? Map.of("enabled", false) : relay.stats();
+    }
+
     // Show orphaned transactions (LOS FAILED but Ledger SUCCESS)
+    @GetMapping("/consumer")
+    public Map<String, Object> getParallelConsumerStats() {
+        ParallelLosConsumer consumer = parallelConsumer.getIfAvailable();
+        return consumer == null ? Map.of("enabled", false) : consumer.stats();
+    }
+
+    @GetMapping("/pinning")
+    public Map<String, Object> getPinningStats() {
+        PinningMonitor monitor = pinningMonitor.getIfAvailable();
+        return monitor == null ? Map.of("enabled", false) : monitor.stats();
+    }
+
+    // Cross-service findings of the last reconciliation runs (LOS participation vs ledger txn)
     @GetMapping("/orphans")
-    public ResponseEntity<?> findOrphanedTransactions() {
-        // This would require cross-service querying in real implementation
-        // For demo purposes, return a placeholder
-        return ResponseEntity.ok(Map.of(
-                "message", "Check LOS vs Ledger stats for mismatches",
-                "recommendation", "Compare /stats/consistency vs ledger /stats/ledger"
-        ));
+    public Map<String, Object> findOrphanedTransactions(@RequestParam(required = false) String kind,
+                                                        @RequestParam(defaultValue = "100") int limit) {
+        return reconciler.report(kind, Math.min(limit, 10_000));
+    }
+
+    // Starts a run now instead of waiting for the schedule; full=true ignores the watermark
+    @PostMapping("/orphans/run")
+    public ResponseEntity<?> runReconciliation(@RequestParam(defaultValue = "false") boolean full) {
+        if (!reconciler.start(full)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "A reconciliation run is in progress"));
+        }
+        return ResponseEntity.accepted().body(Map.of("started", true, "full", full));
     }
 }
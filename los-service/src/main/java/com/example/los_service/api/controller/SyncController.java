@@ -1,16 +1,22 @@
 package com.example.los_service.api.controller;
 
 import com.example.los_service.api.record.InvestorReq;
+import com.example.los_service.api.record.LedgerBatchResponse;
+import com.example.los_service.api.record.LedgerDebitResult;
 import com.example.los_service.model.Participation;
 import com.example.los_service.repo.ParticipationRepo;
+import com.example.los_service.service.FanOut;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -18,8 +24,10 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.client.RestClient;
 
+import java.net.http.HttpClient;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Executors;
 
 @Slf4j
 @RestController
@@ -27,59 +35,85 @@ import java.util.*;
 @RequiredArgsConstructor
 public class SyncController {
     private final ParticipationRepo repo;
+    private final FanOut fanOut;
     private final Random rnd = new Random();
 
     @Value("${app.ledgerBaseUrl}")
     String ledgerBaseUrl;
 
-    // Configure RestClient with SHORT timeout for demo purposes
-    private final RestClient client = RestClient.builder()
-            .requestFactory(clientHttpRequestFactory())
-            .build();
+    @Value("${spring.threads.virtual.enabled:false}")
+    boolean virtualThreads;
 
+    // Pooled connections to the ledger in platform-thread mode (the HttpClient default is 5 per route)
+    @Value("${app.sync.client.maxConnections:200}")
+    int maxConnections;
+
+    // Also the ledger client's read timeout: FanOut's interrupt cannot abort a blocked
+    // HttpComponents socket read, so the read timeout is what ends a call at its deadline
+    @Value("${app.sync.fanout.callTimeoutMs:3000}")
+    long callTimeoutMs;
+
+    // > 0: send the debits to /wallet/debit/batch in chunks of this size (still fanned out)
+    // instead of one ledger call per participation
+    @Value("${app.sync.ledgerBatchSize:0}")
+    int ledgerBatchSize;
+
+    private RestClient client;
+
+    @PostConstruct
+    void initClient() {
+        client = RestClient.builder()
+                .requestFactory(clientHttpRequestFactory())
+                .build();
+    }
+
+    // Configure RestClient with SHORT timeout for demo purposes. In virtual-thread mode the JDK
+    // client is used: its connection handling parks the caller instead of pinning it.
     private ClientHttpRequestFactory clientHttpRequestFactory() {
-        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory();
+        if (virtualThreads) {
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(2))
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .build();
+            JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(http);
+            factory.setReadTimeout(Duration.ofMillis(callTimeoutMs));
+            return factory;
+        }
+        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(
+                HttpClients.custom()
+                        .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                                .setMaxConnTotal(maxConnections)
+                                .setMaxConnPerRoute(maxConnections)
+                                .build())
+                        .build());
         factory.setConnectTimeout(Duration.ofSeconds(2));  // 2 second connect timeout
-        factory.setReadTimeout(Duration.ofSeconds(3));     // 3 second read timeout
+        factory.setReadTimeout(Duration.ofMillis(callTimeoutMs));
         return factory;
     }
 
+    // No transaction around the request: each save commits on its own, so no pooled connection is
+    // held while the ledger calls are in flight and in-flight sagas are not capped by the Hikari pool
     @PostMapping("/auto-invest")
-    @Transactional
     public ResponseEntity<?> autoInvest(@RequestBody List<InvestorReq> reqs) {
         log.info("Starting sync auto-invest with {} requests", reqs.size());
         List<Map<String, Object>> results = new ArrayList<>();
 
+        List<Participation> pending = new ArrayList<>();
         for (var r : dedupe(reqs)) {
             log.debug("Processing sync request for investorId: {}, userId: {}, loanId: {}, amount: {}",
                     r.investorId(), r.userId(), r.loanId(), r.amount());
+            pending.add(repo.save(newPending(r)));
+        }
 
-            var p = new Participation();
-            p.setInvestorId(r.investorId());
-            p.setUserId(r.userId());
-            p.setLoanId(r.loanId());
-            p.setAmount(r.amount());
-            p.setStatus(Participation.Status.PENDING);
-            p = repo.save(p);
-
-            try {
-                var requestBody = Map.of(
-                        "userId", r.userId(),
-                        "participationId", p.getId(),
-                        "amount", r.amount().toString(),
-                        "idempotencyKey", r.loanId() + ":" + r.investorId()
-                );
-
-                log.debug("Calling SYNC ledger service (no outbox) with request: {}", requestBody);
+        // Call the PURE SYNC endpoint (no outbox events), all participations concurrently
+        var calls = debitAll(pending, false);
 
-                // Call the PURE SYNC endpoint (no outbox events)
-                var res = client.post()
-                        .uri(ledgerBaseUrl + "/wallet/sync/debit")  // Changed endpoint
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .body(requestBody)
-                        .retrieve()
-                        .toEntity(String.class);
+        for (int i = 0; i < pending.size(); i++) {
+            var p = pending.get(i);
+            var call = calls.get(i);
 
+            if (call.ok()) {
                 // 🚨 BUG: Always mark as CONFIRMED regardless of actual ledger response
                 p.setStatus(Participation.Status.CONFIRMED);
                 p = repo.save(p);
@@ -91,43 +125,45 @@ public class SyncController {
                         "investorId", p.getInvestorId(),
                         "status", p.getStatus().toString()
                 ));
+                continue;
+            }
 
-            } catch (Exception e) {
-                log.error("Exception occurred (likely timeout): {}", e.getMessage());
-
-                // 🚨 CRITICAL BUG: Even on timeout exception, sometimes mark as CONFIRMED!
-                // This simulates the worst case: timeout but assuming success
-                if (e.getMessage().contains("timeout") || e.getMessage().contains("Read timed out")) {
-                    if (rnd.nextDouble() < 0.5) { // 50% of timeouts still marked as "success"
-                        p.setStatus(Participation.Status.CONFIRMED);
-                        log.warn("💥 INCONSISTENCY: Timeout occurred but marking participation {} as CONFIRMED!", p.getId());
-
-                        results.add(Map.of(
-                                "participationId", p.getId(),
-                                "investorId", p.getInvestorId(),
-                                "status", "CONFIRMED",
-                                "note", "Marked as success despite timeout!"
-                        ));
-                    } else {
-                        p.setStatus(Participation.Status.FAILED);
-                        results.add(Map.of(
-                                "participationId", p.getId(),
-                                "investorId", p.getInvestorId(),
-                                "status", "FAILED",
-                                "error", e.getMessage()
-                        ));
-                    }
+            String error = String.valueOf(call.error().getMessage());
+            log.error("Exception occurred (likely timeout): {}", error);
+
+            // 🚨 CRITICAL BUG: Even on timeout exception, sometimes mark as CONFIRMED!
+            // This simulates the worst case: timeout but assuming success
+            // "timed out" is how the JDK client (virtual-thread mode) reports it
+            if (error.contains("timeout") || error.contains("timed out")) {
+                if (rnd.nextDouble() < 0.5) { // 50% of timeouts still marked as "success"
+                    p.setStatus(Participation.Status.CONFIRMED);
+                    log.warn("💥 INCONSISTENCY: Timeout occurred but marking participation {} as CONFIRMED!", p.getId());
+
+                    results.add(Map.of(
+                            "participationId", p.getId(),
+                            "investorId", p.getInvestorId(),
+                            "status", "CONFIRMED",
+                            "note", "Marked as success despite timeout!"
+                    ));
                 } else {
                     p.setStatus(Participation.Status.FAILED);
                     results.add(Map.of(
                             "participationId", p.getId(),
                             "investorId", p.getInvestorId(),
                             "status", "FAILED",
-                            "error", e.getMessage()
+                            "error", error
                     ));
                 }
-                repo.save(p);
+            } else {
+                p.setStatus(Participation.Status.FAILED);
+                results.add(Map.of(
+                        "participationId", p.getId(),
+                        "investorId", p.getInvestorId(),
+                        "status", "FAILED",
+                        "error", error
+                ));
             }
+            repo.save(p);
         }
 
         log.info("Completed sync auto-invest processing");
@@ -135,8 +171,9 @@ public class SyncController {
     }
 
     // 🚨 BUG 8: Batch processing with no compensation
+    // No transaction around the request either: the PENDING rows commit before the ledger calls
+    // and the CONFIRMED updates in one short transaction of their own (saveAll)
     @PostMapping("/auto-invest-batch")
-    @Transactional
     public ResponseEntity<?> autoInvestBatch(@RequestBody List<InvestorReq> reqs) {
         log.info("Starting BATCH sync auto-invest with {} requests", reqs.size());
 
@@ -144,31 +181,19 @@ public class SyncController {
         List<String> errors = new ArrayList<>();
 
         try {
+            List<Participation> pending = new ArrayList<>();
             for (var r : dedupe(reqs)) {
-                var p = new Participation();
-                p.setInvestorId(r.investorId());
-                p.setUserId(r.userId());
-                p.setLoanId(r.loanId());
-                p.setAmount(r.amount());
-                p.setStatus(Participation.Status.PENDING);
-                p = repo.save(p);
+                pending.add(repo.save(newPending(r)));
+            }
 
-                // Call ledger for each participation
-                var requestBody = Map.of(
-                        "userId", r.userId(),
-                        "participationId", p.getId(),
-                        "amount", r.amount().toString(),
-                        "idempotencyKey", r.loanId() + ":" + r.investorId()
-                );
+            // Call ledger for every participation at once
+            var calls = debitAll(pending, true);
 
-                client.post()
-                        .uri(ledgerBaseUrl + "/wallet/debit")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .body(requestBody)
-                        .retrieve()
-                        .toEntity(String.class);
-
-                successfulParticipations.add(p.getId());
+            for (int i = 0; i < pending.size(); i++) {
+                if (!calls.get(i).ok()) {
+                    throw new RuntimeException(calls.get(i).error().getMessage(), calls.get(i).error());
+                }
+                successfulParticipations.add(pending.get(i).getId());
 
                 // Simulate failure in middle of batch
                 if (successfulParticipations.size() == 2 && rnd.nextDouble() < 0.7) {
@@ -179,11 +204,9 @@ public class SyncController {
 
             // 🚨 BUG 9: Only mark as confirmed if entire batch succeeds
             // But individual ledger calls already happened!
-            for (Long pid : successfulParticipations) {
-                var p = repo.findById(pid).orElseThrow();
-                p.setStatus(Participation.Status.CONFIRMED);
-                repo.save(p);
-            }
+            List<Participation> confirmed = repo.findAllById(successfulParticipations);
+            confirmed.forEach(p -> p.setStatus(Participation.Status.CONFIRMED));
+            repo.saveAll(confirmed);
 
             return ResponseEntity.ok(Map.of(
                     "message", "All participations processed successfully",
@@ -207,6 +230,89 @@ public class SyncController {
         }
     }
 
+    private static Participation newPending(InvestorReq r) {
+        var p = new Participation();
+        p.setInvestorId(r.investorId());
+        p.setUserId(r.userId());
+        p.setLoanId(r.loanId());
+        p.setAmount(r.amount());
+        p.setStatus(Participation.Status.PENDING);
+        return p;
+    }
+
+    // One outcome per participation, in order. events=false is the sync path (no ledger outbox events).
+    private List<FanOut.Outcome<String>> debitAll(List<Participation> pending, boolean events) {
+        if (ledgerBatchSize <= 0) {
+            String path = events ? "/wallet/debit" : "/wallet/sync/debit";
+            return fanOut.callAll(pending, p -> callLedger(path, p));
+        }
+
+        List<List<Participation>> chunks = new ArrayList<>();
+        for (int i = 0; i < pending.size(); i += ledgerBatchSize) {
+            chunks.add(pending.subList(i, Math.min(pending.size(), i + ledgerBatchSize)));
+        }
+        var calls = fanOut.callAll(chunks, chunk -> callLedgerBatch(chunk, events));
+
+        List<FanOut.Outcome<String>> outcomes = new ArrayList<>(pending.size());
+        for (int c = 0; c < chunks.size(); c++) {
+            var call = calls.get(c);
+            int size = chunks.get(c).size();
+            if (call.ok() && (call.value() == null || call.value().results() == null
+                    || call.value().results().size() != size)) {
+                call = new FanOut.Outcome<>(null, new IllegalStateException("Ledger batch answered "
+                        + "a different number of results than debits sent"));
+            }
+            if (!call.ok()) {
+                for (int i = 0; i < size; i++) outcomes.add(new FanOut.Outcome<>(null, call.error()));
+                continue;
+            }
+            for (LedgerDebitResult r : call.value().results()) {
+                // INSUFFICIENT_FUNDS is a normal answer; any other failure reason is what a single call reports as an error
+                if ("FAILED".equals(r.status()) && r.reason() != null && !"INSUFFICIENT_FUNDS".equals(r.reason())) {
+                    outcomes.add(new FanOut.Outcome<>(null, new IllegalStateException(r.reason())));
+                } else {
+                    outcomes.add(new FanOut.Outcome<>(r.status(), null));
+                }
+            }
+        }
+        return outcomes;
+    }
+
+    private LedgerBatchResponse callLedgerBatch(List<Participation> chunk, boolean events) {
+        List<Map<String, Object>> items = new ArrayList<>(chunk.size());
+        for (Participation p : chunk) {
+            items.add(debitRequest(p));
+        }
+        return client.post()
+                .uri(ledgerBaseUrl + "/wallet/debit/batch?events=" + events)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(items)
+                .retrieve()
+                .body(LedgerBatchResponse.class);
+    }
+
+    private static Map<String, Object> debitRequest(Participation p) {
+        return Map.of(
+                "userId", p.getUserId(),
+                "participationId", p.getId(),
+                "amount", p.getAmount().toString(),
+                "idempotencyKey", p.getLoanId() + ":" + p.getInvestorId()
+        );
+    }
+
+    private String callLedger(String path, Participation p) {
+        var requestBody = debitRequest(p);
+
+        log.debug("Calling ledger {} with request: {}", path, requestBody);
+
+        return client.post()
+                .uri(ledgerBaseUrl + path)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(requestBody)
+                .retrieve()
+                .body(String.class);
+    }
+
     private void simulateNetworkIssues() {
         double rand = rnd.nextDouble();
 
@@ -296,7 +402,7 @@ public class SyncController {
         ));
     }
 
-    private List<InvestorReq> dedupe(List<InvestorReq> list) {
+    static List<InvestorReq> dedupe(List<InvestorReq> list) {
         Map<Long, InvestorReq> deduped = new HashMap<>();
         for (InvestorReq req : list) {
             deduped.putIfAbsent(req.investorId(), req);
@@ -0,0 +1,36 @@
+package com.example.los_service.api.controller;
+
+import com.example.los_service.service.Tracing;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+// Spans still held in memory by this service; the other service holds the other hops of a trace
+@RestController
+@RequestMapping("/traces")
+@RequiredArgsConstructor
+public class TraceController {
+    private final Tracing tracing;
+
+    @GetMapping("/{traceId}")
+    public List<Tracing.SpanData> trace(@PathVariable String traceId) {
+        return tracing.trace(traceId);
+    }
+
+    @GetMapping("/slowest")
+    public List<Tracing.SpanData> slowest(@RequestParam(defaultValue = "20") int limit,
+                                          @RequestParam(required = false) String name) {
+        return tracing.slowest(limit, name);
+    }
+
+    @GetMapping
+    public Map<String, Object> stats() {
+        return tracing.stats();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.los_service.api.controller;
+
+import com.example.los_service.service.Tracing;
+import com.example.los_service.util.TraceParent;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// One server span per request, continuing the caller's traceparent if it sent one. The
+// response carries the span's traceparent so a client can look the trace up under /traces.
+@Component
+@RequiredArgsConstructor
+public class TracingFilter extends OncePerRequestFilter {
+    private final Tracing tracing;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return path.startsWith("/actuator") || path.startsWith("/stats") || path.startsWith("/traces");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        TraceParent parent = TraceParent.parse(request.getHeader(TraceParent.HEADER));
+        try (Tracing.Span span = tracing.start(request.getMethod() + " " + request.getRequestURI(), parent)) {
+            response.setHeader(TraceParent.HEADER, span.context().header());
+            try {
+                chain.doFilter(request, response);
+            } catch (IOException | ServletException | RuntimeException e) {
+                span.error(e);
+                throw e;
+            } finally {
+                span.tag("status", response.getStatus());
+            }
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.los_service.api.record;
+
+import java.util.List;
+
+public record LedgerBatchResponse(List<LedgerDebitResult> results) {
+}
@@ -0,0 +1,4 @@
+package com.example.los_service.api.record;
+
+public record LedgerDebitResult(String status, Long transactionId, String reason) {
+}
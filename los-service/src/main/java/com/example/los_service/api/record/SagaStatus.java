@@ -0,0 +1,9 @@
+package com.example.los_service.api.record;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// Progress of one auto-invest batch; complete once the upload is closed and nothing is pending
+public record SagaStatus(UUID sagaId, int total, int pending, int confirmed, int failed,
+                         boolean complete, Instant createdAt, Instant completedAt) {
+}
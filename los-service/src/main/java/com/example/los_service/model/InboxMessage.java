@@ -9,6 +9,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.Instant;
 import java.util.UUID;
 
 @Entity
@@ -22,5 +23,6 @@ public class InboxMessage {
     UUID messageId;
     String payload;
     String handler;
+    Instant receivedAt;
 }
 
@@ -6,6 +6,8 @@ import lombok.*;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
+import java.time.Instant;
+
 
 @Entity
 @Table(name = "outbox")
@@ -16,7 +18,8 @@ import org.hibernate.type.SqlTypes;
 public class OutboxEvent {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_id")
+    @SequenceGenerator(name = "outbox_id", sequenceName = "outbox_id_seq", allocationSize = 50)
     Long id;
 
     String eventType;
@@ -32,6 +35,11 @@ public class OutboxEvent {
 
     Integer attemptCount = 0;
 
+    String traceparent;
+
+    @Column(insertable = false, updatable = false)
+    Instant createdAt;
+
     @PrePersist
     void prePersist() {
         if (status == null) status = "NEW";
@@ -6,6 +6,7 @@ import lombok.Getter;
 import lombok.Setter;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 
 @Entity
 @Table(name = "participation")
@@ -13,7 +14,8 @@ import java.math.BigDecimal;
 @Setter
 public class Participation {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "participation_id")
+    @SequenceGenerator(name = "participation_id", sequenceName = "participation_id_seq", allocationSize = 50)
     Long id;
     Long investorId;
     Long userId;
@@ -22,6 +24,8 @@ public class Participation {
     @Enumerated(EnumType.STRING)
     Status status;
     String idempotencyKey;
+    @Column(insertable = false, updatable = false)
+    Instant createdAt;
 
     @PrePersist
     void pre() {
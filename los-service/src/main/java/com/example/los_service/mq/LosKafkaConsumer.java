@@ -1,74 +1,69 @@
 package com.example.los_service.mq;
 
-import com.example.los_service.model.InboxMessage;
-import com.example.los_service.repo.InboxRepo;
+import com.example.los_service.service.InboxService;
 import com.example.los_service.service.ParticipationService;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.los_service.service.SagaMetrics;
+import com.example.los_service.service.Tracing;
+import com.example.los_service.util.EventTime;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.UUID;
 @Slf4j
 @Component
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.kafka.parallel.enabled", havingValue = "false", matchIfMissing = true)
 public class LosKafkaConsumer {
     private final ParticipationService svc;
-    private final InboxRepo inbox;
-    private final ObjectMapper M = new ObjectMapper();
+    private final InboxService inbox;
+    private final SagaMetrics metrics;
+    private final Tracing tracing;
 
     @KafkaListener(topics = "TransactionCompleted", groupId = "los-service")
     @Transactional
-    public void onCompleted(String json) throws Exception {
-        Long pid = processMessage(json, "TransactionCompleted");
-        if (pid != null) {
-            log.info("Marking participation {} as confirmed", pid);
-            svc.markConfirmed(pid);
+    public void onCompleted(ConsumerRecord<String, byte[]> record) throws Exception {
+        long received = metrics.received(record);
+        try (Tracing.Span span = tracing.consume(record)) {
+            TransactionEvent e = processMessage(record, "TransactionCompleted", span);
+            if (e != null) {
+                log.info("Marking participation {} as confirmed", e.participationId());
+                svc.markConfirmed(e.participationId(), e.sagaId());
+                metrics.confirmed(received);
+            }
         }
     }
 
     @KafkaListener(topics = "TransactionFailed", groupId = "los-service")
     @Transactional
-    public void onFailed(String json) throws Exception {
-        Long pid = processMessage(json, "TransactionFailed");
-        if (pid != null) {
-            log.info("Marking participation {} as failed", pid);
-            svc.markFailed(pid);
+    public void onFailed(ConsumerRecord<String, byte[]> record) throws Exception {
+        long received = metrics.received(record);
+        try (Tracing.Span span = tracing.consume(record)) {
+            TransactionEvent e = processMessage(record, "TransactionFailed", span);
+            if (e != null) {
+                log.info("Marking participation {} as failed", e.participationId());
+                svc.markFailed(e.participationId(), e.sagaId());
+                metrics.confirmed(received);
+            }
         }
     }
 
-    private Long processMessage(String json, String messageType) throws Exception {
-        log.info("Received {} message: {}", messageType, json);
+    private TransactionEvent processMessage(ConsumerRecord<String, byte[]> record, String messageType,
+                                            Tracing.Span span) throws Exception {
+        TransactionEvent e = SagaEventCodec.readTransactionEvent(record.value(), record.headers());
+        log.debug("Received {} message: {}", messageType, e);
+        span.tag("sagaId", e.sagaId()).tag("participationId", e.participationId());
 
-        // Parse the outer JSON structure first
-        JsonNode outerNode = M.readTree(json);
-
-        // Extract the payload string and parse it
-        String payloadString = outerNode.get("payload").asText();
-        JsonNode n = M.readTree(payloadString);
-
-        // Check required fields
-        if (n.get("messageId") == null) {
-            log.error("Missing messageId in payload: {}", json);
-            throw new IllegalArgumentException("Missing messageId field");
-        }
-
-        if (n.get("participationId") == null) {
-            log.error("Missing participationId in payload: {}", json);
-            throw new IllegalArgumentException("Missing participationId field");
-        }
-
-        UUID id = UUID.fromString(n.get("messageId").asText());
-        if (inbox.existsById(id)) {
-            log.info("Message already processed, skipping: {}", id);
+        if (!inbox.claim(e.messageId(), EventTime.of(record), e.payload(), messageType)) {
+            log.info("Message already processed, skipping: {}", e.messageId());
+            span.tag("duplicate", true);
             return null; // Return null to indicate already processed
         }
 
-        inbox.save(new InboxMessage(id, payloadString, messageType));
-        return n.get("participationId").asLong();
+        return e;
     }
 }
 
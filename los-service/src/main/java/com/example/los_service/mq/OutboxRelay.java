@@ -0,0 +1,166 @@
+package com.example.los_service.mq;
+
+import com.example.los_service.model.OutboxEvent;
+import com.example.los_service.repo.OutboxRepo;
+import com.example.los_service.service.StatusCounters;
+import com.example.los_service.util.TraceParent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.example.los_service.util.Jsons.toJson;
+
+// In-service replacement for the Debezium connector (connectors/los-outbox.json): claims
+// NEW outbox rows with FOR UPDATE SKIP LOCKED, so any number of instances relay disjoint
+// batches, publishes them through the idempotent producer and marks them PUBLISHED in bulk
+// before the row locks are released. Topic, key and value match what the EventRouter emits.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.outbox.relay.enabled", havingValue = "true")
+public class OutboxRelay {
+    private static final int BATCH = 100; // findTop100ByStatusOrderByIdAsc
+
+    private final OutboxRepo outbox;
+    private final KafkaTemplate<String, byte[]> kafka;
+    private final TransactionTemplate tx;
+    private final StatusCounters counters;
+
+    @Value("${app.outbox.relay.sendTimeoutMs:10000}")
+    long sendTimeoutMs;
+
+    @Value("${app.outbox.relay.maxBackoffMs:5000}")
+    long maxBackoffMs;
+
+    // json = the connector's envelope; binary = SagaEventCodec, announced in the saga-codec header
+    @Value("${app.outbox.relay.format:json}")
+    String format;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder failedSends = new LongAdder();
+    private volatile long pausedUntil;
+    private int failedBatches;
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay.pollMs:50}")
+    public void poll() {
+        if (System.currentTimeMillis() < pausedUntil) return;
+
+        // Keep draining while batches come back full, then wait for the next poll
+        int relayed;
+        do {
+            relayed = relayBatch();
+        } while (relayed == BATCH);
+    }
+
+    // Returns the number of rows published, or -1 if some sends failed
+    int relayBatch() {
+        Integer relayed = tx.execute(s -> {
+            List<OutboxEvent> batch = outbox.findTop100ByStatusOrderByIdAsc("NEW");
+            if (batch.isEmpty()) return 0;
+
+            List<CompletableFuture<SendResult<String, byte[]>>> sends = new ArrayList<>(batch.size());
+            for (OutboxEvent e : batch) {
+                sends.add(kafka.send(toRecord(e, "binary".equals(format))));
+            }
+            kafka.flush();
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+            List<Long> sent = new ArrayList<>(batch.size());
+            List<Long> failed = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    sent.add(batch.get(i).getId());
+                } catch (Exception ex) {
+                    failed.add(batch.get(i).getId());
+                    log.warn("Outbox relay could not publish event {} ({}): {}",
+                            batch.get(i).getId(), batch.get(i).getEventType(), ex.getMessage());
+                }
+            }
+
+            if (!sent.isEmpty()) {
+                // Bulk update, invisible to StatusCountingListener
+                counters.moveOnCommit(StatusCounters.OUTBOX, "NEW", "PUBLISHED", outbox.markPublished(sent));
+            }
+            if (!failed.isEmpty()) outbox.recordFailedAttempt(failed);
+            published.add(sent.size());
+            failedSends.add(failed.size());
+            return failed.isEmpty() ? sent.size() : -1;
+        });
+
+        if (relayed != null && relayed < 0) {
+            // Broker trouble: back off instead of hammering it on every poll
+            long backoff = Math.min(maxBackoffMs, 100L << Math.min(++failedBatches, 10));
+            pausedUntil = System.currentTimeMillis() + backoff;
+        } else {
+            failedBatches = 0;
+        }
+        return relayed == null ? 0 : relayed;
+    }
+
+    // Same shape as the connector's output: topic = event_type, key = aggregate_id, and the
+    // JsonConverter envelope the consumers unwrap with get("payload"), unless binary is asked
+    // for and the event type has a binary schema
+    private static ProducerRecord<String, byte[]> toRecord(OutboxEvent e, boolean binary) {
+        String key = e.getAggregateId() == null ? null
+                : toJson(envelope("int64", false, e.getAggregateId()));
+        byte[] value = binary ? binaryValue(e) : null;
+        String codec = value == null ? SagaEventCodec.JSON : SagaEventCodec.BINARY;
+        if (value == null) {
+            value = toJson(envelope("string", false, e.getPayload())).getBytes(StandardCharsets.UTF_8);
+        }
+        // Timestamped with created_at like the connector does, so consumers can measure outbox lag
+        Long timestamp = e.getCreatedAt() == null ? null : e.getCreatedAt().toEpochMilli();
+        var record = new ProducerRecord<>(e.getEventType(), null, timestamp, key, value);
+        record.headers().add("id", String.valueOf(e.getId()).getBytes(StandardCharsets.UTF_8));
+        record.headers().add(SagaEventCodec.HEADER, codec.getBytes(StandardCharsets.UTF_8));
+        if (e.getTraceparent() != null) {
+            record.headers().add(TraceParent.HEADER, e.getTraceparent().getBytes(StandardCharsets.UTF_8));
+        }
+        return record;
+    }
+
+    private static byte[] binaryValue(OutboxEvent e) {
+        try {
+            return SagaEventCodec.encodePayload(e.getEventType(), e.getPayload());
+        } catch (Exception ex) {
+            log.warn("Outbox event {} cannot be encoded as binary, sending JSON: {}", e.getId(), ex.getMessage());
+            return null;
+        }
+    }
+
+    private static Map<String, Object> envelope(String type, boolean optional, Object payload) {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", type);
+        schema.put("optional", optional);
+        Map<String, Object> envelope = new LinkedHashMap<>();
+        envelope.put("schema", schema);
+        envelope.put("payload", payload);
+        return envelope;
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "enabled", true,
+                "published", published.sum(),
+                "failedSends", failedSends.sum(),
+                "backingOff", System.currentTimeMillis() < pausedUntil
+        );
+    }
+}
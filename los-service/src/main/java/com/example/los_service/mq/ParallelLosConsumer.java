@@ -0,0 +1,122 @@
+package com.example.los_service.mq;
+
+import com.example.los_service.service.InboxService;
+import com.example.los_service.service.ParticipationService;
+import com.example.los_service.service.SagaMetrics;
+import com.example.los_service.service.Tracing;
+import com.example.los_service.util.EventTime;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+// TransactionCompleted/TransactionFailed through KeyOrderedConsumer instead of the
+// @KafkaListeners: status updates of one participation stay in order, different
+// participations are updated in parallel even when they share a partition.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.kafka.parallel.enabled", havingValue = "true")
+public class ParallelLosConsumer implements SmartLifecycle {
+    private final ParticipationService svc;
+    private final InboxService inbox;
+    private final TransactionTemplate tx;
+    private final SagaMetrics metrics;
+    private final Tracing tracing;
+    private final KeyOrderedConsumer<TransactionEvent> engine;
+
+    public ParallelLosConsumer(ParticipationService svc, InboxService inbox, TransactionTemplate tx, SagaMetrics metrics,
+                               Tracing tracing,
+                               ConsumerFactory<String, byte[]> consumerFactory,
+                               @Value("${app.kafka.parallel.concurrency:32}") int concurrency,
+                               @Value("${app.kafka.parallel.maxInFlight:2000}") int maxInFlight,
+                               @Value("${app.kafka.parallel.commitIntervalMs:100}") long commitIntervalMs,
+                               @Value("${app.kafka.parallel.maxBackoffMs:2000}") long maxBackoffMs,
+                               @Value("${app.kafka.parallel.shutdownTimeoutMs:10000}") long shutdownTimeoutMs,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.svc = svc;
+        this.inbox = inbox;
+        this.tx = tx;
+        this.metrics = metrics;
+        this.tracing = tracing;
+        this.engine = new KeyOrderedConsumer<>("los-parallel", () -> createConsumer(consumerFactory),
+                List.of("TransactionCompleted", "TransactionFailed"), new StatusProcessor(),
+                new KeyOrderedConsumer.Options(concurrency, maxInFlight, commitIntervalMs, maxBackoffMs,
+                        shutdownTimeoutMs, virtualThreads));
+    }
+
+    private static Consumer<String, byte[]> createConsumer(ConsumerFactory<String, byte[]> factory) {
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        return factory.createConsumer("los-service", "los-parallel", null, overrides);
+    }
+
+    private class StatusProcessor implements KeyOrderedConsumer.Processor<TransactionEvent> {
+        @Override
+        public TransactionEvent parse(ConsumerRecord<String, byte[]> record) throws Exception {
+            return SagaEventCodec.readTransactionEvent(record.value(), record.headers());
+        }
+
+        @Override
+        public Object key(ConsumerRecord<String, byte[]> record, TransactionEvent e) {
+            return e.participationId();
+        }
+
+        @Override
+        public void process(ConsumerRecord<String, byte[]> record, TransactionEvent e) {
+            String messageType = record.topic();
+            long received = metrics.received(record);
+            Tracing.Span span = tracing.consume(record).tag("sagaId", e.sagaId()).tag("participationId", e.participationId());
+            try {
+                tx.executeWithoutResult(s -> {
+                    if (!inbox.claim(e.messageId(), EventTime.of(record), e.payload(), messageType)) {
+                        log.info("Message already processed, skipping: {}", e.messageId());
+                        span.tag("duplicate", true);
+                        return;
+                    }
+                    if ("TransactionCompleted".equals(messageType)) {
+                        log.info("Marking participation {} as confirmed", e.participationId());
+                        svc.markConfirmed(e.participationId(), e.sagaId());
+                    } else {
+                        log.info("Marking participation {} as failed", e.participationId());
+                        svc.markFailed(e.participationId(), e.sagaId());
+                    }
+                    metrics.confirmed(received);
+                });
+            } catch (RuntimeException ex) {
+                span.error(ex);
+                throw ex;
+            } finally {
+                span.close();
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        return engine.stats();
+    }
+
+    @Override
+    public void start() {
+        engine.start();
+    }
+
+    @Override
+    public void stop() {
+        engine.stop();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return engine.isRunning();
+    }
+}
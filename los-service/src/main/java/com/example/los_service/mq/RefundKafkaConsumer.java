@@ -0,0 +1,46 @@
+package com.example.los_service.mq;
+
+import com.example.los_service.service.InboxService;
+import com.example.los_service.service.ParticipationService;
+import com.example.los_service.service.Tracing;
+import com.example.los_service.util.EventTime;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+
+// RefundCompleted from the ledger, in every consumer mode: refunds are rare next to debit
+// outcomes, so they do not go through ParallelLosConsumer
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RefundKafkaConsumer {
+    private final ParticipationService svc;
+    private final InboxService inbox;
+    private final Tracing tracing;
+
+    @KafkaListener(topics = "RefundCompleted", groupId = "los-service")
+    @Transactional
+    public void onRefunded(ConsumerRecord<String, byte[]> record) throws Exception {
+        try (Tracing.Span span = tracing.consume(record)) {
+            TransactionEvent e = SagaEventCodec.readTransactionEvent(record.value(), record.headers());
+            span.tag("sagaId", e.sagaId()).tag("participationId", e.participationId());
+            if (!inbox.claim(e.messageId(), EventTime.of(record), e.payload(), "RefundCompleted")) {
+                log.info("Message already processed, skipping: {}", e.messageId());
+                span.tag("duplicate", true);
+                return;
+            }
+            if ("FAILED".equals(e.status())) {
+                log.warn("Refund of participation {} failed: {}", e.participationId(), e.reason());
+                svc.markRefundFailed(e.participationId(), e.sagaId());
+                return;
+            }
+            log.info("Marking participation {} as compensated{}", e.participationId(),
+                    e.reason() == null ? "" : " (" + e.reason() + ")");
+            svc.markCompensated(e.participationId(), e.sagaId());
+        }
+    }
+}
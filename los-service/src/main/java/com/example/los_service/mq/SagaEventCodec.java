@@ -0,0 +1,176 @@
+package com.example.los_service.mq;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+// Versioned binary encoding of the saga events, chosen per record by the "saga-codec" header;
+// records without it are the connector's JSON envelope. Layout, big-endian:
+//   version:u8 type:u8 messageId:16 sagaId:16, then
+//   ParticipationCreated:        participationId:i64 investorId:i64 userId:i64 loanId:i64 amountCents:i64 idempotencyKey:str
+//   TransactionCompleted/Failed: participationId:i64 transactionId:i64 status:str reason:str idempotencyKey:str
+// str is a u16 byte length (0xFFFF = null) followed by UTF-8; a null id is Long.MIN_VALUE and
+// a null UUID is all zeros. Later versions may only append fields, and a decoder ignores the
+// fields it does not know, so consumers can be upgraded before or after producers.
+public final class SagaEventCodec {
+    public static final String HEADER = "saga-codec";
+    public static final String JSON = "json";
+    public static final int VERSION = 1;
+    public static final String BINARY = "bin-" + VERSION;
+
+    static final byte PARTICIPATION_CREATED = 1;
+    static final byte TRANSACTION_COMPLETED = 2;
+    static final byte TRANSACTION_FAILED = 3;
+
+    private static final long NULL_LONG = Long.MIN_VALUE;
+    private static final int NULL_STRING = 0xFFFF;
+
+    private SagaEventCodec() {
+    }
+
+    public static ParticipationCreated readParticipationCreated(byte[] value, Headers headers) throws IOException {
+        if (!isBinary(headers)) {
+            return EnvelopeDecoder.participationCreated(value);
+        }
+        ByteBuffer b = open(value, PARTICIPATION_CREATED);
+        return new ParticipationCreated(getUuid(b), getUuid(b), getLong(b), getLong(b), getLong(b), getLong(b),
+                getAmount(b), getString(b), Base64.getEncoder().encodeToString(value));
+    }
+
+    public static TransactionEvent readTransactionEvent(byte[] value, Headers headers) throws IOException {
+        if (!isBinary(headers)) {
+            return EnvelopeDecoder.transactionEvent(value);
+        }
+        ByteBuffer b = open(value, TRANSACTION_COMPLETED, TRANSACTION_FAILED);
+        UUID messageId = getUuid(b);
+        UUID sagaId = getUuid(b);
+        Long participationId = getLong(b);
+        Long transactionId = getLong(b);
+        String status = getString(b);
+        String reason = getString(b);
+        return new TransactionEvent(messageId, sagaId, participationId, transactionId, getString(b), status, reason,
+                Base64.getEncoder().encodeToString(value));
+    }
+
+    // Outbox payload JSON to the binary form; null for event types without a binary schema
+    public static byte[] encodePayload(String eventType, String payload) throws IOException {
+        return switch (eventType) {
+            case "ParticipationCreated" -> encode(EnvelopeDecoder.participationCreatedPayload(payload));
+            case "TransactionCompleted" -> encode(TRANSACTION_COMPLETED, EnvelopeDecoder.transactionEventPayload(payload));
+            case "TransactionFailed" -> encode(TRANSACTION_FAILED, EnvelopeDecoder.transactionEventPayload(payload));
+            default -> null;
+        };
+    }
+
+    static byte[] encode(ParticipationCreated e) {
+        byte[] key = utf8(e.idempotencyKey());
+        ByteBuffer b = ByteBuffer.allocate(2 + 32 + 5 * 8 + stringSize(key));
+        b.put((byte) VERSION).put(PARTICIPATION_CREATED);
+        putUuid(b, e.messageId());
+        putUuid(b, e.sagaId());
+        putLong(b, e.participationId());
+        putLong(b, e.investorId());
+        putLong(b, e.userId());
+        putLong(b, e.loanId());
+        b.putLong(e.amount() == null ? NULL_LONG : e.amount().movePointRight(2).longValueExact());
+        putString(b, key);
+        return b.array();
+    }
+
+    static byte[] encode(byte type, TransactionEvent e) {
+        byte[] status = utf8(e.status());
+        byte[] reason = utf8(e.reason());
+        byte[] key = utf8(e.idempotencyKey());
+        ByteBuffer b = ByteBuffer.allocate(2 + 32 + 2 * 8 + stringSize(status) + stringSize(reason) + stringSize(key));
+        b.put((byte) VERSION).put(type);
+        putUuid(b, e.messageId());
+        putUuid(b, e.sagaId());
+        putLong(b, e.participationId());
+        putLong(b, e.transactionId());
+        putString(b, status);
+        putString(b, reason);
+        putString(b, key);
+        return b.array();
+    }
+
+    // "bin-N" for any N: newer versions only append fields, so the known prefix still decodes
+    private static boolean isBinary(Headers headers) {
+        Header h = headers == null ? null : headers.lastHeader(HEADER);
+        if (h == null) return false;
+        String codec = new String(h.value(), StandardCharsets.UTF_8);
+        if (codec.equals(JSON)) return false;
+        if (codec.startsWith("bin-")) return true;
+        throw new IllegalArgumentException("Unsupported " + HEADER + ": " + codec);
+    }
+
+    private static ByteBuffer open(byte[] value, byte... expectedTypes) {
+        ByteBuffer b = ByteBuffer.wrap(value);
+        int version = Byte.toUnsignedInt(b.get());
+        if (version < 1) {
+            throw new IllegalArgumentException("Unsupported binary event version " + version);
+        }
+        byte type = b.get();
+        for (byte expected : expectedTypes) {
+            if (type == expected) return b;
+        }
+        throw new IllegalArgumentException("Unexpected binary event type " + type);
+    }
+
+    private static void putUuid(ByteBuffer b, UUID id) {
+        b.putLong(id == null ? 0 : id.getMostSignificantBits());
+        b.putLong(id == null ? 0 : id.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(ByteBuffer b) {
+        long msb = b.getLong();
+        long lsb = b.getLong();
+        return msb == 0 && lsb == 0 ? null : new UUID(msb, lsb);
+    }
+
+    private static void putLong(ByteBuffer b, Long v) {
+        b.putLong(v == null ? NULL_LONG : v);
+    }
+
+    private static Long getLong(ByteBuffer b) {
+        long v = b.getLong();
+        return v == NULL_LONG ? null : v;
+    }
+
+    private static BigDecimal getAmount(ByteBuffer b) {
+        long cents = b.getLong();
+        return cents == NULL_LONG ? null : BigDecimal.valueOf(cents, 2);
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringSize(byte[] utf8) {
+        return 2 + (utf8 == null ? 0 : utf8.length);
+    }
+
+    private static void putString(ByteBuffer b, byte[] utf8) {
+        if (utf8 == null) {
+            b.putShort((short) NULL_STRING);
+            return;
+        }
+        if (utf8.length >= NULL_STRING) {
+            throw new IllegalArgumentException("String of " + utf8.length + " bytes does not fit a binary event");
+        }
+        b.putShort((short) utf8.length).put(utf8);
+    }
+
+    private static String getString(ByteBuffer b) {
+        int length = Short.toUnsignedInt(b.getShort());
+        if (length == NULL_STRING) return null;
+        String s = new String(b.array(), b.arrayOffset() + b.position(), length, StandardCharsets.UTF_8);
+        b.position(b.position() + length);
+        return s;
+    }
+}
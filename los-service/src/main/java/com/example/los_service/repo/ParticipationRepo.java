@@ -3,10 +3,15 @@ package com.example.los_service.repo;
 import com.example.los_service.model.Participation.Status;
 
 import com.example.los_service.model.Participation;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
 @Repository
 public interface ParticipationRepo extends JpaRepository<Participation, Long> {
     long countByStatus(Status status);
     boolean existsByIdempotencyKey(String idempotencyKey);
+    List<Participation> findByLoanIdAndStatusAndIdGreaterThanOrderById(Long loanId, Status status, Long afterId, Limit limit);
 }
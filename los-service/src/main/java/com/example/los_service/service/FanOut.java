@@ -0,0 +1,100 @@
+package com.example.los_service.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+// Runs one blocking call per item concurrently, at most maxInFlight at a time per fan-out, and
+// returns the outcomes in item order. Each call gets its own deadline, counted from the moment
+// it starts (not from when it was queued); a call past its deadline is interrupted and reported
+// as a timeout. Total latency tracks the slowest call instead of the sum of all calls.
+// The interrupt only frees calls blocked interruptibly (the JDK HttpClient); a classic socket
+// read (HttpComponents) runs on, holding its permit and connection, until the client's own read
+// timeout, so that timeout must not exceed callTimeoutMs (SyncController uses callTimeoutMs).
+@Component
+public class FanOut {
+    private final ExecutorService calls = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "fan-out-deadlines");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${app.sync.fanout.maxInFlight:32}")
+    int maxInFlight;
+
+    @Value("${app.sync.fanout.callTimeoutMs:3000}")
+    long callTimeoutMs;
+
+    public record Outcome<R>(R value, Throwable error) {
+        public boolean ok() {
+            return error == null;
+        }
+    }
+
+    public <T, R> List<Outcome<R>> callAll(List<T> items, Function<T, R> call) {
+        Semaphore permits = new Semaphore(maxInFlight);
+        List<CompletableFuture<R>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            CompletableFuture<R> result = new CompletableFuture<>();
+            futures.add(result);
+            calls.execute(() -> run(item, call, result, permits));
+        }
+
+        List<Outcome<R>> outcomes = new ArrayList<>(items.size());
+        for (CompletableFuture<R> f : futures) {
+            try {
+                outcomes.add(new Outcome<>(f.join(), null));
+            } catch (CompletionException e) {
+                outcomes.add(new Outcome<>(null, e.getCause() != null ? e.getCause() : e));
+            }
+        }
+        return outcomes;
+    }
+
+    private <T, R> void run(T item, Function<T, R> call, CompletableFuture<R> result, Semaphore permits) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        try {
+            Thread worker = Thread.currentThread();
+            ScheduledFuture<?> deadline = deadlines.schedule(() -> {
+                if (result.completeExceptionally(
+                        new TimeoutException("Ledger call timeout after " + callTimeoutMs + " ms"))) {
+                    worker.interrupt();
+                }
+            }, callTimeoutMs, TimeUnit.MILLISECONDS);
+            try {
+                result.complete(call.apply(item));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                deadline.cancel(false);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        calls.shutdownNow();
+        deadlines.shutdownNow();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.los_service.service;
+
+import com.example.los_service.repo.InboxRepo;
+import com.example.los_service.util.BoundedIdCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Inbox dedup: a bounded LRU of message ids known to be committed to the inbox answers
+// redeliveries without touching the database; everything else goes through a single
+// insert-if-absent. Ids enter the cache only after commit, so a rolled-back message is
+// never mistaken for a processed one.
+@Slf4j
+@Service
+public class InboxService {
+    private final InboxRepo inbox;
+    private final StatusCounters counters;
+    private final SagaMetrics metrics;
+    private final BoundedIdCache<UUID> recent;
+
+    public InboxService(InboxRepo inbox, StatusCounters counters, SagaMetrics metrics,
+                        @Value("${app.inbox.cacheSize:100000}") int cacheSize) {
+        this.inbox = inbox;
+        this.counters = counters;
+        this.metrics = metrics;
+        this.recent = new BoundedIdCache<>(cacheSize, 16);
+    }
+
+    // true if the message is new and is now recorded in the caller's transaction;
+    // receivedAt is the Kafka record timestamp, which picks the daily inbox partition
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean claim(UUID messageId, Instant receivedAt, String payload, String handler) {
+        if (recent.contains(messageId)) {
+            metrics.redelivered();
+            return false;
+        }
+        if (inbox.insertIfAbsent(messageId, payload, handler, receivedAt) == 0) {
+            recent.add(messageId);
+            metrics.redelivered();
+            return false;
+        }
+        rememberOnCommit(List.of(messageId));
+        counters.addOnCommit(StatusCounters.INBOX, StatusCounters.ROWS, 1);
+        return true;
+    }
+
+    public boolean isKnown(UUID messageId) {
+        return recent.contains(messageId);
+    }
+
+    public void rememberOnCommit(Collection<UUID> messageIds) {
+        if (messageIds.isEmpty()) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            messageIds.forEach(recent::add);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                messageIds.forEach(recent::add);
+            }
+        });
+    }
+
+    public Map<String, Object> cacheStats() {
+        return recent.stats();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.los_service.service;
+
+import com.example.los_service.model.OutboxEvent;
+import com.example.los_service.repo.OutboxRepo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.example.los_service.util.Jsons.toJson;
+
+// Where outbox events go. TABLE saves an outbox row; MESSAGE writes the event straight into
+// the WAL with pg_logical_emit_message(transactional = true), so it is still emitted only if
+// the business transaction commits but costs no heap tuple, index entry or vacuum. The
+// connector decodes messages with prefix "outbox" and routes them like outbox rows, which
+// is why the message content uses the outbox column names, created_at included. The current
+// traceparent goes with each event.
+@Slf4j
+@Component
+public class OutboxWriter {
+    public static final String MESSAGE_PREFIX = "outbox";
+
+    public enum Mode { TABLE, MESSAGE }
+
+    private final OutboxRepo outbox;
+    private final JdbcTemplate jdbc;
+    private final Tracing tracing;
+    private final Mode mode;
+
+    public OutboxWriter(OutboxRepo outbox, JdbcTemplate jdbc, Tracing tracing, @Value("${app.outbox.mode:table}") String mode) {
+        this.outbox = outbox;
+        this.jdbc = jdbc;
+        this.tracing = tracing;
+        this.mode = Mode.valueOf(mode.toUpperCase());
+        log.info("Outbox events are written as {}", this.mode == Mode.TABLE ? "outbox rows" : "logical decoding messages");
+    }
+
+    // Must be called inside the business transaction
+    public void append(String eventType, String aggregateType, Long aggregateId, String payload) {
+        String traceparent = tracing.currentHeader();
+        if (mode == Mode.TABLE) {
+            outbox.save(OutboxEvent.builder()
+                    .eventType(eventType)
+                    .aggregateType(aggregateType)
+                    .aggregateId(aggregateId)
+                    .payload(payload)
+                    .status("NEW")
+                    .attemptCount(0)
+                    .traceparent(traceparent)
+                    .build());
+            return;
+        }
+
+        Map<String, Object> content = new LinkedHashMap<>();
+        content.put("id", UUID.randomUUID().toString());
+        content.put("event_type", eventType);
+        content.put("aggregate_type", aggregateType);
+        content.put("aggregate_id", aggregateId);
+        content.put("payload", payload);
+        content.put("traceparent", traceparent);
+        // created_at is the transaction's now(), as the outbox column default
+        jdbc.queryForObject("SELECT pg_logical_emit_message(true, ?, (?::jsonb || jsonb_build_object('created_at', now()))::text)::text",
+                String.class, MESSAGE_PREFIX, toJson(content));
+    }
+}
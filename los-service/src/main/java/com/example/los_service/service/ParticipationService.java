@@ -2,18 +2,18 @@ package com.example.los_service.service;
 
 
 import com.example.los_service.api.record.InvestorReq;
-import com.example.los_service.model.OutboxEvent;
 import com.example.los_service.model.Participation;
 import com.example.los_service.model.Participation.Status;
-import com.example.los_service.repo.OutboxRepo;
 import com.example.los_service.repo.ParticipationRepo;
 import com.example.los_service.util.Jsons;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -21,7 +21,9 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class ParticipationService {
     private final ParticipationRepo repo;
-    private final OutboxRepo outbox;
+    private final OutboxWriter outboxWriter;
+    private final SagaTracker sagas;
+    private final SagaMetrics metrics;
     private final ObjectMapper M = new ObjectMapper();
 
 
@@ -38,6 +40,10 @@ public class ParticipationService {
 
     @Transactional
     public void appendOutboxParticipationCreated(Participation p, UUID sagaId) throws JsonProcessingException {
+        outboxWriter.append("ParticipationCreated", "Participation", p.getId(), participationCreatedPayload(p, sagaId));
+    }
+
+    public String participationCreatedPayload(Participation p, UUID sagaId) throws JsonProcessingException {
         var payload = Map.of(
                 "messageId", UUID.randomUUID().toString(),
                 "sagaId", sagaId.toString(),
@@ -48,30 +54,75 @@ public class ParticipationService {
                 "amount", p.getAmount(),
                 "idempotencyKey", p.getLoanId() + ":" + p.getInvestorId()
         );
-        outbox.save(OutboxEvent.builder()
-                .eventType("ParticipationCreated")
-                .aggregateType("Participation")
-                .aggregateId(p.getId())
-                .payload(M.writeValueAsString(payload))
-                .status("NEW")
-                .attemptCount(0)
-                .build());
+        return M.writeValueAsString(payload);
+    }
 
-        var e = outbox.findById(outbox.getReferenceById(outbox.count()).getId()); // simplified; or use returned entity
+    // One chunk of a loan cancellation: RefundRequested for the next `limit` CONFIRMED
+    // participations after afterId. Keyed by wallet, not participation: one wallet's refunds
+    // share a partition, so the ledger sees them in the same poll and credits them together.
+    @Transactional
+    public List<Participation> requestRefunds(Long loanId, UUID sagaId, long afterId, int limit) {
+        List<Participation> page = repo.findByLoanIdAndStatusAndIdGreaterThanOrderById(
+                loanId, Status.CONFIRMED, afterId, Limit.of(limit));
+        if (page.isEmpty()) return page;
+        sagas.addParticipations(sagaId, page.size());
+        for (Participation p : page) {
+            outboxWriter.append("RefundRequested", "Wallet", p.getUserId(), refundRequestedPayload(p, sagaId));
+        }
+        return page;
     }
 
+    // The ledger refunds what it debited for the participation; userId and amount are informational
+    public String refundRequestedPayload(Participation p, UUID sagaId) {
+        return Jsons.toJson(Map.of(
+                "messageId", UUID.randomUUID().toString(),
+                "sagaId", sagaId.toString(),
+                "participationId", p.getId(),
+                "userId", p.getUserId(),
+                "loanId", p.getLoanId(),
+                "amount", p.getAmount().toString(),
+                "idempotencyKey", "refund:" + p.getId()
+        ));
+    }
+
+    // Only the first outcome of a participation counts towards its saga. COMPENSATED is
+    // final: a late debit outcome must not bring a refunded participation back.
     @Transactional
-    public void markConfirmed(Long id) {
+    public void markConfirmed(Long id, UUID sagaId) {
         repo.findById(id).ifPresent(p -> {
-            p.setStatus(Status.CONFIRMED);
+            if (p.getStatus() == Status.PENDING) {
+                sagas.recordOutcome(sagaId, true);
+                metrics.completed(p.getCreatedAt(), true);
+            }
+            if (p.getStatus() != Status.COMPENSATED) p.setStatus(Status.CONFIRMED);
         });
     }
 
     @Transactional
-    public void markFailed(Long id) {
+    public void markFailed(Long id, UUID sagaId) {
         repo.findById(id).ifPresent(p -> {
-            p.setStatus(Status.FAILED);
+            if (p.getStatus() == Status.PENDING) {
+                sagas.recordOutcome(sagaId, false);
+                metrics.completed(p.getCreatedAt(), false);
+            }
+            if (p.getStatus() != Status.COMPENSATED) p.setStatus(Status.FAILED);
         });
     }
+
+    // The ledger answers every RefundRequested exactly once (transient failures are redelivered
+    // there until they succeed or fail for good) and the inbox drops redeliveries, so each answer
+    // counts towards its cancellation saga, whatever the participation's state. NOTHING_DEBITED
+    // and DUPLICATE answers compensate too: nothing is owed any more.
+    @Transactional
+    public void markCompensated(Long id, UUID sagaId) {
+        sagas.recordOutcome(sagaId, true);
+        repo.findById(id).ifPresent(p -> p.setStatus(Status.COMPENSATED));
+    }
+
+    // The ledger could not refund: the participation keeps its status and the saga counts a failure
+    @Transactional
+    public void markRefundFailed(Long id, UUID sagaId) {
+        sagas.recordOutcome(sagaId, false);
+    }
 }
 
@@ -0,0 +1,354 @@
+package com.example.los_service.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongFunction;
+
+// Cross-service reconciliation behind /stats/orphans. A run reads participation here and the
+// ledger's outcome per participation (GET /reconciliation/txns there) as keyset pages in id
+// order and merge-joins the two streams, so it holds four pages (current and prefetched, per
+// side) whatever the table sizes. It flags:
+//   CONFIRMED_WITHOUT_SUCCESS  confirmed here, no successful debit in the ledger
+//   FAILED_WITH_SUCCESS        failed here but debited (the sync timeout case)
+//   STUCK_PENDING              still PENDING stuckAfterMs after it was created
+//   LEDGER_ONLY                a successful debit for a participation that does not exist here
+//   COMPENSATED_WITHOUT_REFUND compensated here, but the ledger still holds the debit
+// A REFUNDED ledger outcome is a debit that was given back, so it counts as not debited.
+// Findings are kept in reconciliation_finding until a run sees them consistent. Runs are
+// incremental: the watermark moves up to the first participation younger than stuckAfterMs,
+// the next run starts there, and findings below it are re-checked by id. Participation ids
+// come in pooled blocks of 50 per instance, so a row written from a block that an instance
+// held for longer than stuckAfterMs can land below the watermark; a full run rescans them.
+@Slf4j
+@Component
+public class Reconciler {
+    public enum Kind {CONFIRMED_WITHOUT_SUCCESS, FAILED_WITH_SUCCESS, STUCK_PENDING, LEDGER_ONLY, COMPENSATED_WITHOUT_REFUND}
+
+    private static final String NAME = "orphans";
+
+    // createdAt is null for ledger pages
+    record Page(long[] ids, String[] statuses, long[] createdAt) {}
+
+    // GET /reconciliation/txns on the ledger
+    record LedgerPage(long[] participationIds, String[] statuses) {}
+
+    interface Sink {
+        void flag(long participationId, Kind kind, String losStatus, String ledgerStatus);
+    }
+
+    // What one merge-join saw; watermark = highest id below which everything was settled
+    record Scan(long compared, long ledgerRows, long pages, long watermark) {}
+
+    private final JdbcTemplate jdbc;
+    private final RestClient ledger;
+    private final int pageSize;
+    private final long stuckAfterMs;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Map<String, Object> lastRun = Map.of("ranAt", "never");
+
+    @Value("${app.reconciliation.enabled:true}")
+    boolean enabled;
+
+    public Reconciler(JdbcTemplate jdbc,
+                      @Value("${app.ledgerBaseUrl}") String ledgerBaseUrl,
+                      @Value("${app.reconciliation.pageSize:10000}") int pageSize,
+                      @Value("${app.reconciliation.stuckAfterMs:600000}") long stuckAfterMs) {
+        this.jdbc = jdbc;
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory();
+        factory.setReadTimeout(Duration.ofSeconds(60));
+        this.ledger = RestClient.builder().baseUrl(ledgerBaseUrl).requestFactory(factory).build();
+        this.pageSize = pageSize;
+        this.stuckAfterMs = stuckAfterMs;
+    }
+
+    @Scheduled(initialDelayString = "${app.reconciliation.intervalMs:300000}",
+            fixedDelayString = "${app.reconciliation.intervalMs:300000}")
+    public void scheduled() {
+        if (enabled && running.compareAndSet(false, true)) runClaimed(false);
+    }
+
+    // Starts a run in the background; false if one is already running on this instance
+    public boolean start(boolean full) {
+        if (!running.compareAndSet(false, true)) return false;
+        Thread.ofPlatform().name("reconciler").daemon().start(() -> runClaimed(full));
+        return true;
+    }
+
+    private void runClaimed(boolean full) {
+        try {
+            lastRun = reconcile(full);
+        } catch (RuntimeException e) {
+            log.warn("Reconciliation run failed: {}", e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Map<String, Object> reconcile(boolean full) {
+        long started = System.nanoTime();
+        Timestamp runAt = Timestamp.from(Instant.now());
+        long watermark = watermark();
+        long from = full ? 0 : watermark;
+        long upTo = jdbc.queryForObject("SELECT coalesce(max(id), 0) FROM participation", Long.class);
+
+        Findings findings = new Findings(runAt);
+        Scan scan;
+        try (ExecutorService prefetch = Executors.newFixedThreadPool(2)) {
+            scan = scan(after -> losPage(after, upTo), after -> ledgerPage(after, upTo), from, pageSize,
+                    System.currentTimeMillis() - stuckAfterMs, findings, prefetch);
+        }
+        long rechecked = full ? 0 : recheck(from, findings);
+        findings.flush();
+        // Findings in the compared range that were not flagged again are resolved
+        int resolved = jdbc.update("DELETE FROM reconciliation_finding WHERE participation_id <= ? AND last_seen < ?",
+                upTo, runAt);
+
+        long next = scan.watermark() == Long.MAX_VALUE ? upTo : scan.watermark();
+        boolean advanced = jdbc.update("UPDATE reconciliation SET watermark = ?, updated_at = now() WHERE name = ? AND watermark = ?",
+                next, NAME, watermark) == 1;
+        if (!advanced) log.info("Reconciliation watermark moved by another instance, keeping it");
+
+        long ms = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("ranAt", runAt.toInstant());
+        run.put("full", full);
+        run.put("from", from);
+        run.put("upTo", upTo);
+        run.put("watermark", advanced ? next : watermark());
+        run.put("compared", scan.compared());
+        run.put("ledgerRows", scan.ledgerRows());
+        run.put("pages", scan.pages());
+        run.put("rechecked", rechecked);
+        run.put("flagged", findings.counts());
+        run.put("resolved", resolved);
+        run.put("durationMs", ms);
+        run.put("rowsPerSecond", scan.compared() * 1000 / ms);
+        log.info("Reconciliation compared {} participations ({} -> {}) in {} ms, flagged {}, resolved {}",
+                scan.compared(), from, upTo, ms, findings.counts(), resolved);
+        return run;
+    }
+
+    // The merge-join. Both sides come in ascending id order and at most one ledger row per id.
+    static Scan scan(LongFunction<Page> losPages, LongFunction<Page> ledgerPages, long from, int pageSize,
+                     long settledBefore, Sink sink, ExecutorService prefetch) {
+        Cursor los = new Cursor(losPages, from, pageSize, prefetch);
+        Cursor ledger = new Cursor(ledgerPages, from, pageSize, prefetch);
+        long compared = 0;
+        long watermark = Long.MAX_VALUE;
+        while (los.hasRow() || ledger.hasRow()) {
+            long l = los.hasRow() ? los.id() : Long.MAX_VALUE;
+            long g = ledger.hasRow() ? ledger.id() : Long.MAX_VALUE;
+            if (g < l) {
+                Kind kind = classify(null, ledger.status(), true);
+                if (kind != null) sink.flag(g, kind, null, ledger.status());
+                ledger.advance();
+                continue;
+            }
+            String ledgerStatus = g == l ? ledger.status() : null;
+            boolean settled = los.createdAt() < settledBefore;
+            if (!settled && watermark == Long.MAX_VALUE) watermark = l - 1;
+            Kind kind = classify(los.status(), ledgerStatus, settled);
+            if (kind != null) sink.flag(l, kind, los.status(), ledgerStatus);
+            compared++;
+            los.advance();
+            if (g == l) ledger.advance();
+        }
+        return new Scan(compared, ledger.rows, los.pages + ledger.pages, watermark);
+    }
+
+    static Kind classify(String losStatus, String ledgerStatus, boolean settled) {
+        boolean debited = "SUCCESS".equals(ledgerStatus);
+        if (losStatus == null) return debited ? Kind.LEDGER_ONLY : null;
+        return switch (losStatus) {
+            case "CONFIRMED" -> debited ? null : Kind.CONFIRMED_WITHOUT_SUCCESS;
+            case "FAILED" -> debited ? Kind.FAILED_WITH_SUCCESS : null;
+            case "PENDING" -> settled ? Kind.STUCK_PENDING : null;
+            // Compensating a participation that was never debited (NOTHING_DEBITED) is fine
+            case "COMPENSATED" -> debited ? Kind.COMPENSATED_WITHOUT_REFUND : null;
+            default -> null;
+        };
+    }
+
+    // Keyset pages of one side; the next page is fetched while the current one is merged.
+    // A page shorter than pageSize is the last one.
+    private static final class Cursor {
+        private final LongFunction<Page> fetch;
+        private final int pageSize;
+        private final ExecutorService prefetch;
+        private Page page;
+        private CompletableFuture<Page> next;
+        private int i;
+        long pages, rows;
+
+        Cursor(LongFunction<Page> fetch, long after, int pageSize, ExecutorService prefetch) {
+            this.fetch = fetch;
+            this.pageSize = pageSize;
+            this.prefetch = prefetch;
+            use(fetch.apply(after));
+        }
+
+        boolean hasRow() {
+            return i < page.ids().length;
+        }
+
+        long id() {
+            return page.ids()[i];
+        }
+
+        String status() {
+            return page.statuses()[i];
+        }
+
+        long createdAt() {
+            return page.createdAt()[i];
+        }
+
+        void advance() {
+            if (++i < page.ids().length || next == null) return;
+            use(next.join());
+        }
+
+        private void use(Page p) {
+            page = p;
+            i = 0;
+            pages++;
+            rows += p.ids().length;
+            long[] ids = p.ids();
+            next = ids.length < pageSize ? null
+                    : CompletableFuture.supplyAsync(() -> fetch.apply(ids[ids.length - 1]), prefetch);
+        }
+    }
+
+    private Page losPage(long after, long upTo) {
+        long[] ids = new long[pageSize];
+        String[] statuses = new String[pageSize];
+        long[] createdAt = new long[pageSize];
+        int[] n = {0};
+        jdbc.query("SELECT id, status, created_at FROM participation WHERE id > ? AND id <= ? ORDER BY id LIMIT ?",
+                rs -> {
+                    ids[n[0]] = rs.getLong(1);
+                    statuses[n[0]] = rs.getString(2);
+                    Timestamp created = rs.getTimestamp(3);
+                    createdAt[n[0]++] = created == null ? 0 : created.getTime();
+                }, after, upTo, pageSize);
+        return new Page(Arrays.copyOf(ids, n[0]), Arrays.copyOf(statuses, n[0]), Arrays.copyOf(createdAt, n[0]));
+    }
+
+    private Page ledgerPage(long after, long upTo) {
+        LedgerPage p = ledger.get()
+                .uri("/reconciliation/txns?after={after}&upTo={upTo}&limit={limit}", after, upTo, pageSize)
+                .retrieve()
+                .body(LedgerPage.class);
+        return new Page(p.participationIds(), p.statuses(), null);
+    }
+
+    // Findings below the scanned range, looked up again by id a page at a time
+    private long recheck(long upTo, Findings findings) {
+        long after = 0, rechecked = 0;
+        while (true) {
+            List<Long> ids = jdbc.queryForList(
+                    "SELECT participation_id FROM reconciliation_finding WHERE participation_id > ? AND participation_id <= ? "
+                            + "ORDER BY participation_id LIMIT ?", Long.class, after, upTo, pageSize);
+            if (ids.isEmpty()) return rechecked;
+            long[] idArray = ids.stream().mapToLong(Long::longValue).toArray();
+
+            Map<Long, String> losStatus = new HashMap<>();
+            Map<Long, Long> created = new HashMap<>();
+            jdbc.query("SELECT id, status, created_at FROM participation WHERE id = ANY(?)",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())),
+                    rs -> {
+                        losStatus.put(rs.getLong(1), rs.getString(2));
+                        created.put(rs.getLong(1), rs.getTimestamp(3) == null ? 0 : rs.getTimestamp(3).getTime());
+                    });
+            LedgerPage lp = ledger.post().uri("/reconciliation/txns/lookup").body(idArray).retrieve().body(LedgerPage.class);
+            Map<Long, String> ledgerStatus = new HashMap<>();
+            for (int i = 0; i < lp.participationIds().length; i++) ledgerStatus.put(lp.participationIds()[i], lp.statuses()[i]);
+
+            long settledBefore = System.currentTimeMillis() - stuckAfterMs;
+            for (long id : idArray) {
+                String los = losStatus.get(id), led = ledgerStatus.get(id);
+                Kind kind = classify(los, led, created.getOrDefault(id, 0L) < settledBefore);
+                if (kind != null) findings.flag(id, kind, los, led);
+            }
+            rechecked += idArray.length;
+            after = idArray[idArray.length - 1];
+        }
+    }
+
+    private long watermark() {
+        return jdbc.queryForObject("SELECT watermark FROM reconciliation WHERE name = ?", Long.class, NAME);
+    }
+
+    // Upserted in batches; last_seen = this run, so what a run did not flag again can be deleted
+    private final class Findings implements Sink {
+        private static final int BATCH = 1000;
+        private final Timestamp runAt;
+        private final List<Object[]> batch = new ArrayList<>(BATCH);
+        private final Map<Kind, Long> counts = new EnumMap<>(Kind.class);
+
+        Findings(Timestamp runAt) {
+            this.runAt = runAt;
+        }
+
+        @Override
+        public void flag(long participationId, Kind kind, String losStatus, String ledgerStatus) {
+            counts.merge(kind, 1L, Long::sum);
+            batch.add(new Object[]{participationId, kind.name(), losStatus, ledgerStatus, runAt, runAt});
+            if (batch.size() == BATCH) flush();
+        }
+
+        void flush() {
+            if (batch.isEmpty()) return;
+            jdbc.batchUpdate("""
+                    INSERT INTO reconciliation_finding (participation_id, kind, los_status, ledger_status, first_seen, last_seen)
+                    VALUES (?, ?, ?, ?, ?, ?)
+                    ON CONFLICT (participation_id) DO UPDATE SET kind = EXCLUDED.kind, los_status = EXCLUDED.los_status,
+                        ledger_status = EXCLUDED.ledger_status, last_seen = EXCLUDED.last_seen
+                    """, batch);
+            batch.clear();
+        }
+
+        Map<Kind, Long> counts() {
+            return counts;
+        }
+    }
+
+    // Open findings per kind and the lowest-id ones, for /stats/orphans
+    public Map<String, Object> report(String kind, int limit) {
+        Map<String, Long> open = new LinkedHashMap<>();
+        jdbc.query("SELECT kind, count(*) FROM reconciliation_finding GROUP BY kind ORDER BY kind",
+                rs -> { open.put(rs.getString(1), rs.getLong(2)); });
+        List<Map<String, Object>> findings = kind == null
+                ? jdbc.queryForList("SELECT * FROM reconciliation_finding ORDER BY participation_id LIMIT ?", limit)
+                : jdbc.queryForList("SELECT * FROM reconciliation_finding WHERE kind = ? ORDER BY participation_id LIMIT ?",
+                kind, limit);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("watermark", watermark());
+        report.put("running", running.get());
+        report.put("open", open);
+        report.put("findings", findings);
+        report.put("lastRun", lastRun);
+        return report;
+    }
+}
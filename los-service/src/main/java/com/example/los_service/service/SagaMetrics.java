@@ -0,0 +1,98 @@
+package com.example.los_service.service;
+
+import com.example.los_service.util.EventTime;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.record.TimestampType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+// LOS side of the saga latency breakdown (scraped at /actuator/prometheus):
+//   saga.stage{stage=outbox_to_los}   ledger outbox.created_at -> TransactionCompleted/Failed picked up
+//                                     (EventTime = outbox created_at, as on the ledger side)
+//   saga.stage{stage=los_confirm}     pick-up -> participation status committed
+//   saga.end_to_end{outcome}          participation.created_at -> first outcome committed
+// The ledger reports outbox_to_ledger and ledger_debit; together they cover a participation
+// from insert to confirmation. Meters are resolved once; inside a transaction a record waits
+// for the commit, at the cost of a lambda and a TransactionSynchronization per call.
+@Component
+public class SagaMetrics {
+    private final Timer outboxToLos;
+    private final Timer losConfirm;
+    private final Timer confirmed;
+    private final Timer failed;
+    private final Counter redeliveries;
+
+    public SagaMetrics(MeterRegistry meters) {
+        this.outboxToLos = stage(meters, "outbox_to_los");
+        this.losConfirm = stage(meters, "los_confirm");
+        this.confirmed = endToEnd(meters, "confirmed");
+        this.failed = endToEnd(meters, "failed");
+        this.redeliveries = Counter.builder("saga.inbox.duplicates")
+                .description("Kafka deliveries dropped by the inbox as already processed")
+                .register(meters);
+    }
+
+    // Call when a transaction outcome is picked up; returns the start for confirmed()
+    public long received(ConsumerRecord<?, ?> record) {
+        if (record.timestampType() != TimestampType.NO_TIMESTAMP_TYPE || record.headers().lastHeader(EventTime.HEADER) != null) {
+            outboxToLos.record(Math.max(0, System.currentTimeMillis() - EventTime.of(record).toEpochMilli()), TimeUnit.MILLISECONDS);
+        }
+        return System.nanoTime();
+    }
+
+    public void confirmed(long receivedNanos) {
+        onCommit(() -> losConfirm.record(System.nanoTime() - receivedNanos, TimeUnit.NANOSECONDS));
+    }
+
+    // A participation reached its first outcome in the current transaction
+    public void completed(Instant createdAt, boolean success) {
+        if (createdAt == null) return;
+        Timer timer = success ? confirmed : failed;
+        onCommit(() -> timer.record(Math.max(0, System.currentTimeMillis() - createdAt.toEpochMilli()), TimeUnit.MILLISECONDS));
+    }
+
+    public void redelivered() {
+        redeliveries.increment();
+    }
+
+    private static void onCommit(Runnable record) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record.run();
+            }
+        });
+    }
+
+    private static Timer stage(MeterRegistry meters, String stage) {
+        return histogram(Timer.builder("saga.stage")
+                .description("Time a participation spends in one saga stage")
+                .tag("stage", stage), meters);
+    }
+
+    private static Timer endToEnd(MeterRegistry meters, String outcome) {
+        return histogram(Timer.builder("saga.end_to_end")
+                .description("Participation created -> ledger outcome applied")
+                .tag("outcome", outcome), meters);
+    }
+
+    private static Timer histogram(Timer.Builder builder, MeterRegistry meters) {
+        return builder.publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(5))
+                .register(meters);
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.los_service.service;
+
+import com.example.los_service.api.record.SagaStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Per-saga counters in the saga table, kept in step with the participations: the saga row is
+// written in the transaction that creates its participations, and every first outcome of a
+// participation moves one count from pending to confirmed/failed when the consumer's transaction
+// commits.
+// Watchers (SSE, long-poll) are told after commit when their saga changes on this instance;
+// a slow sweep covers changes committed by other instances.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SagaTracker {
+    private static final String SELECT = "SELECT saga_id, total, pending, confirmed, failed, open, created_at, completed_at FROM saga";
+
+    private final JdbcTemplate jdbc;
+    private final Map<UUID, List<Consumer<SagaStatus>>> watchers = new ConcurrentHashMap<>();
+    private final Object outcomesKey = new Object();
+
+    private static final class Outcomes {
+        int confirmed;
+        int failed;
+
+        void add(boolean confirmed) {
+            if (confirmed) this.confirmed++;
+            else failed++;
+        }
+    }
+
+    // open = more participations may still be added (streamed uploads); must run in the business transaction
+    public void start(UUID sagaId, int participations, boolean open) {
+        jdbc.update("INSERT INTO saga (saga_id, total, pending, open, completed_at) VALUES (?, ?, ?, ?, "
+                        + "CASE WHEN ? THEN now() END)",
+                sagaId, participations, participations, open, participations == 0 && !open);
+    }
+
+    public void addParticipations(UUID sagaId, int n) {
+        jdbc.update("UPDATE saga SET total = total + ?, pending = pending + ?, updated_at = now() WHERE saga_id = ?",
+                n, n, sagaId);
+    }
+
+    public void close(UUID sagaId) {
+        jdbc.update("""
+                UPDATE saga SET open = false, updated_at = now(),
+                       completed_at = CASE WHEN pending = 0 THEN now() END
+                WHERE saga_id = ? AND open""", sagaId);
+        changed(sagaId);
+    }
+
+    // Call once per participation leaving PENDING. Sagas created elsewhere (the sync path) have no row.
+    // Outcomes are summed per saga and written just before commit, one UPDATE per saga, so the
+    // saga row (shared by every worker handling that saga) is locked only for the commit itself.
+    public void recordOutcome(UUID sagaId, boolean confirmed) {
+        if (sagaId == null) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Outcomes o = new Outcomes();
+            o.add(confirmed);
+            write(Map.of(sagaId, o)).forEach(this::publish);
+            return;
+        }
+        pendingOutcomes().computeIfAbsent(sagaId, id -> new Outcomes()).add(confirmed);
+    }
+
+    public Optional<SagaStatus> find(UUID sagaId) {
+        return jdbc.query(SELECT + " WHERE saga_id = ?", SagaTracker::status, sagaId).stream().findFirst();
+    }
+
+    // The watcher is called with every change seen after it subscribed; run the returned handle to stop
+    public Runnable watch(UUID sagaId, Consumer<SagaStatus> watcher) {
+        watchers.computeIfAbsent(sagaId, id -> new CopyOnWriteArrayList<>()).add(watcher);
+        return () -> watchers.computeIfPresent(sagaId, (id, list) -> {
+            list.remove(watcher);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.saga.watch.sweepMs:1000}")
+    public void sweep() {
+        watchers.keySet().forEach(this::publish);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<UUID, Outcomes> pendingOutcomes() {
+        var pending = (Map<UUID, Outcomes>) TransactionSynchronizationManager.getResource(outcomesKey);
+        if (pending != null) return pending;
+        // Sorted, so concurrent transactions lock their saga rows in the same order
+        Map<UUID, Outcomes> outcomes = new TreeMap<>();
+        TransactionSynchronizationManager.bindResource(outcomesKey, outcomes);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private List<UUID> written = List.of();
+
+            @Override
+            public void suspend() {
+                TransactionSynchronizationManager.unbindResource(outcomesKey);
+            }
+
+            @Override
+            public void resume() {
+                TransactionSynchronizationManager.bindResource(outcomesKey, outcomes);
+            }
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                written = write(outcomes);
+            }
+
+            @Override
+            public void afterCommit() {
+                written.forEach(SagaTracker.this::publish);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(outcomesKey);
+            }
+        });
+        return outcomes;
+    }
+
+    // Returns the sagas that have a row
+    private List<UUID> write(Map<UUID, Outcomes> outcomes) {
+        List<UUID> sagaIds = List.copyOf(outcomes.keySet());
+        List<Object[]> rows = new ArrayList<>(sagaIds.size());
+        for (UUID sagaId : sagaIds) {
+            Outcomes o = outcomes.get(sagaId);
+            int n = o.confirmed + o.failed;
+            rows.add(new Object[]{n, o.confirmed, o.failed, n, sagaId});
+        }
+        int[] updated = jdbc.batchUpdate("""
+                UPDATE saga SET pending = pending - ?,
+                       confirmed = confirmed + ?, failed = failed + ?, updated_at = now(),
+                       completed_at = CASE WHEN pending = ? AND NOT open THEN now() ELSE completed_at END
+                WHERE saga_id = ?""", rows);
+        List<UUID> written = new ArrayList<>(sagaIds.size());
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] != 0) written.add(sagaIds.get(i));
+        }
+        return written;
+    }
+
+    private void changed(UUID sagaId) {
+        if (!watchers.containsKey(sagaId)) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(sagaId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(sagaId);
+            }
+        });
+    }
+
+    private void publish(UUID sagaId) {
+        List<Consumer<SagaStatus>> list = watchers.get(sagaId);
+        if (list == null) return;
+        try {
+            find(sagaId).ifPresent(s -> list.forEach(w -> w.accept(s)));
+        } catch (RuntimeException e) {
+            log.warn("Could not publish progress of saga {}: {}", sagaId, e.getMessage());
+        }
+    }
+
+    private static SagaStatus status(ResultSet rs, int row) throws SQLException {
+        int pending = rs.getInt("pending");
+        boolean open = rs.getBoolean("open");
+        OffsetDateTime completedAt = rs.getObject("completed_at", OffsetDateTime.class);
+        return new SagaStatus(
+                rs.getObject("saga_id", UUID.class),
+                rs.getInt("total"),
+                pending,
+                rs.getInt("confirmed"),
+                rs.getInt("failed"),
+                !open && pending == 0,
+                rs.getObject("created_at", OffsetDateTime.class).toInstant(),
+                completedAt == null ? null : completedAt.toInstant());
+    }
+}
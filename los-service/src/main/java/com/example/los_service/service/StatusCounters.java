@@ -0,0 +1,160 @@
+package com.example.los_service.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Row counts per status of participation, outbox and inbox for the /stats endpoints, so a
+// dashboard poll never scans those tables. Entity inserts and status changes are counted by
+// StatusCountingListener after commit, native writes (inbox claims, relay bulk updates) report
+// themselves on commit. A periodic GROUP BY per table resets the counts to the real ones,
+// which bounds drift from writes this instance cannot see to one reconcile interval.
+@Slf4j
+@Component
+public class StatusCounters {
+    public static final String PARTICIPATION = "participation";
+    public static final String OUTBOX = "outbox";
+    public static final String INBOX = "inbox";
+    // status of tables without a status column
+    public static final String ROWS = "rows";
+
+    private static final Map<String, String> RECONCILE_SQL = Map.of(
+            PARTICIPATION, "SELECT status, count(*) FROM participation GROUP BY status",
+            OUTBOX, "SELECT status, count(*) FROM outbox GROUP BY status",
+            INBOX, "SELECT '" + ROWS + "', count(*) FROM inbox");
+
+    private final JdbcTemplate jdbc;
+    private final Map<String, Map<String, Cell>> tables = new ConcurrentHashMap<>();
+    private volatile Map<String, Object> lastReconcile = Map.of("ranAt", "never");
+
+    // base = last reconciled count, delta = changes reported since then
+    private static final class Cell {
+        volatile long base;
+        final LongAdder delta = new LongAdder();
+
+        long value() {
+            return base + delta.sum();
+        }
+    }
+
+    public StatusCounters(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+        RECONCILE_SQL.keySet().forEach(t -> tables.put(t, new ConcurrentHashMap<>()));
+    }
+
+    // For callers that already run after commit
+    public void add(String table, String status, long n) {
+        cell(table, status).delta.add(n);
+    }
+
+    public void move(String table, String from, String to, long n) {
+        cell(table, from).delta.add(-n);
+        cell(table, to).delta.add(n);
+    }
+
+    public void addOnCommit(String table, String status, long n) {
+        if (n == 0) return;
+        Cell cell = cell(table, status);
+        onCommit(() -> cell.delta.add(n));
+    }
+
+    public void moveOnCommit(String table, String from, String to, long n) {
+        if (n == 0) return;
+        Cell source = cell(table, from);
+        Cell target = cell(table, to);
+        onCommit(() -> {
+            source.delta.add(-n);
+            target.delta.add(n);
+        });
+    }
+
+    // status -> count, plus "total"
+    public Map<String, Long> counts(String table) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        long total = 0;
+        for (var e : tables.get(table).entrySet()) {
+            long v = e.getValue().value();
+            counts.put(e.getKey(), v);
+            total += v;
+        }
+        counts.put("total", total);
+        return counts;
+    }
+
+    public long count(String table, String status) {
+        Cell cell = tables.get(table).get(status);
+        return cell == null ? 0 : cell.value();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.stats.reconcileMs:60000}", initialDelayString = "${app.stats.reconcileMs:60000}")
+    public synchronized void reconcile() {
+        long start = System.nanoTime();
+        Map<String, Long> drift = new LinkedHashMap<>();
+        for (var table : RECONCILE_SQL.entrySet()) {
+            Map<String, Cell> cells = tables.get(table.getKey());
+            // Changes reported while the count runs may or may not be in its snapshot; the
+            // next reconcile settles that
+            Map<String, Long> reported = new HashMap<>();
+            cells.forEach((status, c) -> reported.put(status, c.delta.sum()));
+
+            Map<String, Long> actual = new HashMap<>();
+            jdbc.query(table.getValue(), rs -> {
+                actual.put(rs.getString(1), rs.getLong(2));
+            });
+
+            long tableDrift = 0;
+            for (String status : actual.keySet()) cell(table.getKey(), status);
+            for (var e : cells.entrySet()) {
+                Cell c = e.getValue();
+                long seen = reported.getOrDefault(e.getKey(), 0L);
+                long real = actual.getOrDefault(e.getKey(), 0L);
+                tableDrift += Math.abs(real - (c.base + seen));
+                c.delta.add(-seen);
+                c.base = real;
+            }
+            drift.put(table.getKey(), tableDrift);
+        }
+        lastReconcile = Map.of(
+                "ranAt", Instant.now(),
+                "tookMs", (System.nanoTime() - start) / 1_000_000,
+                "drift", drift);
+        log.debug("Status counters reconciled, drift {}", drift);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        tables.keySet().forEach(t -> stats.put(t, counts(t)));
+        stats.put("lastReconcile", lastReconcile);
+        return stats;
+    }
+
+    private Cell cell(String table, String status) {
+        return tables.get(table).computeIfAbsent(status, s -> new Cell());
+    }
+
+    private static void onCommit(Runnable apply) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.los_service.service;
+
+import com.example.los_service.model.OutboxEvent;
+import com.example.los_service.model.Participation;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+// Feeds StatusCounters from Hibernate: every committed insert of a Participation or OutboxEvent
+// and every committed status change of one, whichever code path saved it (saga, sync endpoints,
+// consumers). Post-commit events only fire for transactions that actually committed.
+@Component
+@RequiredArgsConstructor
+public class StatusCountingListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener {
+    private static final Map<Class<?>, String> TABLES = Map.of(
+            Participation.class, StatusCounters.PARTICIPATION,
+            OutboxEvent.class, StatusCounters.OUTBOX);
+
+    private final EntityManagerFactory emf;
+    private final StatusCounters counters;
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return TABLES.containsKey(persister.getMappedClass());
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        String table = TABLES.get(event.getPersister().getMappedClass());
+        if (table == null) return;
+        counters.add(table, status(event.getPersister(), event.getState()), 1);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        String table = TABLES.get(event.getPersister().getMappedClass());
+        // Without the old state (no prior load) the change is left to the next reconcile
+        if (table == null || event.getOldState() == null) return;
+        String from = status(event.getPersister(), event.getOldState());
+        String to = status(event.getPersister(), event.getState());
+        if (!Objects.equals(from, to)) {
+            counters.move(table, from, to, 1);
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    private static String status(EntityPersister persister, Object[] state) {
+        int i = Arrays.asList(persister.getPropertyNames()).indexOf("status");
+        Object status = state[i];
+        return status instanceof Enum<?> e ? e.name() : String.valueOf(status);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.los_service.util;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+// When an event was written to the outbox: its created_at. The in-service relay sends it as
+// the record timestamp. The connectors cannot (EventRouter only takes INT64 Debezium time
+// fields, while created_at is a TIMESTAMPTZ column or a JSON string in a logical message),
+// so they put it in a created_at header and stamp the record with the time the connector
+// read the change, which differs each time a change is read again. The inbox keys messages
+// by this instant, so every delivery of one event has to yield the same value, whichever
+// path carried it: the header keeps created_at's microseconds and the record timestamp has
+// only milliseconds, so the header is cut to milliseconds.
+public final class EventTime {
+    public static final String HEADER = "created_at";
+
+    private EventTime() {
+    }
+
+    public static Instant of(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(HEADER);
+        if (header != null && header.value() != null) {
+            try {
+                return Instant.parse(new String(header.value(), StandardCharsets.UTF_8)).truncatedTo(ChronoUnit.MILLIS);
+            } catch (DateTimeParseException e) {
+                // fall back to the record timestamp
+            }
+        }
+        return Instant.ofEpochMilli(record.timestamp());
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.los_service.util;
+
+// Open-addressing set of primitive longs (linear probing, power-of-two table, load factor 0.5).
+// About 16 bytes per element at worst instead of a boxed Long plus a HashMap node (~50 bytes).
+// Not thread-safe.
+public final class LongHashSet {
+    private static final long EMPTY = 0L;
+
+    private long[] keys;
+    private int mask;
+    private int size;
+    private boolean containsZero; // 0 marks empty slots, so it is tracked on the side
+
+    public LongHashSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+        keys = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    // false if the value was already present
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsZero) return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int i = slot(value, mask);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == value) return false;
+            i = (i + 1) & mask;
+        }
+        keys[i] = value;
+        if (++size > keys.length / 2) grow();
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) return containsZero;
+        int i = slot(value, mask);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == value) return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] old = keys;
+        keys = new long[old.length * 2];
+        mask = keys.length - 1;
+        for (long k : old) {
+            if (k == EMPTY) continue;
+            int i = slot(k, mask);
+            while (keys[i] != EMPTY) i = (i + 1) & mask;
+            keys[i] = k;
+        }
+    }
+
+    // ids are often sequential; mix the bits so they do not cluster in neighbouring slots
+    private static int slot(long value, int mask) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
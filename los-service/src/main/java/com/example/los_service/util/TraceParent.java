@@ -0,0 +1,61 @@
+package com.example.los_service.util;
+
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+
+// A W3C trace context (https://www.w3.org/TR/trace-context/) as carried in the traceparent
+// header: "00-<32 hex trace id>-<16 hex parent span id>-<2 hex flags>". Only the sampled
+// flag is interpreted; anything that does not parse is treated as no context at all.
+public record TraceParent(String traceId, String spanId, boolean sampled) {
+    public static final String HEADER = "traceparent";
+
+    private static final HexFormat HEX = HexFormat.of();
+    private static final String INVALID_TRACE = "0".repeat(32);
+    private static final String INVALID_SPAN = "0".repeat(16);
+
+    public static TraceParent root(boolean sampled) {
+        return new TraceParent(randomHex(16), randomHex(8), sampled);
+    }
+
+    public TraceParent child() {
+        return new TraceParent(traceId, randomHex(8), sampled);
+    }
+
+    public String header() {
+        return "00-" + traceId + "-" + spanId + (sampled ? "-01" : "-00");
+    }
+
+    // null for a missing or malformed header
+    public static TraceParent parse(String header) {
+        if (header == null || header.length() != 55) return null;
+        String[] parts = header.split("-");
+        if (parts.length != 4 || !parts[0].equals("00")
+                || parts[1].length() != 32 || parts[2].length() != 16 || parts[3].length() != 2
+                || !isHex(parts[1]) || !isHex(parts[2]) || !isHex(parts[3])
+                || parts[1].equals(INVALID_TRACE) || parts[2].equals(INVALID_SPAN)) {
+            return null;
+        }
+        return new TraceParent(parts[1], parts[2], (HexFormat.fromHexDigits(parts[3]) & 1) == 1);
+    }
+
+    private static boolean isHex(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) return false;
+        }
+        return true;
+    }
+
+    private static String randomHex(int bytes) {
+        byte[] b = new byte[bytes];
+        do {
+            ThreadLocalRandom.current().nextBytes(b);
+        } while (isZero(b));
+        return HEX.formatHex(b);
+    }
+
+    private static boolean isZero(byte[] b) {
+        for (byte x : b) if (x != 0) return false;
+        return true;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.los_service.api.controller;
+
+import com.example.los_service.LosServiceApplication;
+import com.example.los_service.api.record.InvestorReq;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Statements sent for a 1,000-investor /saga/auto-invest batch (1,000 participation rows plus
+// 1,000 outbox rows in one transaction) without JDBC batching (batch_size=1, every insert its own
+// round trip, as with IDENTITY ids) and with pooled sequence ids, batch_size=50, ordered inserts
+// and reWriteBatchedInserts.
+class SagaInsertBatchingTests {
+    private static final int INVESTORS = 1_000;
+
+    @Test
+    void pooledIdsBatchTheSagaInserts() {
+        Result single = run(1, false);
+        Result batched = run(50, true);
+
+        // 2,000 inserts: one statement each, versus one per 50 rows and table (plus the sequence calls)
+        assertThat(single.statements).isGreaterThanOrEqualTo(2 * INVESTORS);
+        assertThat(batched.statements).isLessThan(single.statements / 10);
+    }
+
+    record Result(long statements) {}
+
+    private static Result run(int batchSize, boolean rewrite) {
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(LosServiceApplication.class)
+                .properties(
+                        "server.port=0",
+                        "app.outbox.mode=table",
+                        "spring.jpa.properties.hibernate.generate_statistics=true",
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+                        "spring.datasource.hikari.data-source-properties.reWriteBatchedInserts=" + rewrite)
+                .run()) {
+            SagaController saga = app.getBean(SagaController.class);
+            JdbcTemplate jdbc = app.getBean(JdbcTemplate.class);
+            Statistics stats = app.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+            long loanId = -ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+            try {
+                saga.autoInvest(investors(loanId, 0)); // warm-up
+                stats.clear();
+                saga.autoInvest(investors(loanId, 1));
+                return new Result(stats.getPrepareStatementCount());
+            } finally {
+                jdbc.update("DELETE FROM outbox WHERE aggregate_type = 'Participation' AND aggregate_id IN "
+                        + "(SELECT id FROM participation WHERE loan_id = ?)", loanId);
+                jdbc.update("DELETE FROM participation WHERE loan_id = ?", loanId);
+            }
+        }
+    }
+
+    private static List<InvestorReq> investors(long loanId, int round) {
+        List<InvestorReq> reqs = new ArrayList<>(INVESTORS);
+        for (int i = 0; i < INVESTORS; i++) {
+            long investorId = (long) round * INVESTORS + i;
+            reqs.add(new InvestorReq(investorId, investorId, loanId, new BigDecimal("10.00")));
+        }
+        return reqs;
+    }
+}
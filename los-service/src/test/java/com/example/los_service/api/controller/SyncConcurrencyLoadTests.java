@@ -0,0 +1,120 @@
+package com.example.los_service.api.controller;
+
+import com.example.los_service.LosServiceApplication;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// How many sync sagas (/sync/auto-invest -> ledger debit) are in flight at once with platform
+// threads versus virtual threads. The ledger is a stub that answers after LEDGER_LATENCY_MS,
+// like DeterministicChaosController's latency mode, and records its peak concurrent calls:
+// that peak is the number of sagas the service keeps in flight. With platform threads it is
+// capped by the Tomcat pool (200); with virtual threads only the offered load limits it.
+class SyncConcurrencyLoadTests {
+    private static final int SAGAS = 1_000;
+    private static final int LEDGER_LATENCY_MS = 300;
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    private static HttpServer ledger;
+    private static final AtomicInteger ledgerInFlight = new AtomicInteger();
+    private static final AtomicInteger ledgerPeak = new AtomicInteger();
+
+    @BeforeAll
+    static void startLedgerStub() throws Exception {
+        ledger = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        ledger.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        ledger.createContext("/wallet/sync/debit", exchange -> {
+            ledgerPeak.accumulateAndGet(ledgerInFlight.incrementAndGet(), Math::max);
+            try (exchange) {
+                exchange.getRequestBody().readAllBytes();
+                Thread.sleep(LEDGER_LATENCY_MS);
+                byte[] body = "{\"status\":\"SUCCESS\"}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                ledgerInFlight.decrementAndGet();
+            }
+        });
+        ledger.start();
+    }
+
+    @AfterAll
+    static void stopLedgerStub() {
+        ledger.stop(0);
+    }
+
+    @Test
+    void virtualThreadsKeepMoreSyncSagasInFlight() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        assertThat(platform.ok).isEqualTo(SAGAS);
+        assertThat(virtual.ok).isEqualTo(SAGAS);
+        assertThat(platform.peakInFlight).isLessThanOrEqualTo(TOMCAT_MAX_THREADS);
+        assertThat(virtual.peakInFlight).isGreaterThan(platform.peakInFlight);
+    }
+
+    record Result(int peakInFlight, int ok) {}
+
+    private static Result run(boolean virtualThreads) throws Exception {
+        long loanId = -ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(LosServiceApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "server.tomcat.threads.max=" + TOMCAT_MAX_THREADS,
+                        "app.sync.client.maxConnections=" + SAGAS,
+                        "app.ledgerBaseUrl=http://localhost:" + ledger.getAddress().getPort())
+                .run();
+             ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient http = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .executor(callers)
+                     .build()) {
+            String base = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+            ledgerPeak.set(0);
+
+            List<CompletableFuture<HttpResponse<String>>> calls = new ArrayList<>(SAGAS);
+            for (int i = 0; i < SAGAS; i++) {
+                String body = "[{\"investorId\":" + i + ",\"userId\":" + i + ",\"loanId\":" + loanId
+                        + ",\"amount\":10.00}]";
+                calls.add(http.sendAsync(HttpRequest.newBuilder(URI.create(base + "/sync/auto-invest"))
+                        .timeout(Duration.ofSeconds(60))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(), HttpResponse.BodyHandlers.ofString()));
+            }
+            int ok = 0;
+            for (CompletableFuture<HttpResponse<String>> call : calls) {
+                if (call.join().statusCode() == 200) ok++;
+            }
+
+            app.getBean(JdbcTemplate.class).update("DELETE FROM participation WHERE loan_id = ?", loanId);
+            return new Result(ledgerPeak.get(), ok);
+        }
+    }
+}
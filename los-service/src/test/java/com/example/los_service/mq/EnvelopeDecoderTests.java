@@ -0,0 +1,134 @@
+package com.example.los_service.mq;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EnvelopeDecoderTests {
+    private static final ObjectMapper M = new ObjectMapper();
+
+    @Test
+    void bindsTransactionCompletedAndKeepsThePayloadForTheInbox() throws Exception {
+        UUID messageId = UUID.randomUUID();
+        UUID sagaId = UUID.randomUUID();
+        String payload = payload(messageId, sagaId, 11L, 21L, "14:12", "SUCCESS", null);
+
+        TransactionEvent e = EnvelopeDecoder.transactionEvent(envelope(payload).getBytes(StandardCharsets.UTF_8));
+
+        assertThat(e).isEqualTo(new TransactionEvent(messageId, sagaId, 11L, 21L, "14:12", "SUCCESS", null, payload));
+    }
+
+    @Test
+    void bindsTransactionFailedWithoutTransactionId() throws Exception {
+        UUID messageId = UUID.randomUUID();
+        String payload = payload(messageId, null, 11L, null, "14:12", "FAILED", null);
+
+        TransactionEvent e = EnvelopeDecoder.transactionEvent(envelope(payload));
+
+        assertThat(e).isEqualTo(new TransactionEvent(messageId, null, 11L, null, "14:12", "FAILED", null, payload));
+    }
+
+    @Test
+    void bindsTheFailureReason() throws Exception {
+        String payload = payload(UUID.randomUUID(), UUID.randomUUID(), 11L, null, "14:12", "FAILED", "INSUFFICIENT_FUNDS");
+
+        assertThat(EnvelopeDecoder.transactionEvent(envelope(payload)).reason()).isEqualTo("INSUFFICIENT_FUNDS");
+    }
+
+    // RefundCompleted has the TransactionEvent shape: REFUNDED with the credit's txn, REFUNDED
+    // with a reason and no txn when nothing was given back, or FAILED with the ledger's error
+    @Test
+    void bindsEveryRefundAnswer() throws Exception {
+        UUID sagaId = UUID.randomUUID();
+
+        TransactionEvent refunded = EnvelopeDecoder.transactionEvent(envelope(
+                payload(UUID.randomUUID(), sagaId, 11L, 31L, "refund:11", "REFUNDED", null)));
+        TransactionEvent nothingDebited = EnvelopeDecoder.transactionEvent(envelope(
+                payload(UUID.randomUUID(), sagaId, 12L, null, "refund:12", "REFUNDED", "NOTHING_DEBITED")));
+        TransactionEvent duplicate = EnvelopeDecoder.transactionEvent(envelope(
+                payload(UUID.randomUUID(), sagaId, 13L, null, "refund:13", "REFUNDED", "DUPLICATE")));
+        TransactionEvent failed = EnvelopeDecoder.transactionEvent(envelope(
+                payload(UUID.randomUUID(), sagaId, 14L, null, "refund:14", "FAILED", "Wallet not found for userId: 7")));
+
+        assertThat(refunded).extracting(TransactionEvent::status, TransactionEvent::transactionId, TransactionEvent::reason)
+                .containsExactly("REFUNDED", 31L, null);
+        assertThat(nothingDebited).extracting(TransactionEvent::status, TransactionEvent::transactionId, TransactionEvent::reason)
+                .containsExactly("REFUNDED", null, "NOTHING_DEBITED");
+        assertThat(duplicate).extracting(TransactionEvent::status, TransactionEvent::transactionId, TransactionEvent::reason)
+                .containsExactly("REFUNDED", null, "DUPLICATE");
+        assertThat(failed).extracting(TransactionEvent::status, TransactionEvent::transactionId, TransactionEvent::reason)
+                .containsExactly("FAILED", null, "Wallet not found for userId: 7");
+    }
+
+    @Test
+    void acceptsStringIdsAndSkipsUnknownFields() throws Exception {
+        UUID messageId = UUID.randomUUID();
+        String payload = "{\"messageId\":\"" + messageId + "\",\"participationId\":\"11\",\"transactionId\":\"21\","
+                + "\"unknown\":{\"nested\":[1,2]},\"status\":\"SUCCESS\"}";
+
+        TransactionEvent e = EnvelopeDecoder.transactionEvent(envelope(payload));
+
+        assertThat(e.participationId()).isEqualTo(11L);
+        assertThat(e.transactionId()).isEqualTo(21L);
+        assertThat(e.status()).isEqualTo("SUCCESS");
+    }
+
+    @Test
+    void rejectsPayloadWithoutMessageIdOrParticipationId() {
+        assertThatThrownBy(() -> EnvelopeDecoder.transactionEvent(envelope("{\"participationId\":11}")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Missing messageId field");
+        assertThatThrownBy(() -> EnvelopeDecoder.transactionEvent(envelope("{\"messageId\":\"" + UUID.randomUUID() + "\"}")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Missing participationId field");
+    }
+
+    @Test
+    void rejectsMalformedEnvelopes() {
+        assertThatThrownBy(() -> EnvelopeDecoder.transactionEvent("[]"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("envelope is not a JSON object");
+        assertThatThrownBy(() -> EnvelopeDecoder.transactionEvent("{\"schema\":{},\"payload\":{\"messageId\":1}}"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Envelope has no string payload");
+        assertThatThrownBy(() -> EnvelopeDecoder.transactionEvent(envelope("[1]")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("payload is not a JSON object");
+        assertThatThrownBy(() -> EnvelopeDecoder.transactionEvent(envelope("{\"messageId\":\"not-a-uuid\"}")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> EnvelopeDecoder.transactionEvent("{\"payload\":\"{\\\"messageId\\\":"))
+                .isInstanceOf(JsonParseException.class);
+        assertThatThrownBy(() -> EnvelopeDecoder.transactionEvent("{\"schema\":"))
+                .isInstanceOf(JsonParseException.class);
+    }
+
+    // Ledger payloads carry every field, nulls included
+    private static String payload(UUID messageId, UUID sagaId, Long participationId, Long transactionId,
+                                  String idempotencyKey, String status, String reason) throws Exception {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("messageId", messageId.toString());
+        payload.put("sagaId", sagaId == null ? null : sagaId.toString());
+        payload.put("participationId", participationId);
+        payload.put("transactionId", transactionId);
+        payload.put("idempotencyKey", idempotencyKey);
+        payload.put("status", status);
+        payload.put("reason", reason);
+        return M.writeValueAsString(payload);
+    }
+
+    private static String envelope(String payload) throws Exception {
+        Map<String, Object> env = new LinkedHashMap<>();
+        env.put("schema", Map.of("type", "string", "optional", false));
+        env.put("payload", payload);
+        return M.writeValueAsString(env);
+    }
+}
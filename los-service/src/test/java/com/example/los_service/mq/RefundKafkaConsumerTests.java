@@ -0,0 +1,104 @@
+package com.example.los_service.mq;
+
+import com.example.los_service.api.controller.SagaController;
+import com.example.los_service.api.record.SagaStatus;
+import com.example.los_service.service.SagaTracker;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The LOS end of a loan cancellation: each RefundCompleted answer settles one participation of
+// the cancellation saga. REFUNDED and NOTHING_DEBITED compensate it, FAILED leaves it as it was
+// and counts as a failure, and a redelivered answer is not counted twice.
+@SpringBootTest(properties = "app.saga.watch.sweepMs=3600000")
+class RefundKafkaConsumerTests {
+    private static final ObjectMapper M = new ObjectMapper();
+
+    @Autowired
+    SagaController saga;
+    @Autowired
+    RefundKafkaConsumer consumer;
+    @Autowired
+    SagaTracker sagas;
+    @Autowired
+    JdbcTemplate jdbc;
+
+    private final long loanId = -ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private UUID sagaId;
+
+    @BeforeEach
+    void seed() {
+        for (int i = 1; i <= 3; i++) {
+            jdbc.update("INSERT INTO participation (investor_id, user_id, loan_id, amount, status, idempotency_key) "
+                    + "VALUES (?, ?, ?, ?, 'CONFIRMED', ?)", i, i, loanId, new BigDecimal("10.00"), loanId + ":" + i);
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM outbox WHERE event_type = 'RefundRequested' AND payload LIKE ?", "%\"loanId\":" + loanId + "%");
+        jdbc.update("DELETE FROM participation WHERE loan_id = ?", loanId);
+        if (sagaId != null) {
+            jdbc.update("DELETE FROM inbox WHERE payload LIKE ?", "%" + sagaId + "%");
+            jdbc.update("DELETE FROM saga WHERE saga_id = ?", sagaId);
+        }
+    }
+
+    @Test
+    void refundAnswersSettleTheCancellationSaga() throws Exception {
+        @SuppressWarnings("unchecked")
+        var body = (Map<String, Object>) saga.cancelLoan(loanId).getBody();
+        sagaId = UUID.fromString((String) body.get("batchId"));
+        List<Long> ids = jdbc.queryForList("SELECT id FROM participation WHERE loan_id = ? ORDER BY id", Long.class, loanId);
+        assertThat(sagas.find(sagaId)).get().extracting(SagaStatus::total, SagaStatus::pending).containsExactly(3, 3);
+
+        ConsumerRecord<String, byte[]> refunded = answer(ids.get(0), 31L, "REFUNDED", null);
+        consumer.onRefunded(refunded);
+        consumer.onRefunded(answer(ids.get(1), null, "REFUNDED", "NOTHING_DEBITED"));
+        consumer.onRefunded(answer(ids.get(2), null, "FAILED", "Wallet not found for userId: 3"));
+        consumer.onRefunded(refunded); // redelivery
+
+        assertThat(jdbc.queryForList("SELECT status FROM participation WHERE loan_id = ? ORDER BY id", String.class, loanId))
+                .containsExactly("COMPENSATED", "COMPENSATED", "CONFIRMED");
+        SagaStatus status = sagas.find(sagaId).orElseThrow();
+        assertThat(status.pending()).isZero();
+        assertThat(status.confirmed()).isEqualTo(2);
+        assertThat(status.failed()).isEqualTo(1);
+        assertThat(status.complete()).isTrue();
+    }
+
+    // RefundCompleted as the ledger's outbox publishes it: a JSON envelope around the payload
+    private ConsumerRecord<String, byte[]> answer(Long participationId, Long transactionId, String status, String reason)
+            throws Exception {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("messageId", UUID.randomUUID().toString());
+        payload.put("sagaId", sagaId.toString());
+        payload.put("participationId", participationId);
+        payload.put("transactionId", transactionId);
+        payload.put("idempotencyKey", "refund:" + participationId);
+        payload.put("status", status);
+        payload.put("reason", reason);
+        Map<String, Object> envelope = Map.of("schema", Map.of("type", "string"), "payload", M.writeValueAsString(payload));
+        byte[] value = M.writeValueAsString(envelope).getBytes(StandardCharsets.UTF_8);
+        return new ConsumerRecord<>("RefundCompleted", 0, 0L, System.currentTimeMillis(), TimestampType.CREATE_TIME,
+                0, value.length, String.valueOf(participationId), value, new RecordHeaders(), Optional.empty());
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.los_service.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FanOutTests {
+    private final FanOut fanOut = new FanOut();
+
+    @AfterEach
+    void shutdown() {
+        fanOut.shutdown();
+    }
+
+    @Test
+    void latencyTracksTheSlowestCallAndResultsKeepRequestOrder() {
+        fanOut.maxInFlight = 100;
+        fanOut.callTimeoutMs = 5_000;
+        List<Integer> items = IntStream.range(0, 100).boxed().toList();
+
+        long start = System.nanoTime();
+        var outcomes = fanOut.callAll(items, i -> {
+            sleep(100 + (99 - i)); // later items finish first
+            return i * 2;
+        });
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(outcomes).extracting(FanOut.Outcome::value)
+                .containsExactlyElementsOf(items.stream().map(i -> i * 2).toList());
+        assertThat(elapsedMs).isLessThan(1_000); // serially this would take over 10 s
+    }
+
+    @Test
+    void neverRunsMoreThanMaxInFlightCalls() {
+        fanOut.maxInFlight = 4;
+        fanOut.callTimeoutMs = 5_000;
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        fanOut.callAll(IntStream.range(0, 40).boxed().toList(), i -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(20);
+            running.decrementAndGet();
+            return i;
+        });
+
+        assertThat(peak.get()).isEqualTo(4);
+    }
+
+    @Test
+    void slowCallsTimeOutWithoutFailingTheOthers() {
+        fanOut.maxInFlight = 10;
+        fanOut.callTimeoutMs = 200;
+
+        var outcomes = fanOut.callAll(List.of(1, 2, 3), i -> {
+            if (i == 2) sleep(5_000);
+            if (i == 3) throw new IllegalStateException("ledger said no");
+            return i;
+        });
+
+        assertThat(outcomes.get(0).value()).isEqualTo(1);
+        assertThat(outcomes.get(1).error()).isInstanceOf(TimeoutException.class).hasMessageContaining("timeout");
+        assertThat(outcomes.get(2).error()).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
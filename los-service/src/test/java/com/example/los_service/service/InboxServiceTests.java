@@ -0,0 +1,89 @@
+package com.example.los_service.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Inbox dedup: recently committed messages are answered by the cache without touching the
+// inbox, anything else by the insert-if-absent.
+@SpringBootTest
+class InboxServiceTests {
+    private static final String HANDLER = "InboxServiceTests";
+
+    @Autowired
+    InboxService inbox;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    TransactionTemplate tx;
+
+    private final Instant receivedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM inbox WHERE handler = ?", HANDLER);
+    }
+
+    @Test
+    void redeliveryIsClaimedOnce() {
+        UUID id = UUID.randomUUID();
+
+        assertThat(claim(id)).isTrue();
+        assertThat(claim(id)).isFalse();
+        assertThat(inboxRows(id)).isEqualTo(1);
+    }
+
+    // Committed by another instance, so only the inbox knows it; the conflict then caches it
+    @Test
+    void messageOnlyTheInboxKnowsIsRejectedByTheInsert() {
+        UUID id = UUID.randomUUID();
+        jdbc.update("INSERT INTO inbox (message_id, payload, handler, received_at) VALUES (?, '{}', ?, ?)",
+                id, HANDLER, Timestamp.from(receivedAt));
+        assertThat(inbox.isKnown(id)).isFalse();
+
+        assertThat(claim(id)).isFalse();
+        assertThat(inbox.isKnown(id)).isTrue();
+    }
+
+    // The cache answers before the insert: with the inbox row gone, a redelivery of a recently
+    // committed message is still dropped
+    @Test
+    void cachedMessageSkipsTheInsert() {
+        UUID id = UUID.randomUUID();
+        claim(id);
+        jdbc.update("DELETE FROM inbox WHERE message_id = ?", id);
+
+        assertThat(claim(id)).isFalse();
+        assertThat(inboxRows(id)).isZero();
+    }
+
+    @Test
+    void rolledBackClaimIsNotCached() {
+        UUID id = UUID.randomUUID();
+        tx.executeWithoutResult(s -> {
+            inbox.claim(id, receivedAt, "{}", HANDLER);
+            s.setRollbackOnly();
+        });
+
+        assertThat(inbox.isKnown(id)).isFalse();
+        assertThat(claim(id)).isTrue();
+    }
+
+    private boolean claim(UUID id) {
+        return tx.execute(s -> inbox.claim(id, receivedAt, "{}", HANDLER));
+    }
+
+    private long inboxRows(UUID id) {
+        return jdbc.queryForObject("SELECT count(*) FROM inbox WHERE message_id = ?", Long.class, id);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.los_service.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReconcilerTests {
+    private static final long OLD = 1_000, NOW = 10_000;
+
+    private final ExecutorService prefetch = Executors.newFixedThreadPool(2);
+    private final List<String> flagged = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        prefetch.shutdownNow();
+    }
+
+    @Test
+    void flagsMismatchesAcrossPageBoundaries() {
+        long[] losIds = {1, 2, 3, 4, 5, 7, 8};
+        String[] losStatus = {"CONFIRMED", "CONFIRMED", "FAILED", "FAILED", "PENDING", "CONFIRMED", "COMPENSATED"};
+        long[] created = {OLD, OLD, OLD, OLD, OLD, OLD, OLD};
+        long[] ledgerIds = {1, 3, 4, 6, 7, 8};
+        String[] ledgerStatus = {"SUCCESS", "FAILED", "SUCCESS", "SUCCESS", "SUCCESS", "REFUNDED"};
+
+        var scan = scan(losIds, losStatus, created, ledgerIds, ledgerStatus, 0, 2);
+
+        assertThat(flagged).containsExactly(
+                "2 CONFIRMED_WITHOUT_SUCCESS",
+                "4 FAILED_WITH_SUCCESS",
+                "5 STUCK_PENDING",
+                "6 LEDGER_ONLY");
+        assertThat(scan.compared()).isEqualTo(7);
+        assertThat(scan.ledgerRows()).isEqualTo(6);
+        assertThat(scan.watermark()).isEqualTo(Long.MAX_VALUE); // everything settled
+    }
+
+    @Test
+    void refundedDebitsCountAsGivenBack() {
+        long[] ids = {1, 2, 3, 4};
+        String[] status = {"COMPENSATED", "COMPENSATED", "COMPENSATED", "CONFIRMED"};
+        long[] created = {OLD, OLD, OLD, OLD};
+        long[] ledgerIds = {1, 2, 4};
+        String[] ledgerStatus = {"REFUNDED", "SUCCESS", "REFUNDED"};
+
+        scan(ids, status, created, ledgerIds, ledgerStatus, 0, 10);
+
+        // 3 was never debited, so there was nothing to refund
+        assertThat(flagged).containsExactly("2 COMPENSATED_WITHOUT_REFUND", "4 CONFIRMED_WITHOUT_SUCCESS");
+    }
+
+    @Test
+    void watermarkStopsBeforeTheFirstUnsettledParticipation() {
+        long[] ids = {11, 12, 13, 14};
+        String[] status = {"CONFIRMED", "PENDING", "CONFIRMED", "PENDING"};
+        long[] created = {OLD, NOW, OLD, OLD};
+        String[] ledgerStatus = {"SUCCESS", "SUCCESS", "SUCCESS", "SUCCESS"};
+
+        var scan = scan(ids, status, created, ids, ledgerStatus, 10, 3);
+
+        // 12 is recent, so it is neither flagged nor passed by the watermark; 14 is stuck
+        assertThat(flagged).containsExactly("14 STUCK_PENDING");
+        assertThat(scan.watermark()).isEqualTo(11);
+    }
+
+    @Test
+    void startsAfterTheWatermark() {
+        long[] ids = {1, 2, 3};
+        String[] status = {"CONFIRMED", "CONFIRMED", "CONFIRMED"};
+        long[] created = {OLD, OLD, OLD};
+
+        var scan = scan(ids, status, created, new long[0], new String[0], 2, 10);
+
+        assertThat(flagged).containsExactly("3 CONFIRMED_WITHOUT_SUCCESS");
+        assertThat(scan.compared()).isEqualTo(1);
+    }
+
+    private Reconciler.Scan scan(long[] losIds, String[] losStatus, long[] created,
+                                 long[] ledgerIds, String[] ledgerStatus, long from, int pageSize) {
+        return Reconciler.scan(pages(losIds, losStatus, created, pageSize), pages(ledgerIds, ledgerStatus, null, pageSize),
+                from, pageSize, NOW - 1, (id, kind, los, ledger) -> flagged.add(id + " " + kind), prefetch);
+    }
+
+    // Keyset pages over sorted arrays, as the SQL and the ledger endpoint return them
+    private static LongFunction<Reconciler.Page> pages(long[] ids, String[] statuses, long[] created, int pageSize) {
+        return after -> {
+            int start = 0;
+            while (start < ids.length && ids[start] <= after) start++;
+            int end = Math.min(ids.length, start + pageSize);
+            return new Reconciler.Page(Arrays.copyOfRange(ids, start, end), Arrays.copyOfRange(statuses, start, end),
+                    created == null ? null : Arrays.copyOfRange(created, start, end));
+        };
+    }
+}
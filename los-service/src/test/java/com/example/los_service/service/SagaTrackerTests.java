@@ -0,0 +1,102 @@
+package com.example.los_service.service;
+
+import com.example.los_service.api.record.SagaStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "app.saga.watch.sweepMs=3600000")
+class SagaTrackerTests {
+    @Autowired
+    SagaTracker sagas;
+    @Autowired
+    TransactionTemplate tx;
+    @Autowired
+    JdbcTemplate jdbc;
+
+    private final UUID sagaId = UUID.randomUUID();
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM saga WHERE saga_id = ?", sagaId);
+    }
+
+    @Test
+    void watchersSeeEachCommittedOutcomeUntilCompletion() {
+        sagas.start(sagaId, 2, false);
+        List<SagaStatus> seen = new CopyOnWriteArrayList<>();
+        Runnable stop = sagas.watch(sagaId, seen::add);
+
+        tx.executeWithoutResult(s -> {
+            sagas.recordOutcome(sagaId, true);
+            assertThat(seen).isEmpty(); // not before commit
+        });
+        tx.executeWithoutResult(s -> sagas.recordOutcome(sagaId, false));
+        stop.run();
+
+        assertThat(seen).hasSize(2);
+        assertThat(seen.get(0).complete()).isFalse();
+        SagaStatus last = seen.get(1);
+        assertThat(last.complete()).isTrue();
+        assertThat(last.confirmed()).isEqualTo(1);
+        assertThat(last.failed()).isEqualTo(1);
+        assertThat(last.completedAt()).isNotNull();
+    }
+
+    @Test
+    void outcomesOfOneTransactionAreWrittenAtCommit() {
+        sagas.start(sagaId, 3, false);
+
+        tx.executeWithoutResult(s -> {
+            sagas.recordOutcome(sagaId, true);
+            sagas.recordOutcome(sagaId, false);
+            sagas.recordOutcome(sagaId, true);
+            assertThat(sagas.find(sagaId)).get().extracting(SagaStatus::pending).isEqualTo(3);
+        });
+
+        SagaStatus status = sagas.find(sagaId).orElseThrow();
+        assertThat(status.pending()).isZero();
+        assertThat(status.confirmed()).isEqualTo(2);
+        assertThat(status.failed()).isEqualTo(1);
+        assertThat(status.complete()).isTrue();
+        assertThat(status.completedAt()).isNotNull();
+    }
+
+    @Test
+    void rolledBackOutcomesAreNotCounted() {
+        sagas.start(sagaId, 1, false);
+
+        try {
+            tx.executeWithoutResult(s -> {
+                sagas.recordOutcome(sagaId, true);
+                throw new IllegalStateException("consumer failed");
+            });
+        } catch (IllegalStateException expected) {
+        }
+
+        assertThat(sagas.find(sagaId)).get().extracting(SagaStatus::pending).isEqualTo(1);
+    }
+
+    @Test
+    void streamedSagaIsOnlyCompleteOnceClosed() {
+        sagas.start(sagaId, 0, true);
+        tx.executeWithoutResult(s -> sagas.addParticipations(sagaId, 1));
+        tx.executeWithoutResult(s -> sagas.recordOutcome(sagaId, true));
+        assertThat(sagas.find(sagaId)).get().extracting(SagaStatus::complete).isEqualTo(false);
+
+        sagas.close(sagaId);
+
+        SagaStatus status = sagas.find(sagaId).orElseThrow();
+        assertThat(status.complete()).isTrue();
+        assertThat(status.total()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.los_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedIdCacheTests {
+
+    @Test
+    void neverHoldsMoreThanItsBound() {
+        BoundedIdCache<UUID> cache = new BoundedIdCache<>(64, 4);
+        for (int i = 0; i < 1_000; i++) {
+            cache.add(UUID.randomUUID());
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(64);
+        assertThat(cache.stats()).containsEntry("evictions", 1_000L - cache.size());
+    }
+
+    // Each segment evicts its least recently used id; a lookup counts as a use
+    @Test
+    void evictsTheLeastRecentlyUsedId() {
+        BoundedIdCache<Integer> cache = new BoundedIdCache<>(3, 1);
+        cache.add(1);
+        cache.add(2);
+        cache.add(3);
+        assertThat(cache.contains(1)).isTrue();
+
+        cache.add(4);
+
+        assertThat(cache.contains(2)).isFalse();
+        assertThat(cache.contains(1)).isTrue();
+        assertThat(cache.contains(3)).isTrue();
+        assertThat(cache.contains(4)).isTrue();
+        assertThat(cache.stats()).containsEntry("hits", 4L).containsEntry("misses", 1L).containsEntry("evictions", 1L);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.los_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongHashSetTests {
+
+    @Test
+    void behavesLikeASetOfLongsWhileGrowing() {
+        LongHashSet set = new LongHashSet(4);
+        Set<Long> reference = new HashSet<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            long value = random.nextInt(50_000) - 100; // includes 0 and negatives
+            assertThat(set.add(value)).isEqualTo(reference.add(value));
+        }
+
+        assertThat(set.size()).isEqualTo(reference.size());
+        for (long v = -200; v < 60_000; v++) {
+            assertThat(set.contains(v)).isEqualTo(reference.contains(v));
+        }
+    }
+
+    @Test
+    void sequentialIdsAndExtremes() {
+        LongHashSet set = new LongHashSet(16);
+        for (long id = 1; id <= 1_000_000; id++) {
+            assertThat(set.add(id)).isTrue();
+        }
+        assertThat(set.add(500_000)).isFalse();
+        assertThat(set.add(Long.MIN_VALUE)).isTrue();
+        assertThat(set.add(Long.MAX_VALUE)).isTrue();
+        assertThat(set.contains(Long.MIN_VALUE)).isTrue();
+        assertThat(set.size()).isEqualTo(1_000_002);
+    }
+}